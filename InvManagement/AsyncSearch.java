@@ -0,0 +1,89 @@
+package InvManagement;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * AsyncSearch runs a search, usually through a SearchEngine, off of the JavaFX application thread so that typing in a
+ * search bar never has to wait on the search itself.
+ * <p>
+ * Each call to submit() is debounced: the query only runs once the user has stopped typing for a short moment. A newer
+ * query cancels any query that is still waiting or running, and only the result of the newest query is ever handed
+ * back. Results are published on the JavaFX application thread with Platform.runLater, so the publisher can safely
+ * touch the table view.
+ *
+ * @param <R> the type of a search's result, such as a filter or a set of matches
+ */
+public class AsyncSearch<R> {
+    /**
+     * How long to wait after the last keystroke before running the query.
+     */
+    private static final long DEBOUNCE_MILLIS = 150;
+
+    /**
+     * Shared background thread for all searches; a daemon so it never keeps the program open after the main window
+     * is closed.
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "inventory-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Works out the result for each query.
+     */
+    private final Function<String, R> search;
+    /**
+     * Receives the result of the newest query; always called on the JavaFX application thread.
+     */
+    private final Consumer<R> publisher;
+
+    /**
+     * Query that is waiting for the debounce delay or currently running; cancelled when a newer query arrives.
+     */
+    private ScheduledFuture<?> pending;
+    /**
+     * Increases with every submitted query; results from an older query are dropped instead of published.
+     */
+    private volatile long generation;
+
+    /**
+     * @param search works out the result for each query, e.g. a SearchEngine's filter()
+     * @param publisher receives the result of the newest query on the JavaFX application thread
+     */
+    public AsyncSearch(Function<String, R> search, Consumer<R> publisher) {
+        this.search = search;
+        this.publisher = publisher;
+    }
+
+    /**
+     * submit() schedules a search for the query and cancels whatever search was submitted before it.
+     *
+     * @param query the search text
+     */
+    public synchronized void submit(String query) {
+        long current = ++generation;
+        if ( pending != null ) {
+            pending.cancel(true);
+        }
+
+        pending = executor.schedule(() -> {
+            R result = search.apply(query);
+            if ( current == generation ) {
+                // Checked again on the FX thread in case a newer query was submitted while this one was queued
+                Platform.runLater(() -> {
+                    if ( current == generation ) {
+                        publisher.accept(result);
+                    }
+                });
+            }
+        }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
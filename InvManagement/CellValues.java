@@ -0,0 +1,84 @@
+package InvManagement;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.control.TableColumn.CellDataFeatures;
+import javafx.util.Callback;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * CellValues makes the cell value factories for the table views' columns. Each one calls the getter it's given
+ * directly, e.g. CellValues.ofInt(Part::getId), where PropertyValueFactory looks the getter up by name and calls it
+ * through reflection on every cell update. The value is handed to the cell in a small constant ObservableValue
+ * instead of a new ReadOnlyObjectWrapper property each time.
+ * <p>
+ * A constant is enough because a part or product in a table never changes in place; it's replaced, and the list
+ * tells the table about that (a quantity change on the product form calls refresh() for the same reason). So there
+ * is nothing for a cell to listen to, and listeners added to the values are simply ignored.
+ * <p>
+ * A row with no item, which a PagedList can briefly have, gets a null value and shows an empty cell.
+ */
+public class CellValues {
+    private CellValues() { }
+
+    /**
+     * @param getter reads the column's value from a row's item, e.g. Part::getStock
+     * @param <S> type of the table's items
+     * @return a cell value factory for an Integer column
+     */
+    public static <S> Callback<CellDataFeatures<S, Integer>, ObservableValue<Integer>> ofInt(ToIntFunction<S> getter) {
+        return cell -> new Constant<>(cell.getValue() == null ? null : getter.applyAsInt(cell.getValue()));
+    }
+
+    /**
+     * @param getter reads the column's value from a row's item, e.g. Part::getPrice
+     * @param <S> type of the table's items
+     * @return a cell value factory for a Double column
+     */
+    public static <S> Callback<CellDataFeatures<S, Double>, ObservableValue<Double>> ofDouble(
+            ToDoubleFunction<S> getter) {
+        return cell -> new Constant<>(cell.getValue() == null ? null : getter.applyAsDouble(cell.getValue()));
+    }
+
+    /**
+     * @param getter reads the column's value from a row's item, e.g. Part::getName
+     * @param <S> type of the table's items
+     * @param <T> type of the column's values
+     * @return a cell value factory for the column
+     */
+    public static <S, T> Callback<CellDataFeatures<S, T>, ObservableValue<T>> of(Function<S, T> getter) {
+        return cell -> new Constant<>(cell.getValue() == null ? null : getter.apply(cell.getValue()));
+    }
+
+    /**
+     * An ObservableValue that never changes, so it keeps no listeners.
+     *
+     * @param <T> type of the value
+     */
+    private static class Constant<T> implements ObservableValue<T> {
+        private final T value;
+
+        Constant(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public T getValue() { return value; }
+
+        @Override
+        public void addListener(ChangeListener<? super T> listener) { }
+
+        @Override
+        public void removeListener(ChangeListener<? super T> listener) { }
+
+        @Override
+        public void addListener(InvalidationListener listener) { }
+
+        @Override
+        public void removeListener(InvalidationListener listener) { }
+    }
+}
@@ -0,0 +1,157 @@
+package InvManagement;
+
+import javafx.application.Platform;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * ChangeFeed tells the JavaFX views how a list that is changed on other threads has changed, as a list of ListEdits,
+ * instead of keeping a copy of the list for them. The views read the rows they show from the list itself, a page at
+ * a time (see TableRows), so a million parts cost nothing here beyond the edits themselves.
+ * <p>
+ * Whoever changes the list records each edit here, in the same order. Nothing is handed to listeners until publish()
+ * is called; then every edit recorded so far is handed over in one batch:
+ * <ul>
+ * <li>On the JavaFX application thread, listeners are called right away, so code on that thread sees its own change
+ * as soon as the call that made it returns.</li>
+ * <li>On any other thread, calling them is handed to the JavaFX thread with Platform.runLater(). Edits recorded before
+ * that runs go out in the same batch, so a busy writer causes one refresh per frame instead of one per change.</li>
+ * <li>If JavaFX isn't running at all (a command-line tool, a server), listeners are called on the calling thread.</li>
+ * </ul>
+ * Listeners get the edits in the order they were made, but by the time they run the list may have changed again; a
+ * listener that reads the list should check its size against the edits (see TableRows.forward()).
+ *
+ * @param <E> type of the items
+ */
+public class ChangeFeed<E> {
+    /**
+     * Called with each batch of edits, on the JavaFX application thread while JavaFX is running.
+     */
+    private final List<Consumer<List<ListEdit<E>>>> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Edits recorded but not handed out yet, oldest first.
+     */
+    private List<ListEdit<E>> pending = new ArrayList<>();
+    /**
+     * Whether a Platform.runLater() to hand out pending is already waiting.
+     */
+    private boolean scheduled;
+    /**
+     * Held while edits are handed out, so two threads never hand them out at the same time or out of order.
+     */
+    private final Object deliverLock = new Object();
+    /**
+     * Whether JavaFX is running; found out the first time edits are published, since asking JavaFX which thread is
+     * its application thread starts loading the graphics toolkit even when no UI will ever be shown.
+     */
+    private volatile Boolean fxRunning;
+
+    /**
+     * @param listener called with each batch of edits from now on
+     */
+    public void addListener(Consumer<List<ListEdit<E>>> listener) { listeners.add(listener); }
+
+    /**
+     * addWeakListener() adds a listener that the feed doesn't keep reachable, such as one for a form's table, so the
+     * form can be garbage collected once it's closed. Whoever adds it has to keep a reference to it for as long as it
+     * should be called.
+     *
+     * @param listener called with each batch of edits until it's garbage collected
+     */
+    public void addWeakListener(Consumer<List<ListEdit<E>>> listener) {
+        listeners.add(new WeakListener<>(this, listener));
+    }
+
+    /**
+     * @param listener a listener added with addListener()
+     */
+    public void removeListener(Consumer<List<ListEdit<E>>> listener) { listeners.remove(listener); }
+
+    /**
+     * @param edit a change that was just made to the list
+     */
+    public synchronized void record(ListEdit<E> edit) { pending.add(edit); }
+
+    /**
+     * publish() gets the recorded edits handed to the listeners; see the class comment for when and where. It should
+     * be called after each change is finished, once the writer has released any lock that a listener might need.
+     */
+    public void publish() {
+        if ( !isFxRunning() || Platform.isFxApplicationThread() ) {
+            deliver();
+            return;
+        }
+        synchronized (this) {
+            if ( scheduled || pending.isEmpty() ) {
+                return;
+            }
+            scheduled = true;
+        }
+        Platform.runLater(this::deliver);
+    }
+
+    /**
+     * @return whether JavaFX has been started; checked once, since the UI always starts JavaFX before it creates
+     *         anything that listens to a feed
+     */
+    private boolean isFxRunning() {
+        if ( fxRunning == null ) {
+            try {
+                Platform.runLater(() -> { });
+                fxRunning = true;
+            } catch ( IllegalStateException e ) {
+                fxRunning = false; // "Toolkit not initialized"
+            }
+        }
+        return fxRunning;
+    }
+
+    /**
+     * deliver() hands every recorded edit to the listeners as one batch.
+     */
+    private void deliver() {
+        synchronized (deliverLock) {
+            List<ListEdit<E>> edits;
+            synchronized (this) {
+                edits = pending;
+                pending = new ArrayList<>();
+                scheduled = false;
+            }
+            if ( edits.isEmpty() ) {
+                return;
+            }
+            for ( Consumer<List<ListEdit<E>>> listener : listeners ) {
+                listener.accept(edits);
+            }
+        }
+    }
+
+    /**
+     * Passes edits on to a listener that may have been garbage collected, and takes itself off the feed once it has.
+     *
+     * @param <E> type of the items
+     */
+    private static class WeakListener<E> implements Consumer<List<ListEdit<E>>> {
+        private final ChangeFeed<E> feed;
+        private final WeakReference<Consumer<List<ListEdit<E>>>> listener;
+
+        WeakListener(ChangeFeed<E> feed, Consumer<List<ListEdit<E>>> listener) {
+            this.feed = feed;
+            this.listener = new WeakReference<>(listener);
+        }
+
+        @Override
+        public void accept(List<ListEdit<E>> edits) {
+            Consumer<List<ListEdit<E>>> target = listener.get();
+            if ( target == null ) {
+                feed.listeners.remove(this);
+            } else {
+                target.accept(edits);
+            }
+        }
+    }
+}
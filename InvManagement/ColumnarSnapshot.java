@@ -0,0 +1,495 @@
+package InvManagement;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ColumnarSnapshot is a snapshot file laid out so parts can be read straight from a memory-mapped file, without
+ * reading the whole file first or creating a Part object for every row.
+ * <p>
+ * Each part field is stored as its own fixed-width column (all IDs, then all prices, and so on), so the value for row
+ * r is always at the same place: column start + r * width. Names and company names are UTF-8 bytes in one shared
+ * string heap at the end of the file, found through a column of offsets. A copy of the ID column sorted by ID, along
+ * with each ID's row, lets a part be found by ID with a binary search. Products are few, so they are kept as regular
+ * framed records (see InventoryRecords) between the columns and the heap.
+ * <p>
+ * The layout, with every section starting on an 8-byte boundary:
+ * <ul>
+ * <li>header: magic number, format version, part count, heap size in bytes</li>
+ * <li>int ids, double prices, int stock, int min, int max, int machine IDs (0 for Outsourced)</li>
+ * <li>int string offsets, 2 * partCount + 1 of them; row r's name is heap[offset[2r], offset[2r + 1]) and its
+ * company name is heap[offset[2r + 1], offset[2r + 2])</li>
+ * <li>int IDs sorted, int row of each sorted ID</li>
+ * <li>byte part type per row (InventoryRecords.IN_HOUSE_PART or OUTSOURCED_PART)</li>
+ * <li>framed product records ending with a snapshot end record</li>
+ * <li>the string heap</li>
+ * </ul>
+ * The file isn't checksummed as a whole, since checking it would mean reading all of it at startup. Like the other
+ * snapshot files, it is flushed and then renamed into place, so it is never seen half-written.
+ */
+public class ColumnarSnapshot implements PartTable {
+    /**
+     * First int in the file: "INVC".
+     */
+    private static final int MAGIC = 0x494E5643;
+    /**
+     * Format version; bumped if the layout ever changes.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Bytes before the first column.
+     */
+    private static final int HEADER_BYTES = 16;
+    /**
+     * Size of the buffer each column is written through.
+     */
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * The whole file, mapped read-only.
+     */
+    private final ByteBuffer file;
+    /**
+     * Number of parts (rows) in the file.
+     */
+    private final int partCount;
+    /**
+     * Where each section starts in the file.
+     */
+    private final Layout layout;
+
+    /**
+     * Layout works out where each section of the file starts; everything but the products and heap only depends on
+     * the number of parts.
+     */
+    private static class Layout {
+        final int ids, prices, stocks, mins, maxes, machineIDs, stringOffsets, sortedIDs, sortedRows, types, products;
+
+        Layout(int partCount) {
+            long offset = HEADER_BYTES;
+            ids = (int) offset;
+            offset = align(offset + 4L * partCount);
+            prices = (int) offset;
+            offset = align(offset + 8L * partCount);
+            stocks = (int) offset;
+            offset = align(offset + 4L * partCount);
+            mins = (int) offset;
+            offset = align(offset + 4L * partCount);
+            maxes = (int) offset;
+            offset = align(offset + 4L * partCount);
+            machineIDs = (int) offset;
+            offset = align(offset + 4L * partCount);
+            stringOffsets = (int) offset;
+            offset = align(offset + 4L * (2L * partCount + 1));
+            sortedIDs = (int) offset;
+            offset = align(offset + 4L * partCount);
+            sortedRows = (int) offset;
+            offset = align(offset + 4L * partCount);
+            types = (int) offset;
+            offset = align(offset + partCount);
+            if ( offset > Integer.MAX_VALUE ) {
+                throw new IllegalArgumentException("Too many parts for one snapshot file");
+            }
+            products = (int) offset;
+        }
+
+        private static long align(long offset) { return (offset + 7) & ~7L; }
+    }
+
+    /**
+     * @param file the whole file, mapped
+     * @param partCount number of parts in the file
+     */
+    private ColumnarSnapshot(ByteBuffer file, int partCount) {
+        this.file = file;
+        this.partCount = partCount;
+        this.layout = new Layout(partCount);
+    }
+
+    /**
+     * open() maps a snapshot file into memory. Only the header is read; everything else is read from the mapping when
+     * it's asked for.
+     *
+     * @param path the snapshot file
+     * @return the mapped snapshot
+     * @throws IOException if the file can't be mapped or isn't a snapshot of this format
+     */
+    public static ColumnarSnapshot open(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ) ) {
+            if ( channel.size() > Integer.MAX_VALUE ) {
+                throw new IOException("Inventory snapshot " + path + " is too large to map");
+            }
+            // The mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if ( mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION ) {
+            throw new IOException("Inventory snapshot " + path + " is not a columnar snapshot");
+        }
+        int partCount = mapped.getInt(8);
+        int heapBytes = mapped.getInt(12);
+        if ( partCount < 0 || heapBytes < 0 || new Layout(partCount).products + (long) heapBytes > mapped.capacity() ) {
+            throw new IOException("Inventory snapshot " + path + " is damaged");
+        }
+        return new ColumnarSnapshot(mapped, partCount);
+    }
+
+    /**
+     * @return number of parts in the snapshot
+     */
+    @Override
+    public int size() { return partCount; }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's ID
+     */
+    @Override
+    public int getId(int row) { return file.getInt(layout.ids + 4 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's price
+     */
+    @Override
+    public double getPrice(int row) { return file.getDouble(layout.prices + 8 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's stock
+     */
+    @Override
+    public int getStock(int row) { return file.getInt(layout.stocks + 4 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's min
+     */
+    @Override
+    public int getMin(int row) { return file.getInt(layout.mins + 4 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's max
+     */
+    @Override
+    public int getMax(int row) { return file.getInt(layout.maxes + 4 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return whether the part is In-House (otherwise it's Outsourced)
+     */
+    @Override
+    public boolean isInHouse(int row) { return file.get(layout.types + row) == InventoryRecords.IN_HOUSE_PART; }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's machine ID; 0 for an Outsourced part
+     */
+    @Override
+    public int getMachineID(int row) { return file.getInt(layout.machineIDs + 4 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's name
+     */
+    @Override
+    public String getName(int row) { return heapString(2 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's company name; empty for an In-House part
+     */
+    @Override
+    public String getCompanyName(int row) { return heapString(2 * row + 1); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's name as UTF-8, read straight from the mapped file without creating a String
+     */
+    @Override
+    public ByteBuffer getNameBytes(int row) { return heapBytes(2 * row); }
+
+    /**
+     * @param row a row in the snapshot
+     * @return the part's company name as UTF-8, read straight from the mapped file without creating a String
+     */
+    @Override
+    public ByteBuffer getCompanyNameBytes(int row) { return heapBytes(2 * row + 1); }
+
+    /**
+     * rowOf() binary searches the sorted ID column, so it only reads about 20 values even for a million parts.
+     *
+     * @param id the part ID to look for
+     * @return the row of the part with that ID, or -1 if the snapshot has no such part
+     */
+    @Override
+    public int rowOf(int id) {
+        int low = 0;
+        int high = partCount - 1;
+        while ( low <= high ) {
+            int middle = (low + high) >>> 1;
+            int middleID = file.getInt(layout.sortedIDs + 4 * middle);
+            if ( middleID < id ) {
+                low = middle + 1;
+            } else if ( middleID > id ) {
+                high = middle - 1;
+            } else {
+                return file.getInt(layout.sortedRows + 4 * middle);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index position in the sorted ID column
+     * @return the index-th smallest part ID in the snapshot
+     */
+    @Override
+    public int getSortedID(int index) { return file.getInt(layout.sortedIDs + 4 * index); }
+
+    /**
+     * readProducts() hands each product record to the consumer, checking every record's checksum along the way.
+     *
+     * @param consumer receives each product record payload, positioned at its type byte
+     * @throws IOException if a record is damaged or the product section doesn't end properly
+     */
+    public void readProducts(Consumer<ByteBuffer> consumer) throws IOException {
+        int offset = layout.products;
+        int productCount = 0;
+        while ( offset + InventoryRecords.HEADER_BYTES <= file.capacity() ) {
+            int length = file.getInt(offset);
+            int checksum = file.getInt(offset + 4);
+            if ( length <= 0 || offset + InventoryRecords.HEADER_BYTES + (long) length > file.capacity() ) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            file.get(offset + InventoryRecords.HEADER_BYTES, payload);
+            if ( InventoryRecords.checksum(payload, 0, length) != checksum ) {
+                break;
+            }
+            offset += InventoryRecords.HEADER_BYTES + length;
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            if ( payload[0] == InventoryRecords.SNAPSHOT_END ) {
+                record.get();
+                if ( record.getInt() == partCount && record.getInt() == productCount ) {
+                    return;
+                }
+                break;
+            }
+            consumer.accept(record);
+            productCount++;
+        }
+        throw new IOException("Products in the inventory snapshot are damaged");
+    }
+
+    /**
+     * write() writes a snapshot in this format. Parts that are still rows of an earlier mapped snapshot, or of
+     * PartColumns, are copied from those columns directly, so writing a new snapshot doesn't create Part objects for
+     * them.
+     *
+     * @param snapshot the parts and products to write
+     * @param path where to write the file; replaced if it exists
+     * @throws IOException if the file can't be written
+     */
+    public static void write(InventorySnapshot snapshot, Path path) throws IOException {
+        List<Part> parts = snapshot.getParts();
+        MappedPartList mapped = snapshot.getMappedParts();
+        int partCount = parts.size();
+        Layout layout = new Layout(partCount);
+
+        List<byte[]> products = new ArrayList<>(snapshot.getProducts().size() + 1);
+        long productBytes = 0;
+        for ( Product product : snapshot.getProducts() ) {
+            products.add(InventoryRecords.product(product));
+        }
+        products.add(InventoryRecords.snapshotEnd(partCount, snapshot.getProducts().size()));
+        for ( byte[] payload : products ) {
+            productBytes += InventoryRecords.HEADER_BYTES + payload.length;
+        }
+        long heapStart = layout.products + productBytes;
+
+        try ( FileChannel out = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE) ) {
+            Column ids = new Column(out, layout.ids);
+            Column prices = new Column(out, layout.prices);
+            Column stocks = new Column(out, layout.stocks);
+            Column mins = new Column(out, layout.mins);
+            Column maxes = new Column(out, layout.maxes);
+            Column machineIDs = new Column(out, layout.machineIDs);
+            Column stringOffsets = new Column(out, layout.stringOffsets);
+            Column types = new Column(out, layout.types);
+            Column heap = new Column(out, heapStart);
+            long[] sorted = new long[partCount];
+
+            stringOffsets.putInt(0);
+            for ( int i = 0; i < partCount; i++ ) {
+                int row = mapped == null ? -1 : mapped.mappedRowAt(i);
+                int id;
+                if ( row >= 0 ) {
+                    PartTable from = mapped.getTable();
+                    id = from.getId(row);
+                    prices.putDouble(from.getPrice(row));
+                    stocks.putInt(from.getStock(row));
+                    mins.putInt(from.getMin(row));
+                    maxes.putInt(from.getMax(row));
+                    machineIDs.putInt(from.getMachineID(row));
+                    types.put(from.isInHouse(row) ? InventoryRecords.IN_HOUSE_PART : InventoryRecords.OUTSOURCED_PART);
+                    heap.put(from.getNameBytes(row));
+                    stringOffsets.putInt(heapOffset(heap, heapStart));
+                    heap.put(from.getCompanyNameBytes(row));
+                } else {
+                    Part part = parts.get(i);
+                    id = part.getId();
+                    prices.putDouble(part.getPrice());
+                    stocks.putInt(part.getStock());
+                    mins.putInt(part.getMin());
+                    maxes.putInt(part.getMax());
+                    if ( part instanceof InHouse ) {
+                        machineIDs.putInt(((InHouse) part).getMachineID());
+                        types.put(InventoryRecords.IN_HOUSE_PART);
+                    } else {
+                        machineIDs.putInt(0);
+                        types.put(InventoryRecords.OUTSOURCED_PART);
+                    }
+                    heap.put(ByteBuffer.wrap(part.getName().getBytes(StandardCharsets.UTF_8)));
+                    stringOffsets.putInt(heapOffset(heap, heapStart));
+                    if ( part instanceof Outsourced ) {
+                        heap.put(ByteBuffer.wrap(((Outsourced) part).getCompanyName().getBytes(StandardCharsets.UTF_8)));
+                    }
+                }
+                stringOffsets.putInt(heapOffset(heap, heapStart));
+                ids.putInt(id);
+                sorted[i] = ((long) id << 32) | i;
+            }
+
+            // Sorting (id, row) pairs packed into longs keeps the sort on primitives
+            Arrays.sort(sorted);
+            Column sortedIDs = new Column(out, layout.sortedIDs);
+            Column sortedRows = new Column(out, layout.sortedRows);
+            for ( long pair : sorted ) {
+                sortedIDs.putInt((int) (pair >> 32));
+                sortedRows.putInt((int) pair);
+            }
+
+            Column productRecords = new Column(out, layout.products);
+            for ( byte[] payload : products ) {
+                productRecords.putInt(payload.length);
+                productRecords.putInt(InventoryRecords.checksum(payload, 0, payload.length));
+                productRecords.put(ByteBuffer.wrap(payload));
+            }
+
+            long heapBytes = heap.position - heapStart;
+            if ( heapBytes > Integer.MAX_VALUE ) {
+                throw new IOException("Names are too large for one snapshot file");
+            }
+            Column header = new Column(out, 0);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(partCount);
+            header.putInt((int) heapBytes);
+
+            for ( Column column : new Column[] { ids, prices, stocks, mins, maxes, machineIDs, stringOffsets,
+                    types, heap, sortedIDs, sortedRows, productRecords, header } ) {
+                column.flush();
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Column writes one section of the file through its own buffer, so all columns can be filled in one pass over the
+     * parts.
+     */
+    private static class Column {
+        private final FileChannel out;
+        private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+        /**
+         * File position of the next value, counting what's still in the buffer.
+         */
+        private long position;
+
+        Column(FileChannel out, long position) {
+            this.out = out;
+            this.position = position;
+        }
+
+        void putInt(int value) throws IOException { ensure(4).putInt(value); position += 4; }
+
+        void putDouble(double value) throws IOException { ensure(8).putDouble(value); position += 8; }
+
+        void put(byte value) throws IOException { ensure(1).put(value); position++; }
+
+        void put(ByteBuffer bytes) throws IOException {
+            while ( bytes.hasRemaining() ) {
+                if ( !buffer.hasRemaining() ) { flush(); }
+                int count = Math.min(buffer.remaining(), bytes.remaining());
+                buffer.put(buffer.position(), bytes, bytes.position(), count);
+                buffer.position(buffer.position() + count);
+                bytes.position(bytes.position() + count);
+                position += count;
+            }
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if ( buffer.remaining() < bytes ) { flush(); }
+            return buffer;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            long at = position - buffer.remaining();
+            while ( buffer.hasRemaining() ) {
+                at += out.write(buffer, at);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * @param heap the heap column
+     * @param heapStart file position where the heap starts
+     * @return offset within the heap that the next string will be written at
+     * @throws IOException if the heap has grown past what an int offset can hold
+     */
+    private static int heapOffset(Column heap, long heapStart) throws IOException {
+        long offset = heap.position - heapStart;
+        if ( offset > Integer.MAX_VALUE ) {
+            throw new IOException("Names are too large for one snapshot file");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * @param string index of the string: 2 * row for a name, 2 * row + 1 for a company name
+     * @return the string's bytes in the heap, as a view of the mapped file
+     */
+    private ByteBuffer heapBytes(int string) {
+        int heapStart = file.capacity() - file.getInt(12);
+        int start = file.getInt(layout.stringOffsets + 4 * string);
+        int end = file.getInt(layout.stringOffsets + 4 * string + 4);
+        return file.slice(heapStart + start, end - start);
+    }
+
+    /**
+     * @param string index of the string: 2 * row for a name, 2 * row + 1 for a company name
+     * @return the string, decoded from the heap
+     */
+    private String heapString(int string) {
+        ByteBuffer bytes = heapBytes(string);
+        byte[] utf8 = new byte[bytes.remaining()];
+        bytes.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
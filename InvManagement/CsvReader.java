@@ -0,0 +1,362 @@
+package InvManagement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * CsvReader reads a CSV file one record at a time, without ever holding more than one record and one read buffer in
+ * memory, so files far larger than the heap can be read.
+ * <p>
+ * Fields are separated by commas and records by a newline (\n or \r\n). A field can be wrapped in double quotes to hold
+ * commas, newlines, or quotes, with a quote inside a quoted field written twice (""). Blank lines are skipped.
+ * <p>
+ * The reader works on raw UTF-8 bytes. Numbers are parsed straight from those bytes, so only the fields that are
+ * really text (such as names) are ever turned into Strings.
+ */
+public class CsvReader implements Closeable {
+    /**
+     * Bytes read from the file at a time.
+     */
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    /**
+     * Powers of ten that a double holds exactly; used to parse simple decimals without creating a String.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * File being read.
+     */
+    private final FileChannel channel;
+    /**
+     * Size of the file in bytes.
+     */
+    private final long size;
+    /**
+     * Buffer the file is read into.
+     */
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    /**
+     * Next unread byte in the read buffer, and how many bytes it holds.
+     */
+    private int readPosition;
+    private int readLimit;
+    /**
+     * Number of bytes consumed so far; used for progress.
+     */
+    private long consumed;
+    /**
+     * Line the current record started on, counting from 1.
+     */
+    private long lineNumber;
+    /**
+     * Line the next record will start on.
+     */
+    private long nextLine = 1;
+
+    /**
+     * Field contents of the current record, with quotes already removed.
+     */
+    private byte[] record = new byte[256];
+    /**
+     * Where each field starts and ends in record.
+     */
+    private int[] fieldStarts = new int[16];
+    private int[] fieldEnds = new int[16];
+    /**
+     * Number of fields in the current record.
+     */
+    private int fieldCount;
+
+    /**
+     * @param file the CSV file to read
+     * @throws IOException if the file can't be opened
+     */
+    public CsvReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * next() reads the next record.
+     *
+     * @return false once there are no more records
+     * @throws IOException if the file can't be read
+     */
+    public boolean next() throws IOException {
+        while ( true ) {
+            int b = read();
+            if ( b < 0 ) {
+                return false;
+            }
+            if ( b == '\n' ) {
+                nextLine++;
+                continue; // Blank line
+            }
+            if ( b == '\r' ) {
+                continue;
+            }
+            lineNumber = nextLine;
+            readRecord(b);
+            return true;
+        }
+    }
+
+    /**
+     * @param first first byte of the record, already read
+     * @throws IOException if the file can't be read
+     */
+    private void readRecord(int first) throws IOException {
+        int length = 0;
+        fieldCount = 0;
+        int b = first;
+        startField(0);
+        while ( true ) {
+            if ( b == '"' && length == fieldStarts[fieldCount - 1] ) {
+                // Quoted field: read up to the closing quote, keeping commas and newlines
+                while ( true ) {
+                    b = read();
+                    if ( b < 0 ) {
+                        break;
+                    }
+                    if ( b == '"' ) {
+                        b = read();
+                        if ( b != '"' ) {
+                            break; // Closing quote
+                        }
+                    } else if ( b == '\n' ) {
+                        nextLine++;
+                    }
+                    length = append(length, b);
+                }
+                continue;
+            }
+            if ( b < 0 || b == '\n' ) {
+                if ( length > fieldStarts[fieldCount - 1] && record[length - 1] == '\r' ) {
+                    length--;
+                }
+                fieldEnds[fieldCount - 1] = length;
+                if ( b == '\n' ) {
+                    nextLine++;
+                }
+                return;
+            }
+            if ( b == ',' ) {
+                fieldEnds[fieldCount - 1] = length;
+                startField(length);
+            } else {
+                length = append(length, b);
+            }
+            b = read();
+        }
+    }
+
+    private void startField(int start) {
+        if ( fieldCount == fieldStarts.length ) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = start;
+        fieldCount++;
+    }
+
+    private int append(int length, int b) {
+        if ( length == record.length ) {
+            record = Arrays.copyOf(record, length * 2);
+        }
+        record[length] = (byte) b;
+        return length + 1;
+    }
+
+    /**
+     * @return the next byte of the file, or -1 at the end
+     * @throws IOException if the file can't be read
+     */
+    private int read() throws IOException {
+        if ( readPosition == readLimit ) {
+            readBuffer.clear();
+            int count;
+            do {
+                count = channel.read(readBuffer);
+            } while ( count == 0 );
+            if ( count < 0 ) {
+                return -1;
+            }
+            readPosition = 0;
+            readLimit = count;
+        }
+        consumed++;
+        return readBuffer.array()[readPosition++] & 0xFF;
+    }
+
+    /**
+     * @return number of fields in the current record
+     */
+    public int fieldCount() { return fieldCount; }
+
+    /**
+     * @return line of the file the current record starts on, counting from 1
+     */
+    public long lineNumber() { return lineNumber; }
+
+    /**
+     * @return number of bytes of the file read so far
+     */
+    public long bytesRead() { return consumed; }
+
+    /**
+     * @return size of the file in bytes
+     */
+    public long size() { return size; }
+
+    /**
+     * @param field index of a field in the current record
+     * @return whether the field is empty
+     */
+    public boolean isEmpty(int field) { return fieldEnds[field] == fieldStarts[field]; }
+
+    /**
+     * @param field index of a field in the current record
+     * @return the field as text
+     */
+    public String getString(int field) {
+        return new String(record, fieldStarts[field], fieldEnds[field] - fieldStarts[field], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param field index of a field in the current record
+     * @param text plain ASCII text to compare with
+     * @return whether the field is the same as text, ignoring upper and lower case
+     */
+    public boolean equalsIgnoreCase(int field, String text) {
+        int start = fieldStarts[field];
+        if ( fieldEnds[field] - start != text.length() ) {
+            return false;
+        }
+        for ( int i = 0; i < text.length(); i++ ) {
+            if ( Character.toLowerCase((char) record[start + i]) != Character.toLowerCase(text.charAt(i)) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * getInt() accepts exactly what Integer.parseInt() accepts: an optional sign followed by digits, with no spaces.
+     *
+     * @param field index of a field in the current record
+     * @return the field as an int
+     * @throws NumberFormatException if the field isn't an int
+     */
+    public int getInt(int field) {
+        return parseInt(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * @param start first byte of the number in record
+     * @param end byte after the number
+     * @return the number
+     * @throws NumberFormatException if the bytes aren't an int
+     */
+    public int parseInt(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if ( i < end && (record[i] == '-' || record[i] == '+') ) {
+            negative = record[i] == '-';
+            i++;
+        }
+        if ( i == end ) {
+            throw new NumberFormatException("Not a number");
+        }
+        long value = 0;
+        for ( ; i < end; i++ ) {
+            int digit = record[i] - '0';
+            if ( digit < 0 || digit > 9 ) {
+                throw new NumberFormatException("Not a number");
+            }
+            value = value * 10 + digit;
+            if ( value > (long) Integer.MAX_VALUE + 1 ) {
+                throw new NumberFormatException("Number too large");
+            }
+        }
+        if ( negative ) {
+            value = -value;
+        }
+        if ( value > Integer.MAX_VALUE ) {
+            throw new NumberFormatException("Number too large");
+        }
+        return (int) value;
+    }
+
+    /**
+     * getDouble() accepts what Double.parseDouble() accepts. Plain decimals such as "12.50" are parsed straight from
+     * the bytes; anything else (exponents, very long numbers, "NaN") falls back to Double.parseDouble().
+     *
+     * @param field index of a field in the current record
+     * @return the field as a double
+     * @throws NumberFormatException if the field isn't a number
+     */
+    public double getDouble(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        int i = start;
+        boolean negative = false;
+        if ( i < end && (record[i] == '-' || record[i] == '+') ) {
+            negative = record[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for ( ; i < end; i++ ) {
+            int b = record[i];
+            if ( b == '.' && fractionDigits < 0 ) {
+                fractionDigits = 0;
+            } else if ( b >= '0' && b <= '9' && digits < 18 ) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if ( fractionDigits >= 0 ) { fractionDigits++; }
+            } else {
+                break;
+            }
+        }
+        if ( i == end && digits > 0 && fractionDigits < POWERS_OF_TEN.length ) {
+            // Both numbers are exact doubles, so one division gives the correctly rounded result
+            double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(getString(field));
+    }
+
+    /**
+     * @param field index of a field in the current record
+     * @return where the field starts in the record; used with parseInt() to read part of a field
+     */
+    public int fieldStart(int field) { return fieldStarts[field]; }
+
+    /**
+     * @param field index of a field in the current record
+     * @return where the field ends in the record
+     */
+    public int fieldEnd(int field) { return fieldEnds[field]; }
+
+    /**
+     * @param position a position in the current record
+     * @return the byte at that position
+     */
+    public byte byteAt(int position) { return record[position]; }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,125 @@
+package InvManagement;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * IdAllocator hands out unique IDs for new parts or products in constant time.
+ * <p>
+ * It remembers the next ID after the highest one in use. When an ID is used that skips ahead of that (for example, a
+ * part with ID 10 added while the highest ID was 5), the skipped range 6-9 is saved as a gap and handed out before any
+ * new IDs past the highest. Gaps are saved as ranges, so skipping a million IDs costs the same as skipping one.
+ * <p>
+ * IDs of deleted parts or products are not handed out again, the same as before the allocator existed. A gap ID that
+ * was taken by a later add, or is being held for one (see hold()), is skipped when it comes up; every gap ID is looked
+ * at only once, so allocate() stays constant time on average.
+ * <p>
+ * Once Integer.MAX_VALUE has been used, there are no IDs past the highest left; allocate() still hands out gap IDs,
+ * and then throws instead of wrapping around to negative or duplicate IDs.
+ */
+public class IdAllocator {
+    /**
+     * Tells whether an ID is already taken; used to skip gap IDs that were used after the gap was saved.
+     */
+    private final IntPredicate inUse;
+
+    /**
+     * Next ID past the highest ID ever used; a long so it can go one past Integer.MAX_VALUE.
+     */
+    private long next = 1;
+    /**
+     * Stack of gap ranges; gapStarts[i] through gapEnds[i], both inclusive.
+     */
+    private int[] gapStarts = new int[8];
+    private int[] gapEnds = new int[8];
+    private int gapCount;
+    /**
+     * IDs held for parts or products that haven't been added yet, each mapped to 1; see hold().
+     */
+    private final IntIntMap held = new IntIntMap();
+
+    /**
+     * @param inUse tells whether an ID is already taken
+     */
+    public IdAllocator(IntPredicate inUse) {
+        this.inUse = inUse;
+    }
+
+    /**
+     * @return a new ID that isn't in use
+     * @throws IllegalStateException if every ID up to Integer.MAX_VALUE has been used
+     */
+    public synchronized int allocate() {
+        while ( gapCount > 0 ) {
+            int top = gapCount - 1;
+            int id = gapStarts[top];
+            if ( id == gapEnds[top] ) {
+                gapCount--;
+            } else {
+                gapStarts[top]++;
+            }
+            if ( !inUse.test(id) && held.get(id) == 0 ) {
+                return id;
+            }
+        }
+        if ( next > Integer.MAX_VALUE ) {
+            throw new IllegalStateException("No more IDs are available");
+        }
+        return (int) next++;
+    }
+
+    /**
+     * reserve() records that an ID is now in use. Called for every part or product added to the inventory, whether its
+     * ID came from allocate() or not.
+     *
+     * @param id the ID that was just used
+     */
+    public synchronized void reserve(int id) {
+        held.remove(id);
+        advancePast(id);
+    }
+
+    /**
+     * hold() keeps an ID chosen elsewhere, such as in an imported file, from being handed out or held again before the
+     * part or product with that ID is added. The inUse predicate can't see it until then, so an ID inside a gap would
+     * otherwise be handed out a second time. Adding the item calls reserve(), which lets go of the hold.
+     *
+     * @param id the ID the new part or product will have
+     * @return false if the ID is already being held
+     */
+    public synchronized boolean hold(int id) {
+        if ( held.get(id) != 0 ) {
+            return false;
+        }
+        held.put(id, 1);
+        advancePast(id);
+        return true;
+    }
+
+    /**
+     * @param id an ID that is taken; if it's past the highest, the IDs skipped before it become a gap
+     */
+    private void advancePast(int id) {
+        if ( id < next ) {
+            return; // Either already handed out or inside a gap; allocate() skips it if it comes up
+        }
+        if ( id > next ) {
+            pushGap((int) next, id - 1);
+        }
+        next = (long) id + 1;
+    }
+
+    /**
+     * @param start first ID of the gap
+     * @param end last ID of the gap
+     */
+    private void pushGap(int start, int end) {
+        if ( gapCount == gapStarts.length ) {
+            gapStarts = Arrays.copyOf(gapStarts, gapCount * 2);
+            gapEnds = Arrays.copyOf(gapEnds, gapCount * 2);
+        }
+        gapStarts[gapCount] = start;
+        gapEnds[gapCount] = end;
+        gapCount++;
+    }
+}
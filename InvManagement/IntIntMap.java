@@ -0,0 +1,178 @@
+package InvManagement;
+
+import java.util.Arrays;
+
+/**
+ * IntIntMap is a small hash map from int keys to int values, used to count how many of each part a product uses
+ * without boxing either number.
+ * <p>
+ * It works the same way as IntObjectMap: keys and values in parallel arrays with open addressing (linear probing),
+ * and removals shift the following entries back into place. A value of zero is never stored; put() with zero removes
+ * the key, and get() returns zero for a key that isn't there.
+ */
+public class IntIntMap {
+    /**
+     * Table size is always a power of two so the hash can be masked instead of using modulo.
+     */
+    private static final int DEFAULT_CAPACITY = 8;
+
+    /**
+     * Keys of the table; only meaningful where the matching values slot is non-zero.
+     */
+    private int[] keys;
+    /**
+     * Values of the table; zero marks an empty slot.
+     */
+    private int[] values;
+    /**
+     * Number of entries currently in the map.
+     */
+    private int size;
+    /**
+     * Table is grown once size reaches this value (75% load).
+     */
+    private int resizeAt;
+
+    public IntIntMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param key the key to look for
+     * @return the value stored under key, or zero if there is none
+     */
+    public int get(int key) {
+        int mask = keys.length - 1;
+        for ( int slot = hash(key) & mask; values[slot] != 0; slot = (slot + 1) & mask ) {
+            if ( keys[slot] == key ) {
+                return values[slot];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param key the key to store the value under
+     * @param value the value to store; zero removes the key
+     * @return the value previously stored under key, or zero if there was none
+     */
+    public int put(int key, int value) {
+        if ( value == 0 ) {
+            return remove(key);
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while ( values[slot] != 0 ) {
+            if ( keys[slot] == key ) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if ( ++size >= resizeAt ) {
+            rehash(keys.length << 1);
+        }
+        return 0;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value that was stored under key, or zero if there was none
+     */
+    public int remove(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while ( values[slot] != 0 ) {
+            if ( keys[slot] == key ) {
+                int previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of entries in the map
+     */
+    public int size() { return size; }
+
+    /**
+     * Removes every entry but keeps the current table size.
+     */
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    /**
+     * shiftBack() empties the given slot and moves any entries that probed past it back toward their home slot, so
+     * that no lookup ever stops early at the new gap.
+     *
+     * @param gap the slot being emptied
+     */
+    private void shiftBack(int gap) {
+        int mask = keys.length - 1;
+        int slot = gap;
+        while ( true ) {
+            slot = (slot + 1) & mask;
+            if ( values[slot] == 0 ) {
+                break;
+            }
+            int home = hash(keys[slot]) & mask;
+            // Entry can fill the gap only if its home slot is not between the gap and its current slot
+            if ( ((slot - home) & mask) >= ((slot - gap) & mask) ) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = 0;
+    }
+
+    /**
+     * @param capacity new table size; must be a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for ( int i = 0; i < oldValues.length; i++ ) {
+            if ( oldValues[i] != 0 ) {
+                int slot = hash(oldKeys[i]) & mask;
+                while ( values[slot] != 0 ) { slot = (slot + 1) & mask; }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @param capacity table size to allocate; must be a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        resizeAt = capacity * 3 / 4;
+    }
+
+    /**
+     * IDs are usually sequential, so the bits are mixed before masking to keep neighbouring IDs from clustering.
+     *
+     * @param key the key to hash
+     * @return the mixed hash for key
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
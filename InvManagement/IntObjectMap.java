@@ -0,0 +1,206 @@
+package InvManagement;
+
+import java.util.Arrays;
+
+/**
+ * IntObjectMap is a small hash map that uses primitive int keys, so looking up a part or product by ID never boxes the
+ * ID into an Integer.
+ * <p>
+ * Keys and values are kept in two parallel arrays with open addressing (linear probing). Removals shift the following
+ * entries back into place instead of leaving "deleted" markers, so lookups stay fast no matter how many parts have been
+ * added and deleted over time.
+ * <p>
+ * A null value is never stored; put() with a null value is treated as a removal. This lets get() use null to mean
+ * "no match", the same way the Inventory lookup methods always have.
+ *
+ * @param <V> the type of object stored under each ID
+ */
+public class IntObjectMap<V> {
+    /**
+     * Table size is always a power of two so the hash can be masked instead of using modulo.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Keys of the table; only meaningful where the matching values slot is non-null.
+     */
+    private int[] keys;
+    /**
+     * Values of the table; null marks an empty slot.
+     */
+    private Object[] values;
+    /**
+     * Number of entries currently in the map.
+     */
+    private int size;
+    /**
+     * Table is grown once size reaches this value (75% load).
+     */
+    private int resizeAt;
+
+    public IntObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize how many entries the map should hold before it has to grow
+     */
+    public IntObjectMap(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while ( capacity * 3 / 4 < expectedSize ) { capacity <<= 1; }
+        allocate(capacity);
+    }
+
+    /**
+     * @param key the id to look for
+     * @return the value stored under key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        for ( int slot = hash(key) & mask; values[slot] != null; slot = (slot + 1) & mask ) {
+            if ( keys[slot] == key ) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key the id to look for
+     * @return whether or not there is a value stored under key
+     */
+    public boolean containsKey(int key) { return get(key) != null; }
+
+    /**
+     * @param key the id to store the value under
+     * @param value the value to store; null removes the key
+     * @return the value previously stored under key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if ( value == null ) {
+            return remove(key);
+        }
+
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while ( values[slot] != null ) {
+            if ( keys[slot] == key ) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if ( ++size >= resizeAt ) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @param key the id to remove
+     * @return the value that was stored under key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while ( values[slot] != null ) {
+            if ( keys[slot] == key ) {
+                V previous = (V) values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @return number of entries in the map
+     */
+    public int size() { return size; }
+
+    /**
+     * @return whether or not the map has no entries
+     */
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * Removes every entry but keeps the current table size.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * shiftBack() empties the given slot and moves any entries that probed past it back toward their home slot, so
+     * that no lookup ever stops early at the new gap.
+     *
+     * @param gap the slot being emptied
+     */
+    private void shiftBack(int gap) {
+        int mask = keys.length - 1;
+        int slot = gap;
+        while ( true ) {
+            slot = (slot + 1) & mask;
+            if ( values[slot] == null ) {
+                break;
+            }
+            int home = hash(keys[slot]) & mask;
+            // Entry can fill the gap only if its home slot is not between the gap and its current slot
+            if ( ((slot - home) & mask) >= ((slot - gap) & mask) ) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        values[gap] = null;
+    }
+
+    /**
+     * @param capacity new table size; must be a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+
+        int mask = capacity - 1;
+        for ( int i = 0; i < oldValues.length; i++ ) {
+            if ( oldValues[i] != null ) {
+                int slot = hash(oldKeys[i]) & mask;
+                while ( values[slot] != null ) { slot = (slot + 1) & mask; }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * @param capacity table size to allocate; must be a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        resizeAt = capacity * 3 / 4;
+    }
+
+    /**
+     * IDs are usually sequential, so the bits are mixed before masking to keep neighbouring IDs from clustering.
+     *
+     * @param key the id to hash
+     * @return the mixed hash for key
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -2,6 +2,27 @@ package InvManagement;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
 /**
  * Inventory is the class that corresponds to our most important object, the inventory of parts and products!
  * <p>
@@ -9,72 +30,439 @@ import javafx.collections.ObservableList;
  * at this class and its methods.
  * <p>
  * A part or product can be added, updated, deleted, or looked up from inventory. Additionally, the array list of all
- * parts and products can be retrieved using an accessor method. The array lists cannot be set using a mutator method;
- * parts and products must be added one at a time. Multiple additions, updates, or deletions at a time could be added
- * in a future version.
+ * parts and products can be retrieved using an accessor method. The array lists cannot be set using a mutator method.
+ * Parts and products can be added, updated, or deleted one at a time or many at a time; a batch method makes the whole
+ * batch and then tells the list's listeners about it in one change event, so the table views refresh once per batch
+ * instead of once per item.
+ * <p>
+ * Every method can be called from any thread, so imports, background jobs, and API handlers can change the inventory
+ * while the main view is open. Changes and name searches are synchronized; code that needs several calls to happen
+ * with no change in between can synchronize on the inventory object itself. Lookups by ID don't lock at all (see
+ * lookupPart(int)), so they never wait behind a search or a large batch.
+ * <p>
+ * Parts and products share one lock for changes on purpose. Most part changes reach into products too: deleting a
+ * part takes it out of every product that uses it, and updating one swaps the new copy into those products, while
+ * saving a product looks up its parts. The journal, the snapshots it writes, and the change feeds also need every
+ * change in one order, so they can be replayed. With separate locks, those changes would have to take both locks
+ * anyway, and only adding a part could run alongside a product change. Holding the lock is short (a single add or
+ * update takes a few microseconds), and the slow work happens outside it: sorting runs in the background (see
+ * sortPartsInBackground(SortKey, Runnable)), sync() waits for the disk without the lock, and lookups by ID never take
+ * it.
+ * <p>
+ * The lists returned by getAllParts() and getAllProducts() are views for the JavaFX application thread. They don't
+ * hold the items; they read them from the inventory a page at a time and hear about changes through a ChangeFeed
+ * (see getPartChanges()). Changes made on other threads reach them in batches on that thread, so they can be a moment
+ * behind the inventory; the lookup methods always see the latest changes.
+ * <p>
+ * Each part and product is stamped with a version when it's stored. An editor that reads a part, changes a copy of
+ * it for a while without holding any lock, and saves it with updatePart(Part, Part) only overwrites the part if its
+ * version is still the one it read; otherwise the save is turned down and the editor can decide what to do. Products
+ * work the same way with updateProduct(Product, Product).
+ * <p>
+ * If a journal is set, it is told about every add, update, and delete before the change is made (see
+ * InventoryJournal); that's how the inventory is saved to disk between runs. A journal may write its records a little
+ * later on a thread of its own, so code that is about to tell the user a change was saved calls sync() first.
  */
 public class Inventory {
     /**
-     * Used to hold all parts in the main inventory.
+     * Used to hold all parts in the main inventory; only changed while the inventory is locked.
+     */
+    private List<Part> allParts = new ArrayList<>();
+    /**
+     * Used to hold all products in the main inventory; only changed while the inventory is locked.
      */
-    private ObservableList<Part> allParts = FXCollections.observableArrayList();
+    private final List<Product> allProducts = new ArrayList<>();
     /**
-     * Used to hold all products in the main inventory.
+     * Tell the JavaFX views how allParts and allProducts change, without a copy of either (see ChangeFeed). Every
+     * change made to those lists is recorded here too.
      */
-    private ObservableList<Product> allProducts = FXCollections.observableArrayList();
+    private final ChangeFeed<Part> partChanges = new ChangeFeed<>();
+    private final ChangeFeed<Product> productChanges = new ChangeFeed<>();
+    /**
+     * The lists getAllParts() and getAllProducts() return; made the first time they're asked for.
+     */
+    private ObservableList<Part> allPartsView;
+    private ObservableList<Product> allProductsView;
+    /**
+     * Held for writing while anything lookupPart(int) or lookupProduct(int) reads is being changed, so those lookups
+     * can run without taking a lock and just check afterwards that no change happened while they ran.
+     */
+    private final StampedLock lock = new StampedLock();
+    /**
+     * Index of all parts by ID; kept in sync with allParts so ID lookups don't have to scan the whole list.
+     */
+    private final IntObjectMap<Part> partsByID = new IntObjectMap<>();
+    /**
+     * Index of all products by ID; kept in sync with allProducts so ID lookups don't have to scan the whole list.
+     */
+    private final IntObjectMap<Product> productsByID = new IntObjectMap<>();
+    /**
+     * Where each part is in allParts, by ID; lets a part found by ID be replaced or deleted without scanning the list.
+     */
+    private final PositionIndex partPositions = new PositionIndex();
+    /**
+     * Where each product is in allProducts, by ID.
+     */
+    private final PositionIndex productPositions = new PositionIndex();
+    /**
+     * Index of all parts by normalized name; used for "starts with" name searches.
+     */
+    private final PrefixIndex<Part> partsByName = new PrefixIndex<>();
+    /**
+     * Index of all products by normalized name; used for "starts with" name searches.
+     */
+    private final PrefixIndex<Product> productsByName = new PrefixIndex<>();
+    /**
+     * Index of all parts by name trigrams; used for substring and typo-tolerant searches.
+     */
+    private final TrigramIndex<Part> partsByTrigram = new TrigramIndex<>();
+    /**
+     * Index of all products by name trigrams; used for substring and typo-tolerant searches.
+     */
+    private final TrigramIndex<Product> productsByTrigram = new TrigramIndex<>();
+    /**
+     * Indexes of all parts sorted by each SortKey; used to show a sorted table a page at a time.
+     */
+    private final EnumMap<SortKey, SortedIndex<Part>> partsInOrder =
+            sortedIndexes(Part::getId, Part::getName, Part::getStock, Part::getPrice);
+    /**
+     * Indexes of all products sorted by each SortKey; used to show a sorted table a page at a time.
+     */
+    private final EnumMap<SortKey, SortedIndex<Product>> productsInOrder =
+            sortedIndexes(Product::getId, Product::getName, Product::getStock, Product::getPrice);
+    /**
+     * Reverse index from part ID to every product that has that part associated with it; lets part updates only touch
+     * the products that actually use the part.
+     */
+    private final IntObjectMap<List<Product>> productsByPartID = new IntObjectMap<>();
+    /**
+     * Distinct part IDs each product was put under in productsByPartID. Kept separately because a product's associated
+     * parts can change before updateProduct() is called.
+     */
+    private final IdentityHashMap<Product, int[]> partIDsByProduct = new IdentityHashMap<>();
+    /**
+     * Hands out IDs for new parts.
+     */
+    private final IdAllocator partIDs = new IdAllocator(id -> partByID(id) != null);
+    /**
+     * Hands out IDs for new products.
+     */
+    private final IdAllocator productIDs = new IdAllocator(productsByID::containsKey);
+    /**
+     * Goes up every time a part or product is added, updated, or deleted; lets searches tell if earlier results are
+     * still current.
+     */
+    private volatile long modCount;
+    /**
+     * Told about every change before it's made; null when the inventory only lives in memory.
+     */
+    private InventoryJournal journal;
+    /**
+     * The parts list when the inventory was opened from a mapped snapshot or PartColumns (see loadMapped()); null
+     * otherwise.
+     */
+    private MappedPartList mappedParts;
+    /**
+     * Name index of the rows of mappedParts' table; built the first time a part is searched for by name, and null
+     * until then. Parts that aren't table rows are in partsByName and partsByTrigram instead.
+     */
+    private RowNameIndex mappedPartNames;
+    /**
+     * Orders whose sorted part index holds every part. A bulk load empties the others, and they aren't kept up to date
+     * either; each is built from the whole parts list when a table is first sorted by it (see
+     * sortPartsInBackground()).
+     */
+    private final EnumSet<SortKey> partOrdersBuilt = EnumSet.allOf(SortKey.class);
+    /**
+     * Orders whose sorted product index holds every product; see partOrdersBuilt.
+     */
+    private final EnumSet<SortKey> productOrdersBuilt = EnumSet.allOf(SortKey.class);
+    /**
+     * Sorted part indexes being built on a background thread, by order. Changes made to the parts in the meantime are
+     * written down in the build, which plays them back when it's swapped in.
+     */
+    private final EnumMap<SortKey, SortedIndexBuild<Part>> partOrdersBuilding = new EnumMap<>(SortKey.class);
+    /**
+     * Sorted product indexes being built on a background thread; see partOrdersBuilding.
+     */
+    private final EnumMap<SortKey, SortedIndexBuild<Product>> productOrdersBuilding = new EnumMap<>(SortKey.class);
 
     /**
      * @param newPart the part to add to inventory
      */
-    public void addPart(Part newPart) {
-        this.allParts.add(newPart);
+    public synchronized void addPart(Part newPart) {
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) { this.journal.partSaved(newPart); }
+            indexPart(newPart);
+            this.partPositions.added(newPart.getId(), this.allParts.size());
+            this.partChanges.record(ListEdit.added(this.allParts.size(), newPart));
+            this.allParts.add(newPart);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.partChanges.publish();
     }
 
     /**
      * @param newProduct the product to add to inventory
      */
-    public void addProduct(Product newProduct) {
-        this.allProducts.add(newProduct);
+    public synchronized void addProduct(Product newProduct) {
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) { this.journal.productSaved(newProduct); }
+            indexProduct(newProduct);
+            this.productPositions.added(newProduct.getId(), this.allProducts.size());
+            this.productChanges.record(ListEdit.added(this.allProducts.size(), newProduct));
+            this.allProducts.add(newProduct);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.productChanges.publish();
+    }
+
+    /**
+     * addParts() adds many parts with one change event; see load().
+     *
+     * @param newParts the parts to add to inventory
+     */
+    public void addParts(Collection<? extends Part> newParts) { load(new ArrayList<>(newParts), new ArrayList<>()); }
+
+    /**
+     * addProducts() adds many products with one change event; see load().
+     *
+     * @param newProducts the products to add to inventory; their associated parts should already be in inventory
+     */
+    public void addProducts(Collection<Product> newProducts) { load(new ArrayList<>(), new ArrayList<>(newProducts)); }
+
+    /**
+     * load() adds many parts and products at once, such as when a saved inventory is read back in. The name and
+     * trigram indexes are built on other threads at the same time as the ID indexes, and each list gets one change
+     * event for the whole load instead of one per item.
+     * <p>
+     * If the load adds more parts (or products) than the inventory already has, the sorted indexes are emptied, and
+     * each is built in one go, on a background thread, the first time a table is sorted by it; most loads happen at
+     * startup, when nothing is sorted yet. Smaller loads, like the batches of an import, are added to the sorted
+     * indexes as they come in.
+     *
+     * @param parts the parts to add to inventory
+     * @param products the products to add to inventory; their associated parts should be in parts or already added
+     */
+    public synchronized void load(List<Part> parts, List<Product> products) {
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) {
+                for ( Part part : parts ) { this.journal.partSaved(part); }
+                for ( Product product : products ) { this.journal.productSaved(product); }
+            }
+            this.modCount++;
+            if ( parts.size() > this.allParts.size() ) {
+                this.partOrdersBuilt.clear();
+                this.partOrdersBuilding.clear();
+                for ( SortedIndex<Part> index : this.partsInOrder.values() ) { index.clear(); }
+            }
+            if ( products.size() > this.allProducts.size() ) {
+                this.productOrdersBuilt.clear();
+                this.productOrdersBuilding.clear();
+                for ( SortedIndex<Product> index : this.productsInOrder.values() ) { index.clear(); }
+            }
+            for ( SortedIndexBuild<Part> build : this.partOrdersBuilding.values() ) { build.addedAll(parts); }
+            for ( SortedIndexBuild<Product> build : this.productOrdersBuilding.values() ) { build.addedAll(products); }
+            Set<SortKey> partOrders = EnumSet.copyOf(this.partOrdersBuilt);
+            Set<SortKey> productOrders = EnumSet.copyOf(this.productOrdersBuilt);
+
+            // Each index is only touched by one thread; join() makes the other threads' work visible here
+            CompletableFuture<Void> names = CompletableFuture.runAsync(() -> {
+                for ( Part part : parts ) { this.partsByName.add(part, part.getName()); }
+                for ( Product product : products ) { this.productsByName.add(product, product.getName()); }
+            });
+            CompletableFuture<Void> trigrams = CompletableFuture.runAsync(() -> {
+                for ( Part part : parts ) { this.partsByTrigram.add(part, part.getName()); }
+                for ( Product product : products ) { this.productsByTrigram.add(product, product.getName()); }
+            });
+            CompletableFuture<Void> orders = CompletableFuture.runAsync(() -> {
+                for ( SortKey key : partOrders ) { this.partsInOrder.get(key).addAll(parts); }
+                for ( SortKey key : productOrders ) { this.productsInOrder.get(key).addAll(products); }
+            });
+            for ( Part part : parts ) {
+                part.setVersion(this.modCount);
+                this.partIDs.reserve(part.getId());
+                this.partsByID.put(part.getId(), part);
+            }
+            for ( Product product : products ) {
+                product.setVersion(this.modCount);
+                this.productIDs.reserve(product.getId());
+                this.productsByID.put(product.getId(), product);
+                indexProductParts(product);
+            }
+            names.join();
+            trigrams.join();
+            orders.join();
+
+            if ( !parts.isEmpty() ) { this.partChanges.record(ListEdit.addedAll(this.allParts.size(), parts.size())); }
+            if ( !products.isEmpty() ) {
+                this.productChanges.record(ListEdit.addedAll(this.allProducts.size(), products.size()));
+            }
+            this.allParts.addAll(parts);
+            this.allProducts.addAll(products);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.partChanges.publish();
+        this.productChanges.publish();
+    }
+
+    /**
+     * loadMapped() opens the inventory on parts that mostly still live in a mapped snapshot file, or in PartColumns.
+     * The parts list becomes the mapped list, and ID lookups for parts that are still rows go to the table's sorted ID
+     * column, so no Part object is created until a part is shown, looked up, or changed. Name searches go to a
+     * RowNameIndex built from the table's name bytes the first time a part is searched for by name, so only the parts
+     * that match become objects. The sorted indexes are built the first time a table is sorted by them (see
+     * sortPartsInBackground()).
+     * <p>
+     * Should be called on a new inventory, before anything has used getAllParts().
+     *
+     * @param parts the mapped parts list, including any parts added since the snapshot
+     * @param products the products to add to inventory
+     */
+    public synchronized void loadMapped(MappedPartList parts, List<Product> products) {
+        if ( !this.allParts.isEmpty() ) {
+            throw new IllegalStateException("A mapped snapshot can only be loaded into an empty inventory");
+        }
+        long stamp = this.lock.writeLock();
+        try {
+            this.modCount++;
+            this.mappedParts = parts;
+            this.mappedPartNames = null;
+            this.partOrdersBuilt.clear();
+            this.partOrdersBuilding.clear();
+
+            PartTable table = parts.getTable();
+            for ( int i = 0; i < table.size(); i++ ) {
+                this.partIDs.reserve(table.getSortedID(i));
+            }
+            for ( int i = 0; i < parts.size(); i++ ) {
+                if ( parts.mappedRowAt(i) < 0 ) {
+                    indexPart(parts.get(i));
+                }
+            }
+            this.allParts = parts;
+            this.partPositions.clear();
+            if ( !parts.isEmpty() ) { this.partChanges.record(ListEdit.addedAll(0, parts.size())); }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        load(new ArrayList<>(), products);
+    }
+
+    /**
+     * generatePartID() is used when adding a new part. The ID is taken right away; it's never handed out again, even if
+     * no part is ever added with it.
+     *
+     * @return an ID that no part in the inventory is using
+     * @throws IllegalStateException if every part ID has been used
+     */
+    public synchronized int generatePartID() { return partIDs.allocate(); }
+
+    /**
+     * generateProductID() is used when adding a new product. The ID is taken right away; it's never handed out again,
+     * even if no product is ever added with it.
+     *
+     * @return an ID that no product in the inventory is using
+     * @throws IllegalStateException if every product ID has been used
+     */
+    public synchronized int generateProductID() { return productIDs.allocate(); }
+
+    /**
+     * reservePartID() takes an ID chosen elsewhere, such as in an imported file, so generatePartID() won't hand it
+     * out, and nobody else can reserve it, before the part is added.
+     *
+     * @param id the ID the new part will have
+     * @return false if a part in the inventory already has that ID, or it's already reserved
+     */
+    public synchronized boolean reservePartID(int id) {
+        return partByID(id) == null && partIDs.hold(id);
     }
 
     /**
+     * reserveProductID() takes an ID chosen elsewhere, such as in an imported file, so generateProductID() won't hand
+     * it out, and nobody else can reserve it, before the product is added.
+     *
+     * @param id the ID the new product will have
+     * @return false if a product in the inventory already has that ID, or it's already reserved
+     */
+    public synchronized boolean reserveProductID(int id) {
+        return !productsByID.containsKey(id) && productIDs.hold(id);
+    }
+
+    /**
+     * lookupPart() doesn't lock, so any number of threads can look parts up at once, even while another thread is
+     * changing the inventory. It reads the ID index optimistically and checks afterwards that no change was made
+     * while it read; only if one was does it read again, waiting for the change to finish.
+     *
      * @param partID the id to search for part matches with
      * @return matching part for partID param
      */
     public Part lookupPart(int partID) {
-        for ( Part part : allParts ) {
-            if ( part.getId() == partID ) {
-                return part;
+        long stamp = this.lock.tryOptimisticRead();
+        if ( stamp != 0 ) {
+            try {
+                Part part = partByID(partID);
+                if ( this.lock.validate(stamp) ) {
+                    return part;
+                }
+            } catch ( RuntimeException e ) {
+                // The index was read in the middle of a change; read it again below
             }
         }
-        return null;
+        stamp = this.lock.readLock();
+        try {
+            return partByID(partID);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
     }
 
     /**
+     * lookupProduct() doesn't lock; see lookupPart(int).
+     *
      * @param productID the id to search for product matches with
      * @return matching product for productID param
      */
     public Product lookupProduct(int productID) {
-        for ( Product product : allProducts ) {
-            if ( product.getId() == productID ) {
-                return product;
+        long stamp = this.lock.tryOptimisticRead();
+        if ( stamp != 0 ) {
+            try {
+                Product product = this.productsByID.get(productID);
+                if ( this.lock.validate(stamp) ) {
+                    return product;
+                }
+            } catch ( RuntimeException e ) {
+                // The index was read in the middle of a change; read it again below
             }
         }
-        return null;
+        stamp = this.lock.readLock();
+        try {
+            return this.productsByID.get(productID);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
     }
 
     /**
      * @param partName the name to search for part matches with
      * @return all matches that either start with or equal partName param
      */
-    public ObservableList<Part> lookupPart(String partName) {
-        ObservableList<Part> parts = FXCollections.observableArrayList();
-        for ( Part part : allParts ) {
-            if ( part.getName().toLowerCase().replace(" ", "").startsWith(partName.toLowerCase().replace(" ", "")) ) {
-                parts.add(part);
+    public synchronized ObservableList<Part> lookupPart(String partName) {
+        List<Part> matches = partsByName.startingWith(partName);
+        RowNameIndex rows = mappedPartNames();
+        if ( rows != null ) {
+            for ( int row : rows.startingWith(partName, this.mappedParts::isLiveRow) ) {
+                matches.add(this.mappedParts.partOfRow(row));
             }
+            matches.sort((part, other) -> PrefixIndex.compareNormalized(part.getName(), other.getName()));
         }
-        return parts;
+        return FXCollections.observableArrayList(matches);
     }
 
     /**
@@ -82,37 +470,274 @@ public class Inventory {
      * @return all matches that either start with or equal productName param
      */
 
-    public ObservableList<Product> lookupProduct(String productName) {
-        ObservableList<Product> products = FXCollections.observableArrayList();
-        for ( Product product : allProducts ) {
-            if ( product.getName().toLowerCase().replace(" ", "").startsWith(productName.toLowerCase().replace(" ", "")) ) {
-                products.add(product);
+    public synchronized ObservableList<Product> lookupProduct(String productName) {
+        return FXCollections.observableArrayList(productsByName.startingWith(productName));
+    }
+
+    /**
+     * searchParts() finds parts whose name contains partName param anywhere or is close to it (e.g. with a typo).
+     * Unlike lookupPart(String), results are ranked and limited to the best matches.
+     *
+     * @param partName the name to search for part matches with; needs at least three characters
+     * @param limit the most matches to return
+     * @return the best matching parts, best match first
+     */
+    public synchronized List<Part> searchParts(String partName, int limit) {
+        List<Part> matches = partsByTrigram.search(partName, limit);
+        RowNameIndex rows = mappedPartNames();
+        if ( rows == null ) {
+            return matches;
+        }
+        int[] found = rows.search(partName, limit, this.mappedParts::isLiveRow);
+        if ( matches.isEmpty() ) {
+            for ( int row : found ) { matches.add(this.mappedParts.partOfRow(row)); }
+            return matches;
+        }
+
+        // Both lists are ranked on their own; rank them together with the same score
+        String key = PrefixIndex.normalize(partName);
+        IdentityHashMap<Part, Double> scores = new IdentityHashMap<>();
+        for ( Part part : matches ) { scores.put(part, TrigramIndex.score(key, part.getName())); }
+        for ( int row : found ) {
+            Part part = this.mappedParts.partOfRow(row);
+            scores.put(part, TrigramIndex.score(key, part.getName()));
+            matches.add(part);
+        }
+        matches.sort((part, other) -> Double.compare(scores.get(other), scores.get(part)));
+        return new ArrayList<>(matches.subList(0, Math.min(limit, matches.size())));
+    }
+
+    /**
+     * searchProducts() finds products whose name contains productName param anywhere or is close to it (e.g. with a
+     * typo). Unlike lookupProduct(String), results are ranked and limited to the best matches.
+     *
+     * @param productName the name to search for product matches with; needs at least three characters
+     * @param limit the most matches to return
+     * @return the best matching products, best match first
+     */
+    public synchronized List<Product> searchProducts(String productName, int limit) {
+        return productsByTrigram.search(productName, limit);
+    }
+
+    /**
+     * refinePartLookup() narrows the result of an earlier part name search down to a longer search text, without
+     * searching the whole inventory again.
+     *
+     * @param previousMatches parts returned by an earlier name search
+     * @param partName the new search text; must begin with the earlier search text to give a complete result
+     * @return the parts in previousMatches that begin with or equal partName param
+     */
+    public synchronized List<Part> refinePartLookup(List<Part> previousMatches, String partName) {
+        if ( this.mappedParts == null ) {
+            return partsByName.refine(previousMatches, partName);
+        }
+        String prefix = PrefixIndex.normalize(partName);
+        List<Part> matches = new ArrayList<>();
+        for ( Part part : previousMatches ) {
+            String key = partsByName.keyOf(part);
+            if ( key == null && this.mappedParts.lookup(part.getId()) == part ) {
+                key = PrefixIndex.normalize(part.getName()); // Still a table row, so not in partsByName
+            }
+            if ( key != null && key.startsWith(prefix) ) {
+                matches.add(part);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * refineProductLookup() narrows the result of an earlier product name search down to a longer search text,
+     * without searching the whole inventory again.
+     *
+     * @param previousMatches products returned by an earlier name search
+     * @param productName the new search text; must begin with the earlier search text to give a complete result
+     * @return the products in previousMatches that begin with or equal productName param
+     */
+    public synchronized List<Product> refineProductLookup(List<Product> previousMatches, String productName) {
+        return productsByName.refine(previousMatches, productName);
+    }
+
+    /**
+     * lookupProductsWithPart() uses the reverse index, so it only costs as much as the number of products found.
+     *
+     * @param part the part to search for in products' associated parts
+     * @return every product that has part param associated with it
+     */
+    public synchronized List<Product> lookupProductsWithPart(Part part) {
+        List<Product> products = new ArrayList<>();
+        List<Product> owners = productsByPartID.get(part.getId());
+        if ( owners != null ) {
+            for ( Product product : owners ) {
+                if ( product.getAssociatedPartQuantity(part) > 0 ) {
+                    products.add(product);
+                }
             }
         }
         return products;
     }
 
     /**
-     * @param index the index at which the desired part is located in the inventory allParts array
+     * updatePart() replaces the part at index param. Any product that has the old part associated with it gets the
+     * new part in its place; the reverse index means only those products are touched.
+     * <p>
+     * If the new part has a different ID, the journal is told the old part was deleted and, once the swap is done,
+     * that each affected product was saved, since a replay can't otherwise link the products to the new ID.
+     *
+     * @param index the index at which the desired part is located in the inventory's list (see getParts()); if
+     *              there is no part there anymore, nothing is changed
+     * @param selectedPart the part with the data changes desired for update
+     * @throws ArithmeticException if the new part has a different ID, a product already uses both, and the two
+     *         quantities together would go past Integer.MAX_VALUE; nothing is changed
+     */
+    public synchronized void updatePart(int index, Part selectedPart) {
+        if ( index >= 0 && index < this.allParts.size() ) {
+            replacePart(index, selectedPart);
+        }
+    }
+
+    /**
+     * updatePart() replaces a part only if it hasn't been replaced or deleted since expectedPart was read from the
+     * inventory, so two people editing the same part can't silently overwrite each other. Nothing is locked while the
+     * part is being edited; the version check and the swap happen together when it's saved.
+     *
+     * @param expectedPart the part as it was read from the inventory before the changes were made
      * @param selectedPart the part with the data changes desired for update
+     * @return false, with nothing changed, if the part in the inventory isn't the version expectedPart has anymore
+     * @throws ArithmeticException as updatePart(int, Part) does
+     */
+    public synchronized boolean updatePart(Part expectedPart, Part selectedPart) {
+        Part current = partByID(expectedPart.getId());
+        if ( current == null || current.getVersion() != expectedPart.getVersion() ) {
+            return false;
+        }
+        replacePart(partPosition(current), selectedPart);
+        return true;
+    }
+
+    /**
+     * @param index the index of the part to replace in allParts
+     * @param selectedPart the part to put in its place
      */
-    public void updatePart(int index, Part selectedPart) { this.allParts.set(index, selectedPart); }
+    private void replacePart(int index, Part selectedPart) {
+        long stamp = this.lock.writeLock();
+        try {
+            Part oldPart = this.allParts.get(index);
+            boolean idChanged = oldPart.getId() != selectedPart.getId();
+            if ( idChanged ) {
+                checkMergedQuantities(oldPart, selectedPart);
+            }
+            if ( this.journal != null ) {
+                if ( idChanged ) { this.journal.partDeleted(oldPart); }
+                this.journal.partSaved(selectedPart);
+            }
+            unindexPart(oldPart);
+            indexPart(selectedPart);
+            this.partPositions.replaced(oldPart.getId(), selectedPart.getId(), index);
+            this.allParts.set(index, selectedPart);
+            this.partChanges.record(ListEdit.replaced(index, oldPart, selectedPart));
+            replaceInProducts(oldPart, selectedPart);
+            if ( this.journal != null && idChanged ) {
+                for ( Product product : lookupProductsWithPart(selectedPart) ) {
+                    this.journal.productSaved(product);
+                }
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.partChanges.publish();
+    }
 
     /**
-     * @param index the index at which the desired product is located in the inventory allProducts array
+     * @param index the index at which the desired product is located in the inventory's list (see getProducts()); if
+     *              there is no product there anymore, nothing is changed
      * @param newProduct the product with the data changes desired for update
      */
-    public void updateProduct(int index, Product newProduct) { this.allProducts.set(index, newProduct); }
+    public synchronized void updateProduct(int index, Product newProduct) {
+        if ( index >= 0 && index < this.allProducts.size() ) {
+            replaceProduct(index, newProduct);
+        }
+    }
+
+    /**
+     * updateProduct() replaces a product only if it hasn't been replaced or deleted since expectedProduct was read
+     * from the inventory; see updatePart(Part, Part).
+     * <p>
+     * Parts the product uses may have been updated or deleted while it was being edited. Those changes are merged in
+     * rather than turned down: each associated part is swapped for the inventory's current part with the same ID,
+     * and parts that aren't in the inventory anymore are dropped.
+     *
+     * @param expectedProduct the product as it was read from the inventory before the changes were made
+     * @param newProduct the product with the data changes desired for update; usually an edited copy of
+     *                   expectedProduct (see Product.copy())
+     * @return false, with nothing changed, if the product in the inventory isn't the version expectedProduct has
+     *         anymore
+     */
+    public synchronized boolean updateProduct(Product expectedProduct, Product newProduct) {
+        Product current = this.productsByID.get(expectedProduct.getId());
+        if ( current == null || current.getVersion() != expectedProduct.getVersion() ) {
+            return false;
+        }
+        for ( Part part : new ArrayList<>(newProduct.getAllAssociatedParts()) ) {
+            Part latest = partByID(part.getId());
+            if ( latest == null ) {
+                newProduct.deleteAssociatedPartCopies(part);
+            } else if ( latest != part ) {
+                newProduct.replaceAssociatedPart(part, latest);
+            }
+        }
+        replaceProduct(productPosition(current), newProduct);
+        return true;
+    }
+
+    /**
+     * @param index the index of the product to replace in allProducts
+     * @param newProduct the product to put in its place
+     */
+    private void replaceProduct(int index, Product newProduct) {
+        long stamp = this.lock.writeLock();
+        try {
+            Product oldProduct = this.allProducts.get(index);
+            if ( this.journal != null ) {
+                if ( oldProduct.getId() != newProduct.getId() ) { this.journal.productDeleted(oldProduct); }
+                this.journal.productSaved(newProduct);
+            }
+            unindexProduct(oldProduct);
+            indexProduct(newProduct);
+            this.productPositions.replaced(oldProduct.getId(), newProduct.getId(), index);
+            this.allProducts.set(index, newProduct);
+            this.productChanges.record(ListEdit.replaced(index, oldProduct, newProduct));
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.productChanges.publish();
+    }
+
 
     /**
+     * deletePart() removes the part from the inventory and from every product that has it associated with it. The
+     * reverse index means only those products are visited, and the whole cascade happens while the inventory is
+     * locked, so no search or other change ever sees the part half-removed.
+     *
      * @param selectedPart the part that will be deleted from the inventory allParts array
      * @return boolean: whether or not the part was successfully deleted
      */
-    public boolean deletePart(Part selectedPart) {
+    public synchronized boolean deletePart(Part selectedPart) {
+        long stamp = this.lock.writeLock();
         try {
-            this.allParts.remove(selectedPart);
+            int index = partPosition(selectedPart);
+            if ( index >= 0 ) {
+                if ( this.journal != null ) { this.journal.partDeleted(selectedPart); }
+                unindexPart(selectedPart);
+                removeFromProducts(selectedPart);
+                this.partPositions.removed(selectedPart.getId(), index);
+                this.allParts.remove(index);
+                this.partChanges.record(ListEdit.removed(index, Collections.singletonList(selectedPart)));
+            }
         } catch ( Exception e ) {
             return false;
+        } finally {
+            this.lock.unlockWrite(stamp);
+            this.partChanges.publish();
         }
         return true;
     }
@@ -121,22 +746,908 @@ public class Inventory {
      * @param selectedProduct the product that will be deleted from the inventory allProducts array
      * @return boolean: whether or not the product was successfully deleted
      */
-    public boolean deleteProduct(Product selectedProduct) {
+    public synchronized boolean deleteProduct(Product selectedProduct) {
+        long stamp = this.lock.writeLock();
         try {
-            this.allProducts.remove(selectedProduct);
+            int index = productPosition(selectedProduct);
+            if ( index >= 0 ) {
+                if ( this.journal != null ) { this.journal.productDeleted(selectedProduct); }
+                unindexProduct(selectedProduct);
+                this.productPositions.removed(selectedProduct.getId(), index);
+                this.allProducts.remove(index);
+                this.productChanges.record(ListEdit.removed(index, Collections.singletonList(selectedProduct)));
+            }
         } catch ( Exception e ) {
             return false;
+        } finally {
+            this.lock.unlockWrite(stamp);
+            this.productChanges.publish();
         }
         return true;
     }
 
     /**
+     * updateParts() replaces many parts at once. Each updated part takes the place of the part in the inventory with
+     * the same ID, keeping its position in the list, and of that part in every product that uses it. Parts whose ID
+     * isn't in the inventory are skipped. The parts list fires one change event for the whole batch.
+     *
+     * @param updatedParts the parts with the data changes desired for update
+     * @return how many parts were replaced
+     */
+    public synchronized int updateParts(Collection<? extends Part> updatedParts) {
+        IdentityHashMap<Part, Part> replacements = new IdentityHashMap<>();
+        for ( Part updated : updatedParts ) {
+            Part oldPart = partByID(updated.getId());
+            if ( oldPart != null && oldPart != updated ) {
+                replacements.put(oldPart, updated);
+            }
+        }
+        BitSet positions = positionsOf(this.allParts, replacements.keySet());
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) {
+                for ( int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1) ) {
+                    this.journal.partSaved(replacements.get(this.allParts.get(i)));
+                }
+            }
+            for ( int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1) ) {
+                Part oldPart = this.allParts.get(i);
+                Part updated = replacements.get(oldPart);
+                unindexPart(oldPart);
+                indexPart(updated);
+                this.partPositions.replaced(oldPart.getId(), updated.getId(), i);
+                this.allParts.set(i, updated);
+                this.partChanges.record(ListEdit.replaced(i, oldPart, updated));
+                replaceInProducts(oldPart, updated);
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.partChanges.publish();
+        return positions.cardinality();
+    }
+
+    /**
+     * updateProducts() replaces many products at once. Each updated product takes the place of the product in the
+     * inventory with the same ID, keeping its position in the list; products whose ID isn't in the inventory are
+     * skipped. The products list fires one change event for the whole batch.
+     *
+     * @param updatedProducts the products with the data changes desired for update
+     * @return how many products were replaced
+     */
+    public synchronized int updateProducts(Collection<Product> updatedProducts) {
+        IdentityHashMap<Product, Product> replacements = new IdentityHashMap<>();
+        for ( Product updated : updatedProducts ) {
+            Product oldProduct = this.productsByID.get(updated.getId());
+            if ( oldProduct != null && oldProduct != updated ) {
+                replacements.put(oldProduct, updated);
+            }
+        }
+        BitSet positions = positionsOf(this.allProducts, replacements.keySet());
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) {
+                for ( int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1) ) {
+                    this.journal.productSaved(replacements.get(this.allProducts.get(i)));
+                }
+            }
+            for ( int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1) ) {
+                Product oldProduct = this.allProducts.get(i);
+                Product updated = replacements.get(oldProduct);
+                unindexProduct(oldProduct);
+                indexProduct(updated);
+                this.productPositions.replaced(oldProduct.getId(), updated.getId(), i);
+                this.allProducts.set(i, updated);
+                this.productChanges.record(ListEdit.replaced(i, oldProduct, updated));
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.productChanges.publish();
+        return positions.cardinality();
+    }
+
+    /**
+     * deleteParts() deletes many parts at once, removing each from every product that uses it like deletePart()
+     * does. The parts are found and removed in one pass over the parts list, with one change event, however many
+     * there are.
+     *
+     * @param selectedParts the parts to delete; parts not in the inventory are skipped
+     * @return how many parts were deleted
+     */
+    public synchronized int deleteParts(Collection<? extends Part> selectedParts) {
+        Set<Part> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+        doomed.addAll(selectedParts);
+        BitSet positions = positionsOf(this.allParts, doomed);
+        List<Part> deleted = new ArrayList<>(positions.cardinality());
+        for ( int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1) ) {
+            deleted.add(this.allParts.get(i));
+        }
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) {
+                for ( Part part : deleted ) { this.journal.partDeleted(part); }
+            }
+            for ( Part part : deleted ) {
+                unindexPart(part);
+                removeFromProducts(part);
+                this.partPositions.removed(part.getId(), positions.nextSetBit(0));
+            }
+            recordRemovals(this.partChanges, this.allParts, positions);
+            removePositions(this.allParts, positions);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.partChanges.publish();
+        return deleted.size();
+    }
+
+    /**
+     * deleteProducts() deletes many products at once, in one pass over the products list with one change event.
+     *
+     * @param selectedProducts the products to delete; products not in the inventory are skipped
+     * @return how many products were deleted
+     */
+    public synchronized int deleteProducts(Collection<Product> selectedProducts) {
+        Set<Product> doomed = Collections.newSetFromMap(new IdentityHashMap<>());
+        doomed.addAll(selectedProducts);
+        BitSet positions = positionsOf(this.allProducts, doomed);
+        List<Product> deleted = new ArrayList<>(positions.cardinality());
+        for ( int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1) ) {
+            deleted.add(this.allProducts.get(i));
+        }
+        long stamp = this.lock.writeLock();
+        try {
+            if ( this.journal != null ) {
+                for ( Product product : deleted ) { this.journal.productDeleted(product); }
+            }
+            for ( Product product : deleted ) {
+                unindexProduct(product);
+                this.productPositions.removed(product.getId(), positions.nextSetBit(0));
+            }
+            recordRemovals(this.productChanges, this.allProducts, positions);
+            removePositions(this.allProducts, positions);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+        this.productChanges.publish();
+        return deleted.size();
+    }
+
+    /**
+     * positionsOf() finds where each of the given items is in one pass over a list.
+     *
+     * @param list the list to search
+     * @param items the items to find; contains() is used to check each item, so an identity-based set finds those
+     *              exact objects
+     * @return the positions that hold one of the items
+     */
+    private static BitSet positionsOf(List<?> list, Set<?> items) {
+        if ( list instanceof MappedPartList ) {
+            return ((MappedPartList) list).positionsOf(items);
+        }
+        BitSet positions = new BitSet(list.size());
+        for ( int i = 0; i < list.size(); i++ ) {
+            if ( items.contains(list.get(i)) ) {
+                positions.set(i);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * removePositions() removes the items at many positions of a list in one pass. Removing them one at a time would
+     * shift the rest of the list once per item.
+     *
+     * @param list the list to remove from
+     * @param positions positions to remove
+     */
+    private static <T> void removePositions(List<T> list, BitSet positions) {
+        if ( list instanceof MappedPartList ) {
+            ((MappedPartList) list).removePositions(positions);
+            return;
+        }
+        int kept = 0;
+        for ( int i = 0; i < list.size(); i++ ) {
+            if ( !positions.get(i) ) {
+                if ( kept != i ) { list.set(kept, list.get(i)); }
+                kept++;
+            }
+        }
+        list.subList(kept, list.size()).clear();
+    }
+
+    /**
+     * recordRemovals() records the removal of the items at many positions, before they're removed, as one edit per
+     * run of positions. Each run is reported where it sits after the runs before it are gone.
+     *
+     * @param changes the list's change feed
+     * @param list the list the items are about to be removed from
+     * @param positions positions about to be removed
+     */
+    private static <T> void recordRemovals(ChangeFeed<T> changes, List<T> list, BitSet positions) {
+        int removedBefore = 0;
+        for ( int from = positions.nextSetBit(0); from >= 0; from = positions.nextSetBit(from) ) {
+            int to = positions.nextClearBit(from);
+            changes.record(ListEdit.removed(from - removedBefore, removedItems(list, from, to)));
+            removedBefore += to - from;
+            from = to;
+        }
+    }
+
+    /**
+     * @param list a list
+     * @param from first position being removed
+     * @param to position after the last one
+     * @return the items being removed; for a MappedPartList, rows only become Part objects if a listener reads them
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> removedItems(List<T> list, int from, int to) {
+        if ( list instanceof MappedPartList ) {
+            return (List<T>) ((MappedPartList) list).removedParts(from, to);
+        }
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    /**
+     * @param part a part
+     * @return where that exact part is in allParts, or -1 if it isn't there
+     */
+    private int partPosition(Part part) {
+        int position = this.partPositions.find(part.getId(), this.allParts.size(), this::partIDAt);
+        return position >= 0 && this.allParts.get(position) == part ? position : -1;
+    }
+
+    /**
+     * @param product a product
+     * @return where that exact product is in allProducts, or -1 if it isn't there
+     */
+    private int productPosition(Product product) {
+        int position = this.productPositions.find(product.getId(), this.allProducts.size(),
+                index -> this.allProducts.get(index).getId());
+        return position >= 0 && this.allProducts.get(position) == product ? position : -1;
+    }
+
+    /**
+     * @param index a position in allParts
+     * @return ID of the part there; read from the table, without creating a Part, if it's still a mapped row
+     */
+    private int partIDAt(int index) {
+        if ( this.mappedParts != null ) {
+            int row = this.mappedParts.mappedRowAt(index);
+            if ( row >= 0 ) {
+                return this.mappedParts.getTable().getId(row);
+            }
+        }
+        return this.allParts.get(index).getId();
+    }
+
+    /**
+     * @param id a part ID
+     * @return the part with that ID, whether it's indexed or still a mapped snapshot row; null if there is none
+     */
+    private Part partByID(int id) {
+        Part part = this.partsByID.get(id);
+        if ( part == null && this.mappedParts != null ) {
+            part = this.mappedParts.lookup(id);
+        }
+        return part;
+    }
+
+    /**
+     * mappedPartNames() builds the name index of the mapped table's rows the first time a name search needs it.
+     *
+     * @return the index, or null if the parts list isn't a mapped list
+     */
+    private RowNameIndex mappedPartNames() {
+        if ( this.mappedParts != null && this.mappedPartNames == null ) {
+            this.mappedPartNames = new RowNameIndex(this.mappedParts.getTable());
+        }
+        return this.mappedPartNames;
+    }
+
+    /**
+     * sortPartsInBackground() makes sure one sorted part index holds every part, without making the caller wait for
+     * it. After a bulk load or loadMapped() the index is empty; the first call starts sorting a copy of the parts list
+     * into a new index on a background thread, and the inventory swaps it in when it's done. The inventory isn't
+     * locked while the parts are sorted, so the table that asked can go on showing them unsorted in the meantime.
+     * Parts that are still mapped snapshot rows become Part objects on that thread.
+     *
+     * @param key the order to build
+     * @param whenSorted run on the background thread once the order can be read, or once the build was given up
+     *                   because a bulk load replaced the parts; either way, the caller should call this again. Not
+     *                   run if the order can be read right away.
+     * @return whether the order can be read right away
+     */
+    public synchronized boolean sortPartsInBackground(SortKey key, Runnable whenSorted) {
+        return sortInBackground(key, whenSorted, this.partOrdersBuilt, this.partOrdersBuilding, this.partsInOrder,
+                () -> this.allParts instanceof MappedPartList ? ((MappedPartList) this.allParts).copy()
+                      : new ArrayList<>(this.allParts));
+    }
+
+    /**
+     * sortProductsInBackground() makes sure one sorted product index holds every product; see
+     * sortPartsInBackground().
+     *
+     * @param key the order to build
+     * @param whenSorted run on the background thread once the order can be read, or the build was given up
+     * @return whether the order can be read right away
+     */
+    public synchronized boolean sortProductsInBackground(SortKey key, Runnable whenSorted) {
+        return sortInBackground(key, whenSorted, this.productOrdersBuilt, this.productOrdersBuilding,
+                this.productsInOrder, () -> new ArrayList<>(this.allProducts));
+    }
+
+    /**
+     * sortInBackground() starts building one sorted index on a background thread, unless it's built or being built
+     * already.
+     *
+     * @param key the order to build
+     * @param whenSorted run once the build is done or given up
+     * @param built orders whose index is built
+     * @param building builds under way
+     * @param indexes the sorted indexes
+     * @param items copies the list of items; only called if a build is started
+     * @return whether the index is built already
+     */
+    private <T> boolean sortInBackground(SortKey key, Runnable whenSorted, Set<SortKey> built,
+            Map<SortKey, SortedIndexBuild<T>> building, Map<SortKey, SortedIndex<T>> indexes,
+            Supplier<List<T>> items) {
+        if ( built.contains(key) ) {
+            return true;
+        }
+        SortedIndexBuild<T> build = building.get(key);
+        if ( build != null ) {
+            build.whenDone(whenSorted);
+            return false;
+        }
+        SortedIndexBuild<T> started = new SortedIndexBuild<>(indexes.get(key).emptyCopy(), items.get());
+        started.whenDone(whenSorted);
+        building.put(key, started);
+        CompletableFuture.runAsync(started::build).whenComplete((ignored, failure) ->
+                finishSorting(key, started, failure == null, built, building, indexes));
+        return false;
+    }
+
+    /**
+     * finishSorting() swaps a built index in, after playing back the changes made while it was built, unless a bulk
+     * load or sortParts() made the build pointless in the meantime. A build that failed is dropped, and the next call
+     * to sort by that order starts over.
+     *
+     * @param key the order that was built
+     * @param build the build
+     * @param sorted whether the build finished
+     * @param built orders whose index is built
+     * @param building builds under way
+     * @param indexes the sorted indexes
+     */
+    private <T> void finishSorting(SortKey key, SortedIndexBuild<T> build, boolean sorted, Set<SortKey> built,
+            Map<SortKey, SortedIndexBuild<T>> building, Map<SortKey, SortedIndex<T>> indexes) {
+        synchronized (this) {
+            if ( building.get(key) == build ) {
+                building.remove(key);
+                if ( !sorted ) {
+                    return;
+                }
+                long stamp = this.lock.writeLock();
+                try {
+                    indexes.put(key, build.finish());
+                    built.add(key);
+                } finally {
+                    this.lock.unlockWrite(stamp);
+                }
+            }
+        }
+        for ( Runnable action : build.getWhenDone() ) {
+            action.run();
+        }
+    }
+
+    /**
+     * sortParts() builds one sorted part index from every part right away, while the inventory is locked, if it
+     * hasn't been built since a bulk load or loadMapped(). Any background build of the same order is given up.
+     *
+     * @param key the order about to be read
+     */
+    private void sortParts(SortKey key) {
+        if ( this.partOrdersBuilt.add(key) ) {
+            this.partOrdersBuilding.remove(key);
+            this.partsInOrder.get(key).addAll(this.allParts);
+        }
+    }
+
+    /**
+     * sortProducts() builds one sorted product index from every product right away; see sortParts().
+     *
+     * @param key the order about to be read
+     */
+    private void sortProducts(SortKey key) {
+        if ( this.productOrdersBuilt.add(key) ) {
+            this.productOrdersBuilding.remove(key);
+            this.productsInOrder.get(key).addAll(this.allProducts);
+        }
+    }
+
+    /**
+     * sortedIndexes() makes an empty sorted index for each SortKey.
+     *
+     * @param id reads an item's ID
+     * @param name reads an item's name
+     * @param stock reads an item's stock
+     * @param price reads an item's price
+     * @return the indexes, by the key they're sorted by
+     */
+    private static <T> EnumMap<SortKey, SortedIndex<T>> sortedIndexes(ToIntFunction<T> id, Function<T, String> name,
+            ToIntFunction<T> stock, ToDoubleFunction<T> price) {
+        Comparator<T> byID = Comparator.comparingInt(id);
+        Comparator<T> byName = (item, other) -> PrefixIndex.compareNormalized(name.apply(item), name.apply(other));
+        EnumMap<SortKey, SortedIndex<T>> indexes = new EnumMap<>(SortKey.class);
+        indexes.put(SortKey.ID, new SortedIndex<>(byID));
+        indexes.put(SortKey.NAME, new SortedIndex<>(byName.thenComparing(byID)));
+        indexes.put(SortKey.STOCK, new SortedIndex<>(Comparator.comparingInt(stock).thenComparing(byID)));
+        indexes.put(SortKey.PRICE, new SortedIndex<>(Comparator.comparingDouble(price).thenComparing(byID)));
+        return indexes;
+    }
+
+    /**
+     * @param part the part that was just put into allParts; its version is set to the new modCount
+     */
+    private void indexPart(Part part) {
+        this.modCount++;
+        part.setVersion(this.modCount);
+        this.partIDs.reserve(part.getId());
+        this.partsByID.put(part.getId(), part);
+        this.partsByName.add(part, part.getName());
+        this.partsByTrigram.add(part, part.getName());
+        for ( SortKey key : this.partOrdersBuilt ) {
+            this.partsInOrder.get(key).add(part);
+        }
+        for ( SortedIndexBuild<Part> build : this.partOrdersBuilding.values() ) {
+            build.added(part);
+        }
+    }
+
+    /**
+     * @param product the product that was just put into allProducts; its version is set to the new modCount
+     */
+    private void indexProduct(Product product) {
+        this.modCount++;
+        product.setVersion(this.modCount);
+        this.productIDs.reserve(product.getId());
+        this.productsByID.put(product.getId(), product);
+        this.productsByName.add(product, product.getName());
+        this.productsByTrigram.add(product, product.getName());
+        for ( SortKey key : this.productOrdersBuilt ) {
+            this.productsInOrder.get(key).add(product);
+        }
+        for ( SortedIndexBuild<Product> build : this.productOrdersBuilding.values() ) {
+            build.added(product);
+        }
+        indexProductParts(product);
+    }
+
+    /**
+     * unindexPart() removes a part from the indexes. The ID entry is only removed if it still points at that exact
+     * part object, so an update that kept the same ID doesn't lose the replacement part.
+     *
+     * @param part the part that is no longer in allParts
+     */
+    private void unindexPart(Part part) {
+        if ( part == null ) {
+            return;
+        }
+        this.modCount++;
+        if ( this.partsByID.get(part.getId()) == part ) {
+            this.partsByID.remove(part.getId());
+        }
+        this.partsByName.remove(part);
+        this.partsByTrigram.remove(part);
+        for ( SortKey key : this.partOrdersBuilt ) {
+            this.partsInOrder.get(key).remove(part);
+        }
+        for ( SortedIndexBuild<Part> build : this.partOrdersBuilding.values() ) {
+            build.removed(part);
+        }
+    }
+
+    /**
+     * unindexProduct() removes a product from the indexes. The ID entry is only removed if it still points at that
+     * exact product object, so an update that kept the same ID doesn't lose the replacement product.
+     *
+     * @param product the product that is no longer in allProducts
+     */
+    private void unindexProduct(Product product) {
+        if ( product == null ) {
+            return;
+        }
+        this.modCount++;
+        if ( this.productsByID.get(product.getId()) == product ) {
+            this.productsByID.remove(product.getId());
+        }
+        this.productsByName.remove(product);
+        this.productsByTrigram.remove(product);
+        for ( SortKey key : this.productOrdersBuilt ) {
+            this.productsInOrder.get(key).remove(product);
+        }
+        for ( SortedIndexBuild<Product> build : this.productOrdersBuilding.values() ) {
+            build.removed(product);
+        }
+        unindexProductParts(product);
+    }
+
+    /**
+     * indexProductParts() adds a product to the reverse index under each distinct part associated with it.
+     *
+     * @param product the product whose associated parts will be indexed
+     */
+    private void indexProductParts(Product product) {
+        List<Part> parts = product.getAllAssociatedParts();
+        int[] partIDs = new int[parts.size()];
+        for ( int i = 0; i < partIDs.length; i++ ) {
+            partIDs[i] = parts.get(i).getId();
+        }
+        Arrays.sort(partIDs);
+
+        int distinct = 0;
+        for ( int i = 0; i < partIDs.length; i++ ) {
+            if ( i > 0 && partIDs[i] == partIDs[i - 1] ) {
+                continue;
+            }
+            partIDs[distinct++] = partIDs[i];
+
+            List<Product> owners = this.productsByPartID.get(partIDs[i]);
+            if ( owners == null ) {
+                owners = new ArrayList<>(2);
+                this.productsByPartID.put(partIDs[i], owners);
+            }
+            owners.add(product);
+        }
+        this.partIDsByProduct.put(product, Arrays.copyOf(partIDs, distinct));
+    }
+
+    /**
+     * unindexProductParts() takes a product out of the reverse index, using the part IDs it was indexed under.
+     *
+     * @param product the product to take out of the reverse index
+     */
+    private void unindexProductParts(Product product) {
+        int[] partIDs = this.partIDsByProduct.remove(product);
+        if ( partIDs == null ) {
+            return;
+        }
+        for ( int partID : partIDs ) {
+            List<Product> owners = this.productsByPartID.get(partID);
+            if ( owners == null ) {
+                continue;
+            }
+            for ( int i = 0; i < owners.size(); i++ ) {
+                if ( owners.get(i) == product ) {
+                    owners.remove(i);
+                    break;
+                }
+            }
+            if ( owners.isEmpty() ) {
+                this.productsByPartID.remove(partID);
+            }
+        }
+    }
+
+    /**
+     * removeFromProducts() deletes every copy of a part from the products that use it and drops the part from the
+     * reverse index.
+     *
+     * @param part the part being deleted from the inventory
+     */
+    private void removeFromProducts(Part part) {
+        List<Product> owners = this.productsByPartID.remove(part.getId());
+        if ( owners == null ) {
+            return;
+        }
+        for ( Product product : owners ) {
+            product.deleteAssociatedPartCopies(part);
+
+            int[] partIDs = this.partIDsByProduct.get(product);
+            int at = partIDs == null ? -1 : Arrays.binarySearch(partIDs, part.getId());
+            if ( at >= 0 ) {
+                int[] remaining = new int[partIDs.length - 1];
+                System.arraycopy(partIDs, 0, remaining, 0, at);
+                System.arraycopy(partIDs, at + 1, remaining, at, remaining.length - at);
+                this.partIDsByProduct.put(product, remaining);
+            }
+        }
+    }
+
+    /**
+     * replaceInProducts() swaps oldPart for newPart in every product that uses oldPart, in one pass over each of
+     * those products' associated parts.
+     *
+     * @param oldPart the part being replaced
+     * @param newPart the part taking its place
+     */
+    private void replaceInProducts(Part oldPart, Part newPart) {
+        List<Product> owners = this.productsByPartID.get(oldPart.getId());
+        if ( owners == null ) {
+            return;
+        }
+        for ( Product product : new ArrayList<>(owners) ) {
+            product.replaceAssociatedPart(oldPart, newPart);
+            if ( oldPart.getId() != newPart.getId() ) {
+                unindexProductParts(product);
+                indexProductParts(product);
+            }
+        }
+    }
+
+    /**
+     * checkMergedQuantities() makes sure that swapping oldPart for a part with another ID won't push a quantity past
+     * Integer.MAX_VALUE in a product that already uses both, before anything is changed.
+     *
+     * @param oldPart the part being replaced
+     * @param newPart the part taking its place
+     * @throws ArithmeticException if a product's quantities together would go past Integer.MAX_VALUE
+     */
+    private void checkMergedQuantities(Part oldPart, Part newPart) {
+        List<Product> owners = this.productsByPartID.get(oldPart.getId());
+        if ( owners == null ) {
+            return;
+        }
+        for ( Product product : owners ) {
+            Math.addExact(product.getAssociatedPartQuantity(oldPart), product.getAssociatedPartQuantity(newPart));
+        }
+    }
+
+    /**
+     * snapshot() copies the inventory as it is right now; no change can be made while the copy is taken.
+     *
+     * @return every part and product in the inventory
+     */
+    public synchronized InventorySnapshot snapshot() {
+        List<Part> parts = this.mappedParts != null ? this.mappedParts.copy() : new ArrayList<>(this.allParts);
+        return new InventorySnapshot(parts, this.allProducts);
+    }
+
+    /**
+     * setJournal() should be called after the inventory has been loaded, so loading doesn't write everything out
+     * again.
+     *
+     * @param journal told about every change from now on; null to stop journaling
+     */
+    public synchronized void setJournal(InventoryJournal journal) { this.journal = journal; }
+
+    /**
+     * sync() waits until every change made so far, on any thread, has been written out by the journal, so the caller
+     * can tell the user it's saved. The inventory isn't locked while it waits: changes made on other threads in the
+     * meantime go on and are written out in the same batch (see InventoryLog). Without a journal it returns right
+     * away.
+     *
+     * @throws UncheckedIOException if the journal couldn't write the changes; they are made in memory, but will be
+     *                              lost when the program closes
+     */
+    public void sync() {
+        InventoryJournal journal;
+        synchronized (this) {
+            journal = this.journal;
+        }
+        if ( journal == null ) {
+            return;
+        }
+        try {
+            journal.sync();
+        } catch ( IOException e ) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return a number that changes every time a part or product is added, updated, or deleted
+     */
+    public long getModCount() { return modCount; }
+
+    /**
+     * getParts() reads part of the parts list from any thread; unlike getAllParts(), it always sees the latest
+     * changes. It waits for a change that is being made but not for other readers.
+     *
+     * @param offset index of the first part to return
+     * @param limit the most parts to return
+     * @return the parts from offset param on, in inventory order; empty if offset param is past the end
+     */
+    public List<Part> getParts(int offset, int limit) {
+        long stamp = this.lock.readLock();
+        try {
+            return page(this.allParts, offset, limit);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * getProducts() reads part of the products list from any thread; see getParts(). The products are copies, so
+     * they can be read while the inventory goes on changing.
+     *
+     * @param offset index of the first product to return
+     * @param limit the most products to return
+     * @return copies of the products from offset param on, in inventory order; empty if offset param is past the end
+     */
+    public List<Product> getProducts(int offset, int limit) {
+        long stamp = this.lock.readLock();
+        try {
+            List<Product> copies = new ArrayList<>();
+            for ( Product product : page(this.allProducts, offset, limit) ) {
+                copies.add(product.copy());
+            }
+            return copies;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * getProductRows() reads part of the products list for a table, in inventory order, from any thread. Unlike
+     * getProducts(int, int), the products aren't copies, so they're meant for the JavaFX views; see getParts().
+     *
+     * @param offset index of the first product to return
+     * @param limit the most products to return
+     * @return the products from offset param on, in inventory order; empty if offset param is past the end
+     */
+    public List<Product> getProductRows(int offset, int limit) {
+        long stamp = this.lock.readLock();
+        try {
+            return page(this.allProducts, offset, limit);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * getPartsInOrder() reads a page of parts in the order of one of the inventory's sorted indexes, so a table can
+     * show them sorted without the whole list being copied and sorted. The indexes are kept sorted as parts are
+     * added, updated, and deleted, so this costs about as much as the page itself. If the order hasn't been built
+     * since a bulk load or loadMapped(), it's built here first, while the inventory is locked (see sortParts()); the
+     * tables call sortPartsInBackground() first instead, so the JavaFX thread never waits for that.
+     *
+     * @param key the order to read the parts in
+     * @param ascending false to read the order from its end
+     * @param offset how many parts to skip
+     * @param limit the most parts to return
+     * @return the parts from offset param on, in that order; empty if offset param is past the end
+     */
+    public synchronized List<Part> getPartsInOrder(SortKey key, boolean ascending, int offset, int limit) {
+        sortParts(key);
+        return this.partsInOrder.get(key).page(offset, limit, ascending);
+    }
+
+    /**
+     * getPartRank() tells a table sorted through getPartsInOrder() where a part that was just added, updated, or
+     * deleted is, or was, without reading the table's rows again.
+     *
+     * @param key the order the table is in
+     * @param ascending false if the table reads the order from its end
+     * @param part a part, in the inventory or not
+     * @return how many parts in the inventory come before part param in that order
+     */
+    public synchronized int getPartRank(SortKey key, boolean ascending, Part part) {
+        sortParts(key);
+        return this.partsInOrder.get(key).rank(part, ascending);
+    }
+
+    /**
+     * getProductsInOrder() reads a page of products in the order of one of the inventory's indexes; see
+     * getPartsInOrder(). Unlike getProducts(int, int), the products aren't copies, so they're meant for the JavaFX
+     * views.
+     *
+     * @param key the order to read the products in
+     * @param ascending false to read the order from its end
+     * @param offset how many products to skip
+     * @param limit the most products to return
+     * @return the products from offset param on, in that order; empty if offset param is past the end
+     */
+    public synchronized List<Product> getProductsInOrder(SortKey key, boolean ascending, int offset, int limit) {
+        sortProducts(key);
+        return this.productsInOrder.get(key).page(offset, limit, ascending);
+    }
+
+    /**
+     * getProductRank() tells a table sorted through getProductsInOrder() where a product is, or was; see
+     * getPartRank().
+     *
+     * @param key the order the table is in
+     * @param ascending false if the table reads the order from its end
+     * @param product a product, in the inventory or not
+     * @return how many products in the inventory come before product param in that order
+     */
+    public synchronized int getProductRank(SortKey key, boolean ascending, Product product) {
+        sortProducts(key);
+        return this.productsInOrder.get(key).rank(product, ascending);
+    }
+
+    private static <T> List<T> page(List<T> list, int offset, int limit) {
+        int from = Math.max(0, Math.min(offset, list.size()));
+        int to = (int) Math.min(list.size(), (long) from + Math.max(0, limit));
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    /**
+     * @return how many parts are in the inventory; can be read from any thread
+     */
+    public int getPartCount() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.allParts.size();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * getPartTotals() adds up every part's stock and its value. Parts that are still rows of a mapped snapshot or
+     * PartColumns are read straight from the columns, without creating Part objects. It waits for a change that is
+     * being made but not for other readers.
+     *
+     * @return totals for all parts in the inventory; can be read from any thread
+     */
+    public StockTotals getPartTotals() {
+        long stamp = this.lock.readLock();
+        try {
+            StockTotals totals = new StockTotals();
+            if ( this.mappedParts != null ) {
+                this.mappedParts.addTotals(totals);
+            } else {
+                for ( Part part : this.allParts ) {
+                    totals.add(part);
+                }
+            }
+            return totals;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return how many products are in the inventory; can be read from any thread
+     */
+    public int getProductCount() {
+        long stamp = this.lock.readLock();
+        try {
+            return this.allProducts.size();
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * getPartChanges() is how the JavaFX views hear about changes to the parts list: every add, update, and delete is
+     * reported there as a ListEdit, in batches on the JavaFX application thread.
+     *
+     * @return the parts list's change feed
+     */
+    public ChangeFeed<Part> getPartChanges() { return partChanges; }
+
+    /**
+     * @return the products list's change feed; see getPartChanges()
+     */
+    public ChangeFeed<Product> getProductChanges() { return productChanges; }
+
+    /**
+     * getAllParts() returns a read-only list of every part for the JavaFX application thread. It doesn't hold the
+     * parts: it reads them from the inventory a page at a time and follows getPartChanges() (see TableRows), so it
+     * costs the same for a million parts as for ten, and it can be a moment behind the inventory.
+     *
      * @return all parts in the inventory
      */
-    public ObservableList<Part> getAllParts() { return allParts; }
+    public synchronized ObservableList<Part> getAllParts() {
+        if ( this.allPartsView == null ) {
+            this.allPartsView = TableRows.forParts(this).getList();
+        }
+        return this.allPartsView;
+    }
 
     /**
-     * @return all products in the inventory
+     * @return all products in the inventory, the same way as getAllParts()
      */
-    public ObservableList<Product> getAllProducts() { return allProducts; }
+    public synchronized ObservableList<Product> getAllProducts() {
+        if ( this.allProductsView == null ) {
+            this.allProductsView = TableRows.forProducts(this).getList();
+        }
+        return this.allProductsView;
+    }
 }
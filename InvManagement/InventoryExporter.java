@@ -0,0 +1,442 @@
+package InvManagement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * InventoryExporter writes every part and product in an InventorySnapshot to a CSV or JSON file for other systems to
+ * read. Because it works from a snapshot, the file shows the inventory at one point in time even if changes are made
+ * while it's being written, and it can run on a background thread.
+ * <p>
+ * Everything is written straight into one fixed-size buffer that is flushed to the file when full, so memory use
+ * doesn't grow with the size of the inventory. Numbers are written digit by digit and names are encoded as they're
+ * copied, and parts that are still rows of a mapped snapshot or PartColumns are copied from the columns without
+ * creating Part objects for them.
+ * <p>
+ * The CSV layout is the one InventoryImporter reads, so an exported file can be imported again. The file is written
+ * under a temporary name and renamed when complete, so a reader never sees half of an export.
+ */
+public class InventoryExporter implements Closeable {
+    /**
+     * File formats that can be written.
+     */
+    public enum Format { CSV, JSON }
+
+    /**
+     * Size of the buffer the file is written through.
+     */
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    /**
+     * Number of parts and products written between progress updates.
+     */
+    private static final int PROGRESS_EVERY = 10_000;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+    /**
+     * Scratch space for turning a price into digits; reused for every price.
+     */
+    private final StringBuilder number = new StringBuilder(32);
+    /**
+     * Scratch space for writing an int's digits backwards.
+     */
+    private final byte[] digits = new byte[11];
+
+    /**
+     * @param channel file to write to
+     */
+    private InventoryExporter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * export() writes a snapshot to a file, replacing the file if it exists.
+     *
+     * @param snapshot the parts and products to write
+     * @param file the file to write
+     * @param format CSV or JSON
+     * @param progress called now and then with the number of parts and products written so far
+     * @throws IOException if the file can't be written; the file is left as it was
+     */
+    public static void export(InventorySnapshot snapshot, Path file, Format format, LongConsumer progress)
+            throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try ( InventoryExporter out = new InventoryExporter(FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) ) {
+                if ( format == Format.CSV ) {
+                    out.writeCsv(snapshot, progress);
+                } else {
+                    out.writeJson(snapshot, progress);
+                }
+                out.flush();
+                out.channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @param snapshot the parts and products to write
+     * @param progress told how many parts and products have been written
+     * @throws IOException if the file can't be written
+     */
+    private void writeCsv(InventorySnapshot snapshot, LongConsumer progress) throws IOException {
+        writeAscii("type,id,name,price,stock,min,max,extra\n");
+        List<Part> parts = snapshot.getParts();
+        MappedPartList mapped = snapshot.getMappedParts();
+        PartTable table = mapped != null ? mapped.getTable() : null;
+        long written = 0;
+        for ( int i = 0; i < parts.size(); i++ ) {
+            int row = mapped != null ? mapped.mappedRowAt(i) : -1;
+            if ( row >= 0 ) {
+                boolean inHouse = table.isInHouse(row);
+                writeAscii(inHouse ? "InHouse," : "Outsourced,");
+                writeInt(table.getId(row));
+                writeByte(',');
+                writeCsvText(table.getNameBytes(row));
+                writeByte(',');
+                writeNumbers(table.getPrice(row), table.getStock(row), table.getMin(row), table.getMax(row), ',');
+                writeByte(',');
+                if ( inHouse ) {
+                    writeInt(table.getMachineID(row));
+                } else {
+                    writeCsvText(table.getCompanyNameBytes(row));
+                }
+            } else {
+                Part part = parts.get(i);
+                writeAscii(part instanceof InHouse ? "InHouse," : "Outsourced,");
+                writeInt(part.getId());
+                writeByte(',');
+                writeCsvText(part.getName());
+                writeByte(',');
+                writeNumbers(part.getPrice(), part.getStock(), part.getMin(), part.getMax(), ',');
+                writeByte(',');
+                if ( part instanceof InHouse ) {
+                    writeInt(((InHouse) part).getMachineID());
+                } else {
+                    writeCsvText(((Outsourced) part).getCompanyName());
+                }
+            }
+            writeByte('\n');
+            written = reportProgress(written, progress);
+        }
+        for ( Product product : snapshot.getProducts() ) {
+            writeAscii("Product,");
+            writeInt(product.getId());
+            writeByte(',');
+            writeCsvText(product.getName());
+            writeByte(',');
+            writeNumbers(product.getPrice(), product.getStock(), product.getMin(), product.getMax(), ',');
+            writeByte(',');
+            List<Part> associatedParts = product.getAllAssociatedParts();
+            for ( int i = 0; i < associatedParts.size(); i++ ) {
+                Part part = associatedParts.get(i);
+                if ( i > 0 ) { writeByte(';'); }
+                writeInt(part.getId());
+                writeByte(':');
+                writeInt(product.getAssociatedPartQuantity(part));
+            }
+            writeByte('\n');
+            written = reportProgress(written, progress);
+        }
+        progress.accept(written);
+    }
+
+    /**
+     * @param snapshot the parts and products to write
+     * @param progress told how many parts and products have been written
+     * @throws IOException if the file can't be written
+     */
+    private void writeJson(InventorySnapshot snapshot, LongConsumer progress) throws IOException {
+        writeAscii("{\"parts\":[");
+        List<Part> parts = snapshot.getParts();
+        MappedPartList mapped = snapshot.getMappedParts();
+        PartTable table = mapped != null ? mapped.getTable() : null;
+        long written = 0;
+        for ( int i = 0; i < parts.size(); i++ ) {
+            writeAscii(i == 0 ? "\n{\"type\":\"" : ",\n{\"type\":\"");
+            int row = mapped != null ? mapped.mappedRowAt(i) : -1;
+            if ( row >= 0 ) {
+                boolean inHouse = table.isInHouse(row);
+                writeAscii(inHouse ? "InHouse\",\"id\":" : "Outsourced\",\"id\":");
+                writeInt(table.getId(row));
+                writeAscii(",\"name\":");
+                writeJsonText(table.getNameBytes(row));
+                writeJsonNumbers(table.getPrice(row), table.getStock(row), table.getMin(row), table.getMax(row));
+                if ( inHouse ) {
+                    writeAscii(",\"machineID\":");
+                    writeInt(table.getMachineID(row));
+                } else {
+                    writeAscii(",\"companyName\":");
+                    writeJsonText(table.getCompanyNameBytes(row));
+                }
+            } else {
+                Part part = parts.get(i);
+                writeAscii(part instanceof InHouse ? "InHouse\",\"id\":" : "Outsourced\",\"id\":");
+                writeInt(part.getId());
+                writeAscii(",\"name\":");
+                writeJsonText(part.getName());
+                writeJsonNumbers(part.getPrice(), part.getStock(), part.getMin(), part.getMax());
+                if ( part instanceof InHouse ) {
+                    writeAscii(",\"machineID\":");
+                    writeInt(((InHouse) part).getMachineID());
+                } else {
+                    writeAscii(",\"companyName\":");
+                    writeJsonText(((Outsourced) part).getCompanyName());
+                }
+            }
+            writeByte('}');
+            written = reportProgress(written, progress);
+        }
+        writeAscii("\n],\"products\":[");
+        boolean first = true;
+        for ( Product product : snapshot.getProducts() ) {
+            writeAscii(first ? "\n{\"id\":" : ",\n{\"id\":");
+            first = false;
+            writeInt(product.getId());
+            writeAscii(",\"name\":");
+            writeJsonText(product.getName());
+            writeJsonNumbers(product.getPrice(), product.getStock(), product.getMin(), product.getMax());
+            writeAscii(",\"associatedParts\":[");
+            List<Part> associatedParts = product.getAllAssociatedParts();
+            for ( int i = 0; i < associatedParts.size(); i++ ) {
+                Part part = associatedParts.get(i);
+                writeAscii(i == 0 ? "{\"id\":" : ",{\"id\":");
+                writeInt(part.getId());
+                writeAscii(",\"quantity\":");
+                writeInt(product.getAssociatedPartQuantity(part));
+                writeByte('}');
+            }
+            writeAscii("]}");
+            written = reportProgress(written, progress);
+        }
+        writeAscii("\n]}\n");
+        progress.accept(written);
+    }
+
+    /**
+     * @param written number of parts and products written before the one just finished
+     * @param progress told the new count every PROGRESS_EVERY items
+     * @return the new count
+     */
+    private static long reportProgress(long written, LongConsumer progress) {
+        written++;
+        if ( written % PROGRESS_EVERY == 0 ) {
+            progress.accept(written);
+        }
+        return written;
+    }
+
+    /**
+     * writeNumbers() writes price, stock, min, and max in that order with separator between them.
+     */
+    private void writeNumbers(double price, int stock, int min, int max, char separator) throws IOException {
+        writeDouble(price);
+        writeByte(separator);
+        writeInt(stock);
+        writeByte(separator);
+        writeInt(min);
+        writeByte(separator);
+        writeInt(max);
+    }
+
+    /**
+     * writeJsonNumbers() writes the price, stock, min, and max members of a JSON object, each after a comma.
+     */
+    private void writeJsonNumbers(double price, int stock, int min, int max) throws IOException {
+        writeAscii(",\"price\":");
+        if ( Double.isNaN(price) || Double.isInfinite(price) ) {
+            writeAscii("null"); // JSON has no NaN or infinity
+        } else {
+            writeDouble(price);
+        }
+        writeAscii(",\"stock\":");
+        writeInt(stock);
+        writeAscii(",\"min\":");
+        writeInt(min);
+        writeAscii(",\"max\":");
+        writeInt(max);
+    }
+
+    /**
+     * writeCsvText() writes a text field, in quotes if it holds a comma, quote, or line break.
+     */
+    private void writeCsvText(String text) throws IOException {
+        boolean quote = false;
+        for ( int i = 0; i < text.length() && !quote; i++ ) {
+            char c = text.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if ( quote ) { writeByte('"'); }
+        for ( int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            if ( c == '"' ) { writeByte('"'); }
+            i = writeChar(text, i);
+        }
+        if ( quote ) { writeByte('"'); }
+    }
+
+    /**
+     * @param utf8 a text field as UTF-8 bytes; its position isn't changed
+     */
+    private void writeCsvText(ByteBuffer utf8) throws IOException {
+        boolean quote = false;
+        for ( int i = utf8.position(); i < utf8.limit() && !quote; i++ ) {
+            byte b = utf8.get(i);
+            quote = b == ',' || b == '"' || b == '\n' || b == '\r';
+        }
+        if ( quote ) { writeByte('"'); }
+        for ( int i = utf8.position(); i < utf8.limit(); i++ ) {
+            byte b = utf8.get(i);
+            if ( b == '"' ) { writeByte('"'); }
+            writeByte(b);
+        }
+        if ( quote ) { writeByte('"'); }
+    }
+
+    /**
+     * writeJsonText() writes a JSON string, escaping quotes, backslashes, and control characters.
+     */
+    private void writeJsonText(String text) throws IOException {
+        writeByte('"');
+        for ( int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            if ( c == '"' || c == '\\' || c < 0x20 ) {
+                writeJsonEscape(c);
+            } else {
+                i = writeChar(text, i);
+            }
+        }
+        writeByte('"');
+    }
+
+    /**
+     * @param utf8 a string as UTF-8 bytes; its position isn't changed
+     */
+    private void writeJsonText(ByteBuffer utf8) throws IOException {
+        writeByte('"');
+        for ( int i = utf8.position(); i < utf8.limit(); i++ ) {
+            byte b = utf8.get(i);
+            if ( b == '"' || b == '\\' || (b >= 0 && b < 0x20) ) {
+                writeJsonEscape(b);
+            } else {
+                writeByte(b);
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeJsonEscape(int c) throws IOException {
+        if ( c == '"' || c == '\\' ) {
+            writeByte('\\');
+            writeByte(c);
+        } else {
+            writeAscii("\\u00");
+            writeByte(HEX[c >> 4]);
+            writeByte(HEX[c & 0xF]);
+        }
+    }
+
+    /**
+     * writeChar() encodes one character as UTF-8; a surrogate pair is written as one 4-byte character.
+     *
+     * @param text text being written
+     * @param i index of the character to write
+     * @return index of the last character used
+     */
+    private int writeChar(String text, int i) throws IOException {
+        char c = text.charAt(i);
+        if ( c < 0x80 ) {
+            writeByte(c);
+        } else if ( c < 0x800 ) {
+            writeByte(0xC0 | (c >> 6));
+            writeByte(0x80 | (c & 0x3F));
+        } else if ( Character.isHighSurrogate(c) && i + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(i + 1)) ) {
+            int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+            writeByte(0xF0 | (codePoint >> 18));
+            writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+            writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+            writeByte(0x80 | (codePoint & 0x3F));
+            return i + 1;
+        } else if ( Character.isSurrogate(c) ) {
+            writeByte('?'); // Unpaired surrogate; the same replacement String.getBytes() uses
+        } else {
+            writeByte(0xE0 | (c >> 12));
+            writeByte(0x80 | ((c >> 6) & 0x3F));
+            writeByte(0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    /**
+     * writeDouble() writes the shortest digits that read back as the same double, as Double.toString() would.
+     */
+    private void writeDouble(double value) throws IOException {
+        number.setLength(0);
+        number.append(value);
+        for ( int i = 0; i < number.length(); i++ ) {
+            writeByte(number.charAt(i));
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        if ( value == Integer.MIN_VALUE ) {
+            writeAscii("-2147483648");
+            return;
+        }
+        if ( value < 0 ) {
+            writeByte('-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while ( value > 0 );
+        while ( count > 0 ) {
+            writeByte(digits[--count]);
+        }
+    }
+
+    /**
+     * @param text text that is known to be plain ASCII
+     */
+    private void writeAscii(String text) throws IOException {
+        for ( int i = 0; i < text.length(); i++ ) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if ( !buffer.hasRemaining() ) {
+            flush();
+        }
+        buffer.put((byte) b);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while ( buffer.hasRemaining() ) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,310 @@
+package InvManagement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * InventoryImporter reads parts and products from a CSV file, such as a supplier catalog, and adds them to an
+ * inventory in batches. The file is streamed, so its size isn't limited by memory.
+ * <p>
+ * Each row has eight fields: type, id, name, price, stock, min, max, and one more that depends on the type.
+ * <ul>
+ * <li>InHouse: the machine ID.</li>
+ * <li>Outsourced: the company name.</li>
+ * <li>Product: the associated parts as partID:quantity pairs separated by semicolons, or empty for none.</li>
+ * </ul>
+ * The id can be left empty to have one generated. A product can list parts already in the inventory or parts on
+ * earlier rows of the same file. A first row that starts with "type" is treated as a header and skipped.
+ * <p>
+ * Rows are checked with the same rules as the part and product forms' isInputValid(), with the same messages. A row
+ * that breaks a rule is skipped and reported with its line number; the rest of the file is still imported.
+ */
+public class InventoryImporter {
+    /**
+     * Number of fields in every row.
+     */
+    public static final int FIELD_COUNT = 8;
+    /**
+     * Number of parts and products handed to the inventory at a time.
+     */
+    public static final int BATCH_SIZE = 10_000;
+    /**
+     * Most bad rows kept with their messages; more are counted but not kept.
+     */
+    public static final int MAX_REPORTED_ERRORS = 1_000;
+
+    private static final int TYPE = 0;
+    private static final int ID = 1;
+    private static final int NAME = 2;
+    private static final int PRICE = 3;
+    private static final int STOCK = 4;
+    private static final int MIN = 5;
+    private static final int MAX = 6;
+    private static final int EXTRA = 7;
+
+    /**
+     * Inventory the rows are checked against; IDs are generated and reserved here.
+     */
+    private final Inventory inventory;
+    /**
+     * Receives each batch of parts and products; normally adds them to the inventory with Inventory.load().
+     */
+    private final BiConsumer<List<Part>, List<Product>> batches;
+
+    /**
+     * Parts imported so far, by ID, so later rows can use them as associated parts.
+     */
+    private final IntObjectMap<Part> importedParts = new IntObjectMap<>();
+    /**
+     * Products imported so far, by ID, so the same ID can't be used twice in one file.
+     */
+    private final IntObjectMap<Product> importedProducts = new IntObjectMap<>();
+
+    private List<Part> partBatch = new ArrayList<>();
+    private List<Product> productBatch = new ArrayList<>();
+
+    private long importedCount;
+    private long errorCount;
+    private final List<String> errors = new ArrayList<>();
+
+    /**
+     * @param inventory inventory the rows are checked against
+     * @param batches receives each batch of valid parts and products, in file order
+     */
+    public InventoryImporter(Inventory inventory, BiConsumer<List<Part>, List<Product>> batches) {
+        this.inventory = inventory;
+        this.batches = batches;
+    }
+
+    /**
+     * importFile() reads the whole file, handing valid rows to the batch consumer as it goes. It should be called on a
+     * background thread. Stops early, after the last full batch, if the thread is interrupted.
+     *
+     * @param file the CSV file to import
+     * @param progress called after each batch with the number of bytes of the file read so far
+     * @throws IOException if the file can't be read
+     */
+    public void importFile(Path file, LongConsumer progress) throws IOException {
+        try ( CsvReader reader = new CsvReader(file) ) {
+            boolean first = true;
+            while ( reader.next() ) {
+                if ( first ) {
+                    first = false;
+                    if ( reader.equalsIgnoreCase(TYPE, "type") ) {
+                        continue;
+                    }
+                }
+                String problem = importRow(reader);
+                if ( problem != null ) {
+                    reportError(reader.lineNumber(), problem);
+                }
+                if ( partBatch.size() + productBatch.size() >= BATCH_SIZE ) {
+                    flush();
+                    progress.accept(reader.bytesRead());
+                    if ( Thread.currentThread().isInterrupted() ) {
+                        return;
+                    }
+                }
+            }
+            flush();
+            progress.accept(reader.size());
+        }
+    }
+
+    /**
+     * importRow() checks one row and, if it's valid, adds its part or product to the current batch.
+     *
+     * @param reader reader positioned on the row
+     * @return why the row was skipped, or null if it was imported
+     */
+    private String importRow(CsvReader reader) {
+        if ( reader.fieldCount() != FIELD_COUNT ) {
+            return "Expected " + FIELD_COUNT + " fields but found " + reader.fieldCount() + ".";
+        }
+        boolean inHouse = reader.equalsIgnoreCase(TYPE, "InHouse");
+        boolean outsourced = reader.equalsIgnoreCase(TYPE, "Outsourced");
+        boolean product = reader.equalsIgnoreCase(TYPE, "Product");
+        if ( !inHouse && !outsourced && !product ) {
+            return "Type must be InHouse, Outsourced, or Product.";
+        }
+
+        // Same checks and messages as isInputValid() on the part and product forms
+        String errors = "";
+        if ( reader.isEmpty(NAME) || reader.isEmpty(STOCK) || reader.isEmpty(PRICE) || reader.isEmpty(MAX)
+                || reader.isEmpty(MIN) || (!product && reader.isEmpty(EXTRA)) ) {
+            errors += "All fields are required.";
+        }
+        int stock = 0;
+        int min = 0;
+        int max = 0;
+        double price = 0;
+        try {
+            stock = reader.getInt(STOCK);
+            min = reader.getInt(MIN);
+            max = reader.getInt(MAX);
+            price = reader.getDouble(PRICE);
+
+            if ( min > max ) {
+                errors = append(errors, "Min cannot be greater than max.");
+            } else if ( stock > max ) {
+                errors = append(errors, "Inventory cannot be greater than max.");
+            } else if ( stock < min ) {
+                errors = append(errors, "Inventory cannot be less than min.");
+            }
+        } catch ( NumberFormatException e ) {
+            errors = append(errors, "Inventory fields (inv, min, max) and price must be a digit.");
+        }
+        int machineID = 0;
+        if ( inHouse ) {
+            try {
+                machineID = reader.getInt(EXTRA);
+            } catch ( NumberFormatException e ) {
+                errors = append(errors, "Machine ID must be a digit.");
+            }
+        }
+        int id = 0;
+        if ( !reader.isEmpty(ID) ) {
+            try {
+                id = reader.getInt(ID);
+                if ( id <= 0 ) {
+                    errors = append(errors, "ID must be greater than 0.");
+                }
+            } catch ( NumberFormatException e ) {
+                errors = append(errors, "ID must be a digit.");
+            }
+        }
+        Product newProduct = null;
+        if ( product && errors.isEmpty() ) {
+            newProduct = new Product(id, reader.getString(NAME), price, stock, min, max);
+            errors = append(errors, addAssociatedParts(reader, newProduct));
+        }
+        if ( !errors.isEmpty() ) {
+            return errors;
+        }
+
+        // Only take the ID once the row is known to be good
+        if ( product ) {
+            if ( id == 0 ) {
+                try {
+                    id = inventory.generateProductID();
+                } catch ( IllegalStateException e ) {
+                    return "Every product ID is already in use.";
+                }
+            } else if ( importedProducts.containsKey(id) || !inventory.reserveProductID(id) ) {
+                return "Product ID " + id + " is already in use.";
+            }
+            newProduct.setId(id);
+            importedProducts.put(id, newProduct);
+            productBatch.add(newProduct);
+        } else {
+            if ( id == 0 ) {
+                try {
+                    id = inventory.generatePartID();
+                } catch ( IllegalStateException e ) {
+                    return "Every part ID is already in use.";
+                }
+            } else if ( importedParts.containsKey(id) || !inventory.reservePartID(id) ) {
+                return "Part ID " + id + " is already in use.";
+            }
+            Part part = inHouse
+                    ? new InHouse(id, reader.getString(NAME), price, stock, min, max, machineID)
+                    : new Outsourced(id, reader.getString(NAME), price, stock, min, max, reader.getString(EXTRA));
+            importedParts.put(id, part);
+            partBatch.add(part);
+        }
+        importedCount++;
+        return null;
+    }
+
+    /**
+     * @param reader reader positioned on a product row
+     * @param product product to add the row's associated parts to
+     * @return why the associated parts couldn't be read, or an empty string
+     */
+    private String addAssociatedParts(CsvReader reader, Product product) {
+        int end = reader.fieldEnd(EXTRA);
+        int start = reader.fieldStart(EXTRA);
+        while ( start < end ) {
+            int colon = -1;
+            int stop = start;
+            while ( stop < end && reader.byteAt(stop) != ';' ) {
+                if ( reader.byteAt(stop) == ':' && colon < 0 ) {
+                    colon = stop;
+                }
+                stop++;
+            }
+            int partID;
+            int quantity;
+            try {
+                if ( colon < 0 ) {
+                    throw new NumberFormatException();
+                }
+                partID = reader.parseInt(start, colon);
+                quantity = reader.parseInt(colon + 1, stop);
+            } catch ( NumberFormatException e ) {
+                return "Associated parts must be written as partID:quantity separated by semicolons.";
+            }
+            if ( quantity <= 0 ) {
+                return "Associated part quantity must be greater than 0.";
+            }
+            Part part = importedParts.get(partID);
+            if ( part == null ) {
+                part = inventory.lookupPart(partID);
+            }
+            if ( part == null ) {
+                return "Part " + partID + " does not exist.";
+            }
+            try {
+                product.addAssociatedPart(part, quantity);
+            } catch ( ArithmeticException e ) {
+                return "Associated part " + partID + " has a total quantity greater than " + Integer.MAX_VALUE + ".";
+            }
+            start = stop + 1;
+        }
+        return "";
+    }
+
+    private static String append(String errors, String error) {
+        if ( error.isEmpty() ) { return errors; }
+        return errors.isEmpty() ? error : errors + " " + error;
+    }
+
+    private void reportError(long line, String problem) {
+        errorCount++;
+        if ( errors.size() < MAX_REPORTED_ERRORS ) {
+            errors.add("Line " + line + ": " + problem);
+        }
+    }
+
+    /**
+     * flush() hands the current batch to the batch consumer, if there is anything in it.
+     */
+    private void flush() {
+        if ( partBatch.isEmpty() && productBatch.isEmpty() ) {
+            return;
+        }
+        batches.accept(partBatch, productBatch);
+        partBatch = new ArrayList<>();
+        productBatch = new ArrayList<>();
+    }
+
+    /**
+     * @return number of parts and products imported
+     */
+    public long getImportedCount() { return importedCount; }
+
+    /**
+     * @return number of rows skipped because they broke a rule
+     */
+    public long getErrorCount() { return errorCount; }
+
+    /**
+     * @return the first MAX_REPORTED_ERRORS bad rows, each as "Line n: reason"
+     */
+    public List<String> getErrors() { return Collections.unmodifiableList(errors); }
+}
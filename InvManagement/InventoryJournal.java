@@ -0,0 +1,43 @@
+package InvManagement;
+
+import java.io.IOException;
+
+/**
+ * InventoryJournal is told about every change made to an Inventory, before the change is applied.
+ * <p>
+ * Inventory calls these methods from inside its add, update, and delete methods while it holds its lock, so a journal
+ * sees changes in exactly the order they happen. If a journal method throws, the change is not made. Changes that
+ * follow from another change (such as a deleted part being removed from its products) are not reported separately;
+ * replaying the original change has the same effect.
+ * <p>
+ * A journal may write changes out after the method that reported them returns, so that a burst of changes shares one
+ * write. sync() is how a caller finds out that its change has really been written.
+ */
+public interface InventoryJournal {
+    /**
+     * @param part a part that is being added or replacing the part with the same ID
+     */
+    void partSaved(Part part);
+
+    /**
+     * @param part a part that is being deleted
+     */
+    void partDeleted(Part part);
+
+    /**
+     * @param product a product that is being added or updated, along with its associated parts
+     */
+    void productSaved(Product product);
+
+    /**
+     * @param product a product that is being deleted
+     */
+    void productDeleted(Product product);
+
+    /**
+     * sync() waits until every change reported so far has been written out for good.
+     *
+     * @throws IOException if they couldn't be written
+     */
+    void sync() throws IOException;
+}
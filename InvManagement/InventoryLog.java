@@ -0,0 +1,665 @@
+package InvManagement;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * InventoryLog is an append-only write-ahead log that keeps an Inventory on disk between runs.
+ * <p>
+ * It is attached to an Inventory as its journal, so every add, update, and delete appends one record (see
+ * InventoryRecords) before the change is made. Records are handed to a background writer thread. The writer takes
+ * everything that has piled up since its last write, writes it in one go, and then calls force() once for the whole
+ * batch (group commit). A burst of edits therefore shares a single flush to disk instead of paying for one each.
+ * Making a change never waits on the disk; whoever needs the change to be on disk before saying it's saved calls
+ * sync() (usually through Inventory.sync()), which waits for the flush that the change's batch shares with everyone
+ * else's.
+ * <p>
+ * The log lives in a directory and is split into numbered segments. Every SNAPSHOT_EVERY records, a snapshot of the
+ * whole inventory is taken: the inventory is copied while it's locked, the log moves on to a new segment at that same
+ * moment, and the copy is written out on a background thread while edits carry on. A snapshot numbered N holds
+ * everything in the segments before N, so once it is safely on disk those segments are deleted. Startup then only has
+ * to read the latest snapshot and the segments after it, no matter how long the inventory has been in use.
+ * <p>
+ * Snapshots are written as ColumnarSnapshot files and memory-mapped when the log is opened, so opening doesn't read
+ * every part; parts are only created as they are needed (see MappedPartList). Snapshots written as framed records by
+ * earlier versions (.snap files) can still be read.
+ * <p>
+ * When the log is opened, the snapshot and segments are replayed through InventoryReplay to rebuild the inventory. If
+ * the program crashed in the middle of a write, the last record will be cut off or fail its checksum; the last segment
+ * is truncated just before it, and everything up to the last complete record is kept. A record that is complete and
+ * passes its checksum but can't be applied is not a torn write, so the log is left as it is and open() fails instead.
+ * A snapshot is written to a temporary file and renamed into place, so it is either complete or not there at all.
+ * <p>
+ * A change is only on disk once the writer has flushed it, which is usually within a few milliseconds. sync() waits
+ * for that point, and close() flushes everything before returning.
+ */
+public class InventoryLog implements InventoryJournal {
+    /**
+     * Number of records written after the latest snapshot before a new snapshot is taken.
+     */
+    public static final int SNAPSHOT_EVERY = 100_000;
+    /**
+     * Size of the reusable write buffers; grows if a single record needs more.
+     */
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    /**
+     * Placed in the queue instead of a record to tell the writer to move on to the next segment.
+     */
+    private static final byte[] NEXT_SEGMENT = new byte[0];
+    /**
+     * Name of the single log file written by earlier versions; it becomes the first segment.
+     */
+    private static final String LEGACY_LOG_NAME = "inventory.log";
+
+    /**
+     * Directory holding the segments and snapshots.
+     */
+    private final Path directory;
+    /**
+     * Inventory the log is attached to; locked while a snapshot is taken.
+     */
+    private final Inventory inventory;
+    /**
+     * Background thread that writes and flushes batches of records.
+     */
+    private final Thread writer;
+    /**
+     * Background thread that writes snapshots.
+     */
+    private final ExecutorService snapshotter;
+    /**
+     * Only one snapshot is taken at a time.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Open channel to the segment being written; only used by the writer thread once the log is open.
+     */
+    private FileChannel channel;
+    /**
+     * Number of the segment the channel is writing to; only used by the writer thread once the log is open.
+     */
+    private long writerSegment;
+
+    /**
+     * Guards everything below; the writer waits on it for new records and sync() waits on it for flushes.
+     */
+    private final Object lock = new Object();
+    /**
+     * Record payloads waiting for the writer.
+     */
+    private List<byte[]> pending = new ArrayList<>();
+    /**
+     * Number of the newest segment; records appended now end up in it.
+     */
+    private long lastSegment;
+    /**
+     * Number of records appended so far.
+     */
+    private long appended;
+    /**
+     * Number of records known to be flushed to disk.
+     */
+    private long durable;
+    /**
+     * Number of records appended since the latest snapshot was taken.
+     */
+    private long sinceSnapshot;
+    /**
+     * Set while a background snapshot is waiting or running, so only one is ever queued.
+     */
+    private boolean snapshotQueued;
+    /**
+     * First error the writer ran into; once set, no more records are accepted.
+     */
+    private IOException failure;
+    /**
+     * Set by close(); the writer finishes the last batch and stops.
+     */
+    private boolean closed;
+    /**
+     * Told about a background snapshot that failed; null if no one is listening.
+     */
+    private volatile Consumer<Exception> onSnapshotFailed;
+
+    /**
+     * @param directory directory holding the segments and snapshots
+     * @param inventory inventory the log is attached to
+     * @param segment number of the segment the channel writes to
+     * @param channel open channel to the segment, positioned where the next record goes
+     */
+    private InventoryLog(Path directory, Inventory inventory, long segment, FileChannel channel) {
+        this.directory = directory;
+        this.inventory = inventory;
+        this.channel = channel;
+        this.writerSegment = segment;
+        this.lastSegment = segment;
+        this.snapshotter = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer = new Thread(this::writeLoop, "inventory-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * open() loads the latest snapshot and the log written after it into the inventory, and then attaches a log to
+     * the inventory so that every change after this point is written to the same directory.
+     *
+     * @param directory the log directory; created if it doesn't exist
+     * @param inventory an empty inventory to load the log into
+     * @return the open log, already set as the inventory's journal
+     * @throws IOException if the files can't be read or opened for writing, a snapshot or an earlier segment is
+     *                     damaged, or a complete record can't be applied
+     */
+    public static InventoryLog open(Path directory, Inventory inventory) throws IOException {
+        Files.createDirectories(directory);
+        Path legacy = directory.resolve(LEGACY_LOG_NAME);
+        if ( Files.exists(legacy) && list(directory, "segment-", ".log").isEmpty() ) {
+            Files.move(legacy, segmentFile(directory, 0), StandardCopyOption.ATOMIC_MOVE);
+        }
+        for ( Path temp : list(directory, "snapshot-", ".cols.tmp").values() ) {
+            Files.delete(temp); // Left behind by a snapshot that never finished
+        }
+
+        InventoryReplay replay;
+        TreeMap<Long, Path> snapshots = list(directory, "snapshot-", ".snap");
+        TreeMap<Long, Path> columnar = list(directory, "snapshot-", ".cols");
+        long firstSegment = 0;
+        if ( !columnar.isEmpty() && (snapshots.isEmpty() || columnar.lastKey() >= snapshots.lastKey()) ) {
+            firstSegment = columnar.lastKey();
+            ColumnarSnapshot base = ColumnarSnapshot.open(columnar.lastEntry().getValue());
+            replay = new InventoryReplay(base);
+            base.readProducts(replay::apply);
+        } else {
+            replay = new InventoryReplay();
+            if ( !snapshots.isEmpty() ) {
+                firstSegment = snapshots.lastKey();
+                readSnapshot(snapshots.lastEntry().getValue(), replay);
+            }
+        }
+        long snapshotRecords = replay.recordCount();
+
+        SortedMap<Long, Path> segments = list(directory, "segment-", ".log").tailMap(firstSegment);
+        long segment = firstSegment;
+        long validBytes = 0;
+        for ( Map.Entry<Long, Path> entry : segments.entrySet() ) {
+            segment = entry.getKey();
+            validBytes = read(entry.getValue(), replay::apply);
+            if ( validBytes < Files.size(entry.getValue()) && segment != segments.lastKey() ) {
+                // Only the newest segment can end in a torn record; anything else means records are missing
+                throw new IOException("Inventory log segment " + entry.getValue() + " is damaged");
+            }
+        }
+        replay.loadInto(inventory);
+
+        InventoryLog log = new InventoryLog(directory, inventory, segment,
+                openForAppend(segmentFile(directory, segment), validBytes));
+        log.sinceSnapshot = replay.recordCount() - snapshotRecords;
+        inventory.setJournal(log);
+        deleteBefore(directory, firstSegment); // In case the program stopped before the last cleanup finished
+        synchronized (log.lock) {
+            if ( log.sinceSnapshot >= SNAPSHOT_EVERY ) {
+                log.requestSnapshot();
+            }
+        }
+        return log;
+    }
+
+    /**
+     * read() reads every complete record in a file and hands its payload to the consumer. It stops at the end of the
+     * file or at the first record that is cut off, has an impossible length, or fails its checksum; that is what a
+     * crash in the middle of a write leaves behind.
+     *
+     * @param file the file to read
+     * @param consumer receives each record payload, positioned at its type byte
+     * @return number of bytes from the start of the file up to the end of the last good record
+     * @throws IOException if the file can't be read, or the consumer throws on a record that passed its checksum
+     */
+    public static long read(Path file, Consumer<ByteBuffer> consumer) throws IOException {
+        long validBytes = 0;
+        byte[] payload = new byte[256];
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)) ) {
+            while ( true ) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if ( length <= 0 || length > InventoryRecords.MAX_PAYLOAD_BYTES ) {
+                        break; // Damaged or half-written header
+                    }
+                    if ( payload.length < length ) { payload = new byte[Math.max(length, payload.length * 2)]; }
+                    in.readFully(payload, 0, length);
+                } catch ( EOFException e ) {
+                    break; // Record cut off by a crash, or simply the end of the file
+                }
+                if ( InventoryRecords.checksum(payload, 0, length) != checksum ) {
+                    break;
+                }
+
+                try {
+                    consumer.accept(ByteBuffer.wrap(payload, 0, length).slice());
+                } catch ( RuntimeException e ) {
+                    // The record was written in full, so cutting it off as torn would throw away a real change
+                    throw new IOException("Record at byte " + validBytes + " of " + file + " can't be applied", e);
+                }
+                validBytes += InventoryRecords.HEADER_BYTES + length;
+            }
+        }
+        return validBytes;
+    }
+
+    /**
+     * @return the directory the log is written to
+     */
+    public Path getDirectory() { return directory; }
+
+    /**
+     * setOnSnapshotFailed() sets what to do when a snapshot taken in the background fails. Nothing is lost when that
+     * happens, since the log still has every record, but the log keeps growing until a later snapshot succeeds.
+     *
+     * @param handler called on the snapshot thread with the error; null to ignore failed snapshots
+     */
+    public void setOnSnapshotFailed(Consumer<Exception> handler) { this.onSnapshotFailed = handler; }
+
+    @Override
+    public void partSaved(Part part) { append(InventoryRecords.part(part)); }
+
+    @Override
+    public void partDeleted(Part part) {
+        append(InventoryRecords.deleted(InventoryRecords.PART_DELETED, part.getId()));
+    }
+
+    @Override
+    public void productSaved(Product product) { append(InventoryRecords.product(product)); }
+
+    @Override
+    public void productDeleted(Product product) {
+        append(InventoryRecords.deleted(InventoryRecords.PRODUCT_DELETED, product.getId()));
+    }
+
+    /**
+     * append() queues a record for the writer thread and returns right away. Every SNAPSHOT_EVERY records, it also
+     * queues a snapshot on the snapshot thread.
+     *
+     * @param payload the record payload
+     * @throws UncheckedIOException if an earlier write failed; the change should not be made
+     * @throws IllegalStateException if the log has been closed
+     */
+    public void append(byte[] payload) {
+        synchronized (lock) {
+            checkWritable();
+            pending.add(payload);
+            appended++;
+            lock.notifyAll();
+            if ( ++sinceSnapshot >= SNAPSHOT_EVERY ) {
+                requestSnapshot();
+            }
+        }
+    }
+
+    /**
+     * snapshot() writes a snapshot of the whole inventory and deletes the segments it replaces. The inventory is only
+     * locked while it's copied; writing the copy happens on the calling thread while edits continue.
+     *
+     * @throws IOException if the snapshot couldn't be written; the log itself is unaffected
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            InventorySnapshot snapshot;
+            long segment;
+            // No change can slip between the copy and the switch to a new segment
+            synchronized (inventory) {
+                snapshot = inventory.snapshot();
+                segment = nextSegment();
+            }
+            writeSnapshot(snapshot, snapshotFile(directory, segment));
+            deleteBefore(directory, segment);
+        }
+    }
+
+    /**
+     * sync() waits until every record appended before the call has been flushed to disk. Records appended by other
+     * threads while it waits are flushed along with it.
+     *
+     * @throws IOException if the writer failed before getting there
+     */
+    @Override
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            while ( durable < target && failure == null ) {
+                try {
+                    lock.wait();
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the inventory log", e);
+                }
+            }
+            if ( durable < target ) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * close() lets a running snapshot finish, flushes every appended record, stops the background threads, and closes
+     * the file.
+     *
+     * @throws IOException if the last records couldn't be written
+     */
+    public void close() throws IOException {
+        synchronized (lock) {
+            if ( closed ) {
+                return;
+            }
+            snapshotter.shutdown();
+        }
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (lock) {
+            if ( failure != null ) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * requestSnapshot() queues a snapshot on the snapshot thread, unless one is already queued. Must be called while
+     * holding lock.
+     */
+    private void requestSnapshot() {
+        if ( snapshotQueued || snapshotter.isShutdown() ) {
+            return;
+        }
+        snapshotQueued = true;
+        snapshotter.execute(() -> {
+            try {
+                snapshot();
+            } catch ( IOException | RuntimeException e ) {
+                // The log still has everything; the next snapshot will try again
+                Consumer<Exception> handler = onSnapshotFailed;
+                if ( handler != null ) {
+                    handler.accept(e);
+                }
+            } finally {
+                synchronized (lock) {
+                    snapshotQueued = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * nextSegment() tells the writer to start a new segment; records appended after this call go into it.
+     *
+     * @return number of the new segment
+     */
+    private long nextSegment() {
+        synchronized (lock) {
+            checkWritable();
+            pending.add(NEXT_SEGMENT);
+            sinceSnapshot = 0;
+            lock.notifyAll();
+            return ++lastSegment;
+        }
+    }
+
+    /**
+     * Must be called while holding lock.
+     */
+    private void checkWritable() {
+        if ( failure != null ) {
+            throw new UncheckedIOException("Inventory log can no longer be written", failure);
+        }
+        if ( closed ) {
+            throw new IllegalStateException("Inventory log is closed");
+        }
+    }
+
+    /**
+     * writeLoop() runs on the writer thread: wait for records, write all of them, flush once, repeat.
+     */
+    private void writeLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(INITIAL_BUFFER_BYTES);
+        List<byte[]> batch = new ArrayList<>();
+        while ( true ) {
+            long batchEnd;
+            synchronized (lock) {
+                while ( pending.isEmpty() && !closed ) {
+                    try {
+                        lock.wait();
+                    } catch ( InterruptedException e ) {
+                        // Only close() stops the writer
+                    }
+                }
+                if ( pending.isEmpty() ) {
+                    return; // Closed and nothing left to write
+                }
+                List<byte[]> swap = pending;
+                pending = batch;
+                batch = swap;
+                batchEnd = appended;
+            }
+
+            try {
+                buffer.clear();
+                for ( byte[] payload : batch ) {
+                    if ( payload == NEXT_SEGMENT ) {
+                        drain(channel, buffer);
+                        switchSegment();
+                    } else {
+                        buffer = frame(channel, buffer, payload);
+                    }
+                }
+                drain(channel, buffer);
+                channel.force(false);
+            } catch ( IOException e ) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            batch.clear();
+
+            synchronized (lock) {
+                durable = batchEnd;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * switchSegment() finishes the current segment and opens the next one. The old segment is flushed first, so only
+     * the newest segment can ever end in a torn record.
+     *
+     * @throws IOException if either segment can't be flushed or opened
+     */
+    private void switchSegment() throws IOException {
+        channel.force(false);
+        channel.close();
+        writerSegment++;
+        channel = FileChannel.open(segmentFile(directory, writerSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        syncDirectory(directory);
+    }
+
+    /**
+     * @param file the snapshot file to read
+     * @param replay where the snapshot's records are applied
+     * @throws IOException if the file can't be read or isn't a complete snapshot
+     */
+    private static void readSnapshot(Path file, InventoryReplay replay) throws IOException {
+        long validBytes = read(file, replay::apply);
+        if ( validBytes != Files.size(file) || !replay.isSnapshotComplete() ) {
+            throw new IOException("Inventory snapshot " + file + " is damaged");
+        }
+    }
+
+    /**
+     * writeSnapshot() writes to a temporary file, flushes it, and then renames it into place, so a crash never leaves a
+     * half-written snapshot behind.
+     *
+     * @param snapshot the parts and products to write
+     * @param file where the snapshot goes
+     * @throws IOException if the snapshot can't be written
+     */
+    private static void writeSnapshot(InventorySnapshot snapshot, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        ColumnarSnapshot.write(snapshot, temp);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(file.getParent());
+    }
+
+    /**
+     * deleteBefore() deletes the segments and snapshots a newer snapshot has replaced. A file that can't be deleted
+     * right now is left for the next snapshot to clean up.
+     *
+     * @param directory the log directory
+     * @param segment number of the newest snapshot; everything numbered lower is deleted
+     * @throws IOException if the directory can't be listed
+     */
+    private static void deleteBefore(Path directory, long segment) throws IOException {
+        List<Path> old = new ArrayList<>(list(directory, "segment-", ".log").headMap(segment).values());
+        old.addAll(list(directory, "snapshot-", ".snap").headMap(segment).values());
+        old.addAll(list(directory, "snapshot-", ".cols").headMap(segment).values());
+        for ( Path file : old ) {
+            try {
+                Files.deleteIfExists(file);
+            } catch ( IOException e ) {
+                // Still open somewhere (e.g. on Windows); harmless, since the newer snapshot is read first
+            }
+        }
+    }
+
+    /**
+     * @param directory the log directory
+     * @param prefix start of the file names to look for
+     * @param suffix end of the file names to look for
+     * @return matching files by the number between prefix and suffix
+     * @throws IOException if the directory can't be listed
+     */
+    private static TreeMap<Long, Path> list(Path directory, String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try ( DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix) ) {
+            for ( Path file : stream ) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), file);
+                } catch ( NumberFormatException e ) {
+                    // Not one of ours
+                }
+            }
+        }
+        return files;
+    }
+
+    private static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("segment-%08d.log", segment));
+    }
+
+    private static Path snapshotFile(Path directory, long segment) {
+        return directory.resolve(String.format("snapshot-%08d.cols", segment));
+    }
+
+    /**
+     * @param file the log file; created if it doesn't exist
+     * @param validBytes where the last good record ends; anything after it is cut off
+     * @return channel positioned at validBytes
+     * @throws IOException if the file can't be opened
+     */
+    private static FileChannel openForAppend(Path file, long validBytes) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if ( channel.size() > validBytes ) {
+            channel.truncate(validBytes);
+            channel.force(true);
+        }
+        channel.position(validBytes);
+        return channel;
+    }
+
+    /**
+     * syncDirectory() makes a newly created or renamed file's name durable. Not every platform allows opening a
+     * directory, in which case this does nothing.
+     *
+     * @param directory the directory to flush
+     */
+    private static void syncDirectory(Path directory) {
+        try ( FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ) ) {
+            dir.force(true);
+        } catch ( IOException e ) {
+            // Not supported here; the file system will get to it
+        }
+    }
+
+    /**
+     * frame() adds one framed record to a buffer, writing the buffer out first if the record doesn't fit.
+     *
+     * @param out channel the buffer is written to
+     * @param buffer reusable buffer; replaced with a bigger one if a record doesn't fit at all
+     * @param payload the record payload
+     * @return the buffer to keep using
+     * @throws IOException if the write fails
+     */
+    private static ByteBuffer frame(FileChannel out, ByteBuffer buffer, byte[] payload) throws IOException {
+        int needed = InventoryRecords.HEADER_BYTES + payload.length;
+        if ( buffer.remaining() < needed ) {
+            drain(out, buffer);
+            if ( buffer.capacity() < needed ) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(needed) << 1);
+            }
+        }
+        InventoryRecords.frame(buffer, payload);
+        return buffer;
+    }
+
+    /**
+     * @param out channel to write to
+     * @param buffer buffer to write out; cleared afterwards
+     * @throws IOException if the write fails
+     */
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while ( buffer.hasRemaining() ) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,202 @@
+package InvManagement;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * InventoryRecords turns inventory changes into compact binary records and back; it's the file format shared by the
+ * write-ahead log and snapshots.
+ * <p>
+ * On disk every record is framed as:
+ * <ul>
+ * <li>int length: number of payload bytes</li>
+ * <li>int checksum: CRC-32C of the payload</li>
+ * <li>payload: one type byte followed by the fields for that type</li>
+ * </ul>
+ * Payload fields are written big-endian. Strings are an int byte count followed by UTF-8 bytes. A part is its ID,
+ * name, price, stock, min, max, and then either its machine ID (In-House) or company name (Outsourced). A product is
+ * the same six fields followed by a count and that many (part ID, quantity) pairs for its associated parts. Deletions
+ * only hold the ID. The last record of a snapshot file is a snapshot end, holding the number of parts and products
+ * written before it.
+ * <p>
+ * The frame lets a reader tell a complete record from one that was cut off by a crash, so a torn record at the end of
+ * a file is dropped instead of being read as garbage.
+ */
+public final class InventoryRecords {
+    /**
+     * Record types; the first byte of every payload.
+     */
+    public static final byte IN_HOUSE_PART = 1;
+    public static final byte OUTSOURCED_PART = 2;
+    public static final byte PART_DELETED = 3;
+    public static final byte PRODUCT = 4;
+    public static final byte PRODUCT_DELETED = 5;
+    public static final byte SNAPSHOT_END = 6;
+
+    /**
+     * Bytes in a frame before the payload: length and checksum.
+     */
+    public static final int HEADER_BYTES = 8;
+    /**
+     * Largest payload a reader accepts; anything bigger must be a damaged length field.
+     */
+    public static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+    private InventoryRecords() {}
+
+    /**
+     * @param part the part to encode
+     * @return the payload for a part record
+     */
+    public static byte[] part(Part part) {
+        byte[] name = part.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] company = part instanceof Outsourced
+                ? ((Outsourced) part).getCompanyName().getBytes(StandardCharsets.UTF_8) : null;
+
+        int size = 1 + 4 + 4 + name.length + 8 + 4 * 3 + (company == null ? 4 : 4 + company.length);
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(company == null ? IN_HOUSE_PART : OUTSOURCED_PART);
+        putCommon(out, part.getId(), name, part.getPrice(), part.getStock(), part.getMin(), part.getMax());
+        if ( company == null ) {
+            out.putInt(((InHouse) part).getMachineID());
+        } else {
+            putString(out, company);
+        }
+        return out.array();
+    }
+
+    /**
+     * @param product the product to encode, along with its associated parts and their quantities
+     * @return the payload for a product record
+     */
+    public static byte[] product(Product product) {
+        byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+        List<Part> parts = product.getAllAssociatedParts();
+
+        ByteBuffer out = ByteBuffer.allocate(1 + 4 + 4 + name.length + 8 + 4 * 3 + 4 + parts.size() * 8);
+        out.put(PRODUCT);
+        putCommon(out, product.getId(), name, product.getPrice(), product.getStock(), product.getMin(),
+                product.getMax());
+        out.putInt(parts.size());
+        for ( Part part : parts ) {
+            out.putInt(part.getId());
+            out.putInt(product.getAssociatedPartQuantity(part));
+        }
+        return out.array();
+    }
+
+    /**
+     * @param type PART_DELETED or PRODUCT_DELETED
+     * @param id the ID of the deleted part or product
+     * @return the payload for a deletion record
+     */
+    public static byte[] deleted(byte type, int id) {
+        return ByteBuffer.allocate(5).put(type).putInt(id).array();
+    }
+
+    /**
+     * @param partCount number of parts written to the snapshot
+     * @param productCount number of products written to the snapshot
+     * @return the payload for the record that ends a snapshot
+     */
+    public static byte[] snapshotEnd(int partCount, int productCount) {
+        return ByteBuffer.allocate(9).put(SNAPSHOT_END).putInt(partCount).putInt(productCount).array();
+    }
+
+    /**
+     * frame() writes a payload with its length and checksum in front of it.
+     *
+     * @param out where to write the framed record; needs HEADER_BYTES + payload.length bytes remaining
+     * @param payload the record payload
+     */
+    public static void frame(ByteBuffer out, byte[] payload) {
+        out.putInt(payload.length);
+        out.putInt(checksum(payload, 0, payload.length));
+        out.put(payload);
+    }
+
+    /**
+     * @param bytes array holding the payload
+     * @param offset where the payload starts
+     * @param length number of payload bytes
+     * @return the CRC-32C checksum of the payload, as stored in a frame
+     */
+    public static int checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * readPart() reads a part record; the type byte must already have been read.
+     *
+     * @param type IN_HOUSE_PART or OUTSOURCED_PART
+     * @param in the payload, positioned just after the type byte
+     * @return the decoded part
+     */
+    public static Part readPart(byte type, ByteBuffer in) {
+        int id = in.getInt();
+        String name = getString(in);
+        double price = in.getDouble();
+        int stock = in.getInt();
+        int min = in.getInt();
+        int max = in.getInt();
+        if ( type == IN_HOUSE_PART ) {
+            return new InHouse(id, name, price, stock, min, max, in.getInt());
+        }
+        return new Outsourced(id, name, price, stock, min, max, getString(in));
+    }
+
+    /**
+     * readProduct() reads a product record without its associated parts; the type byte must already have been read.
+     * Use readAssociatedParts() right after to read the (part ID, quantity) pairs that follow.
+     *
+     * @param in the payload, positioned just after the type byte
+     * @return the decoded product, with no associated parts yet
+     */
+    public static Product readProduct(ByteBuffer in) {
+        int id = in.getInt();
+        String name = getString(in);
+        return new Product(id, name, in.getDouble(), in.getInt(), in.getInt(), in.getInt());
+    }
+
+    /**
+     * @param in the payload, positioned just after the product fields
+     * @return pairs of (part ID, quantity) packed into one array: ids at even indexes, quantities at odd indexes
+     */
+    public static int[] readAssociatedParts(ByteBuffer in) {
+        int[] pairs = new int[in.getInt() * 2];
+        for ( int i = 0; i < pairs.length; i++ ) {
+            pairs[i] = in.getInt();
+        }
+        return pairs;
+    }
+
+    private static void putCommon(ByteBuffer out, int id, byte[] name, double price, int stock, int min, int max) {
+        out.putInt(id);
+        putString(out, name);
+        out.putDouble(price);
+        out.putInt(stock);
+        out.putInt(min);
+        out.putInt(max);
+    }
+
+    private static void putString(ByteBuffer out, byte[] utf8) {
+        out.putInt(utf8.length);
+        out.put(utf8);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if ( in.hasArray() ) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
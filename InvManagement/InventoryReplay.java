@@ -0,0 +1,215 @@
+package InvManagement;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * InventoryReplay rebuilds an inventory from a stream of records (see InventoryRecords), such as a write-ahead log or
+ * a snapshot followed by the log written after it.
+ * <p>
+ * Records aren't applied to an Inventory one at a time. Instead they are folded into the final state first: a part
+ * that was updated 100 times ends up as one part, and a deleted part is simply gone. Only that final state is added to
+ * the inventory in loadInto(), so replaying a long history costs one pass over the records plus one add per surviving
+ * part or product, instead of a list search for every update.
+ * <p>
+ * Deleting a part also removes it from products, the same as Inventory.deletePart() does. To get that right without
+ * visiting every product, each part ID has a generation that goes up whenever a part with that ID is added after not
+ * being in the inventory. A product only keeps an associated part if the part is still on the generation it was
+ * associated under.
+ * <p>
+ * A replay can also start from a mapped ColumnarSnapshot. Its parts are never read into the replay; records for them
+ * only note which rows were deleted or replaced, and loadInto() hands the inventory a MappedPartList that still refers
+ * to every other row.
+ * <p>
+ * Without a mapped snapshot, the replayed parts are copied into PartColumns and handed to the inventory the same way,
+ * so the inventory keeps them as rows instead of objects until they're needed.
+ */
+public class InventoryReplay {
+    /**
+     * ProductState is a replayed product along with its associated parts, which are only turned back into Part
+     * objects once all records have been read.
+     */
+    private static class ProductState {
+        final Product product;
+        final int[] pairs;
+        final int[] generations;
+
+        ProductState(Product product, int[] pairs, int[] generations) {
+            this.product = product;
+            this.pairs = pairs;
+            this.generations = generations;
+        }
+    }
+
+    /**
+     * Mapped snapshot the replay starts from, or null if it starts from an empty inventory.
+     */
+    private final ColumnarSnapshot base;
+    /**
+     * Snapshot rows whose part has been deleted.
+     */
+    private final BitSet removedRows = new BitSet();
+    /**
+     * Parts that replace a snapshot row, by row.
+     */
+    private final IntObjectMap<Part> replacements = new IntObjectMap<>();
+    /**
+     * Parts that aren't snapshot rows, in the order they were first added; updating a part keeps its place.
+     */
+    private final LinkedHashMap<Integer, Part> parts = new LinkedHashMap<>();
+    /**
+     * Products in the order they were first added; updating a product keeps its place.
+     */
+    private final LinkedHashMap<Integer, ProductState> products = new LinkedHashMap<>();
+    /**
+     * Current generation of each part ID that has ever been added.
+     */
+    private final IntIntMap partGenerations = new IntIntMap();
+    /**
+     * Number of records applied so far.
+     */
+    private long recordCount;
+    /**
+     * Set once a snapshot end record has been applied and matched what was read.
+     */
+    private boolean snapshotComplete;
+
+    /**
+     * Starts a replay from an empty inventory.
+     */
+    public InventoryReplay() { this(null); }
+
+    /**
+     * @param base mapped snapshot to start from; its product records should be applied first
+     */
+    public InventoryReplay(ColumnarSnapshot base) {
+        this.base = base;
+    }
+
+    /**
+     * @param payload one record payload, starting at its type byte
+     * @throws IllegalArgumentException if the record type is not known, or a snapshot end doesn't match the parts and
+     *                                  products read before it
+     */
+    public void apply(ByteBuffer payload) {
+        recordCount++;
+        byte type = payload.get();
+        switch (type) {
+            case InventoryRecords.IN_HOUSE_PART:
+            case InventoryRecords.OUTSOURCED_PART:
+                Part part = InventoryRecords.readPart(type, payload);
+                int row = baseRow(part.getId());
+                if ( row >= 0 ) {
+                    replacements.put(row, part);
+                } else if ( parts.put(part.getId(), part) == null ) {
+                    partGenerations.put(part.getId(), partGenerations.get(part.getId()) + 1);
+                }
+                break;
+            case InventoryRecords.PART_DELETED:
+                int deletedID = payload.getInt();
+                if ( parts.remove(deletedID) == null ) {
+                    int deletedRow = baseRow(deletedID);
+                    if ( deletedRow >= 0 ) {
+                        removedRows.set(deletedRow);
+                        replacements.remove(deletedRow);
+                    }
+                }
+                break;
+            case InventoryRecords.PRODUCT:
+                Product product = InventoryRecords.readProduct(payload);
+                int[] pairs = InventoryRecords.readAssociatedParts(payload);
+                int[] generations = new int[pairs.length / 2];
+                for ( int i = 0; i < generations.length; i++ ) {
+                    int partID = pairs[i * 2];
+                    boolean present = parts.containsKey(partID) || baseRow(partID) >= 0;
+                    generations[i] = present ? partGenerations.get(partID) : -1;
+                }
+                products.put(product.getId(), new ProductState(product, pairs, generations));
+                break;
+            case InventoryRecords.PRODUCT_DELETED:
+                products.remove(payload.getInt());
+                break;
+            case InventoryRecords.SNAPSHOT_END:
+                if ( payload.getInt() != parts.size() || payload.getInt() != products.size() ) {
+                    throw new IllegalArgumentException("Snapshot end doesn't match the records before it");
+                }
+                snapshotComplete = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown inventory record type " + type);
+        }
+    }
+
+    /**
+     * loadInto() adds the replayed parts and products to an inventory in one load. Call it once, after every record
+     * has been applied, on a new inventory that doesn't have a journal yet, so the replayed items aren't written out
+     * again.
+     *
+     * @param inventory the inventory to add the replayed parts and products to
+     */
+    public void loadInto(Inventory inventory) {
+        MappedPartList mapped;
+        if ( base != null ) {
+            mapped = new MappedPartList(base, removedRows, replacements);
+            for ( Part part : parts.values() ) {
+                mapped.add(part);
+            }
+        } else {
+            mapped = new MappedPartList(PartColumns.of(parts.values()), new BitSet(), new IntObjectMap<>());
+        }
+
+        List<Product> loaded = new ArrayList<>(products.size());
+        for ( ProductState state : products.values() ) {
+            for ( int i = 0; i < state.generations.length; i++ ) {
+                int partID = state.pairs[i * 2];
+                Part part = base != null ? parts.get(partID) : null; // Otherwise the parts are rows of the columns
+                if ( part == null ) {
+                    part = mapped.lookup(partID);
+                    if ( part == null && baseRow(partID) >= 0 ) { part = replacements.get(baseRow(partID)); }
+                }
+                if ( part != null && partGenerations.get(partID) == state.generations[i] ) {
+                    state.product.addAssociatedPart(part, state.pairs[i * 2 + 1]);
+                }
+            }
+            loaded.add(state.product);
+        }
+        inventory.loadMapped(mapped, loaded);
+    }
+
+    /**
+     * @return number of records applied so far
+     */
+    public long recordCount() { return recordCount; }
+
+    /**
+     * @return whether a snapshot end record has been applied; a snapshot without one is incomplete
+     */
+    public boolean isSnapshotComplete() { return snapshotComplete; }
+
+    /**
+     * @return number of parts the replay ended up with
+     */
+    public int partCount() {
+        return parts.size() + (base == null ? 0 : base.size() - removedRows.cardinality());
+    }
+
+    /**
+     * @param id a part ID
+     * @return the snapshot row of the part with that ID, or -1 if it isn't in the snapshot or has been deleted
+     */
+    private int baseRow(int id) {
+        if ( base == null ) {
+            return -1;
+        }
+        int row = base.rowOf(id);
+        return row >= 0 && !removedRows.get(row) ? row : -1;
+    }
+
+    /**
+     * @return number of products the replay ended up with
+     */
+    public int productCount() { return products.size(); }
+}
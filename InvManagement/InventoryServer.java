@@ -0,0 +1,779 @@
+package InvManagement;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+import java.util.function.IntSupplier;
+
+/**
+ * InventoryServer lets other programs on the same computer, such as a barcode scanner station or a reporting script,
+ * work with the inventory over HTTP and JSON instead of through the GUI. It only listens on the loopback address, so
+ * nothing outside the computer can reach it.
+ * <p>
+ * It's off unless the invmanagement.api.port system property is set; MainController then starts it on the inventory
+ * the main view shows, so changes made through it show up in the tables right away. main() runs it without the GUI.
+ * <p>
+ * Requests:
+ * <ul>
+ * <li>GET /parts?offset=0&amp;limit=100 lists parts in inventory order, at most MAX_PAGE_SIZE at a time. Adding
+ * name=text only lists parts whose name begins with or equals text, like the search bar. The response is
+ * {"total":n,"offset":o,"items":[...]}.</li>
+ * <li>GET /parts/{id} returns one part, or 404 if there is none.</li>
+ * <li>POST /parts adds a part and returns it with 201. The ID is generated unless the body has one.</li>
+ * <li>PUT /parts/{id} replaces a part. If the body has the "version" a GET returned, the part is only replaced if
+ * nobody has changed it since; otherwise the response is 409 (see Inventory.updatePart(Part, Part)).</li>
+ * <li>DELETE /parts/{id} deletes a part and removes it from every product, like the main view does, or answers 404
+ * if there is no such part.</li>
+ * </ul>
+ * Products work the same way under /products, except that a product with associated parts can't be deleted (409),
+ * again like the main view.
+ * <p>
+ * GET /stats sums up every part (see Inventory.getPartTotals()) as
+ * {"parts":n,"unitsInStock":n,"stockValue":x,"lowStock":n}, where lowStock counts parts at or below their min.
+ * <p>
+ * Parts and products are written with the same fields as InventoryExporter's JSON, plus "version", and are read back
+ * with those fields. Bad input gets 400 with {"error":"..."}, using the same messages as the part and product forms.
+ * <p>
+ * A change is only answered with success once it's in the inventory log (see Inventory.sync()), so a client that got
+ * 200, 201, or 204 knows the change survives a restart. If the log can't be written, the answer is 500.
+ * <p>
+ * Requests are handled on a fixed pool of a few threads per core. Every request only works in memory, and the
+ * inventory lets any number of ID lookups and listings run at the same time, so a small pool keeps up with thousands
+ * of connections; the accept queue is long enough to hold them while they wait.
+ */
+public class InventoryServer implements Closeable {
+    /**
+     * System property with the port to listen on; the server isn't started if it's not set.
+     */
+    public static final String PORT_PROPERTY = "invmanagement.api.port";
+    /**
+     * Items listed when a request doesn't give a limit.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    /**
+     * Most items one listing request can return.
+     */
+    public static final int MAX_PAGE_SIZE = 1_000;
+    /**
+     * Largest request body read; a part or product is a few hundred bytes.
+     */
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    /**
+     * Connections that can wait to be accepted.
+     */
+    private static final int BACKLOG = 4096;
+
+    private final Inventory inventory;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * @param inventory the inventory requests work on
+     * @param server server to handle requests for; started once the handlers are in place
+     */
+    private InventoryServer(Inventory inventory, HttpServer server) {
+        this.inventory = inventory;
+        this.server = server;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "inventory-api-" + threadCount.incrementAndGet());
+            thread.setDaemon(true); // Never keeps the program running once the main window closes
+            return thread;
+        });
+        server.setExecutor(this.executor);
+        server.createContext("/parts", exchange -> handle(exchange, "/parts"));
+        server.createContext("/products", exchange -> handle(exchange, "/products"));
+        server.createContext("/stats", exchange -> handle(exchange, "/stats"));
+        server.start();
+    }
+
+    /**
+     * start() starts a server on the loopback address.
+     *
+     * @param inventory the inventory requests work on
+     * @param port port to listen on; 0 picks a free one (see getPort())
+     * @return the running server
+     * @throws IOException if the port can't be opened
+     */
+    public static InventoryServer start(Inventory inventory, int port) throws IOException {
+        // Without this, each response on a kept-alive connection waits ~40 ms for the client's delayed ACK (Nagle).
+        // The JDK server reads it once, when the first server is created, so it has to be set here.
+        if ( System.getProperty("sun.net.httpserver.nodelay") == null ) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        return new InventoryServer(inventory, HttpServer.create(address, BACKLOG));
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() { return server.getAddress().getPort(); }
+
+    /**
+     * close() stops taking requests, gives the ones already running a second to finish, and then stops.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * main() runs the server without the GUI, on the same saved inventory the GUI uses (see InventoryLog). The port is
+     * the first argument, or the invmanagement.api.port system property, or 8080. Once the server is listening, it
+     * prints its address; that is the only thing it prints.
+     *
+     * @param args optional port
+     * @throws IOException if the saved inventory can't be opened or the port can't be opened
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger(PORT_PROPERTY, 8080);
+        Inventory inventory = new Inventory();
+        InventoryLog log = InventoryLog.open(Paths.get(System.getProperty("user.home"), ".invmanagement"), inventory);
+        InventoryServer server = start(inventory, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                log.close();
+            } catch ( IOException e ) {
+                // Left to the thread's uncaught exception handler, which reports it on the way out
+                throw new UncheckedIOException("Could not finish writing the inventory log", e);
+            }
+        }));
+        System.out.println("Inventory API listening on http://localhost:" + server.getPort());
+    }
+
+    /**
+     * Thrown by the request handlers to answer with an error status and message.
+     */
+    private static class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * handle() works out which item a request is about and sends the response, including for errors.
+     *
+     * @param exchange the request
+     * @param context "/parts", "/products", or "/stats"
+     */
+    private void handle(HttpExchange exchange, String context) throws IOException {
+        try {
+            String rest = exchange.getRequestURI().getPath().substring(context.length());
+            Integer id = null;
+            if ( !rest.isEmpty() && !rest.equals("/") ) {
+                try {
+                    id = Integer.valueOf(rest.substring(1));
+                } catch ( NumberFormatException e ) {
+                    id = -1;
+                }
+                if ( rest.charAt(0) != '/' || id < 0 ) {
+                    throw new ApiException(404, "Not found.");
+                }
+            }
+            String method = exchange.getRequestMethod();
+            if ( context.equals("/stats") ) {
+                handleStats(exchange, method, id);
+            } else if ( context.equals("/parts") ) {
+                handleParts(exchange, method, id);
+            } else {
+                handleProducts(exchange, method, id);
+            }
+        } catch ( ApiException e ) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch ( IllegalArgumentException e ) {
+            sendError(exchange, 400, e.getMessage()); // Bad JSON
+        } catch ( UncheckedIOException e ) {
+            sendError(exchange, 500, "The change could not be written to the inventory log: "
+                                     + e.getCause().getMessage());
+        } catch ( RuntimeException e ) {
+            sendError(exchange, 500, "Internal error: " + e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleParts(HttpExchange exchange, String method, Integer id) throws IOException, ApiException {
+        if ( id == null ) {
+            switch ( method ) {
+                case "GET": listParts(exchange); return;
+                case "POST": addPart(exchange); return;
+                default: throw new ApiException(405, "Use GET or POST.");
+            }
+        }
+        Part part = this.inventory.lookupPart(id);
+        if ( part == null ) {
+            throw new ApiException(404, "Part " + id + " does not exist.");
+        }
+        switch ( method ) {
+            case "GET": send(exchange, 200, appendPart(new StringBuilder(), part)); return;
+            case "PUT": updatePart(exchange, part); return;
+            case "DELETE": deletePart(exchange, id); return;
+            default: throw new ApiException(405, "Use GET, PUT, or DELETE.");
+        }
+    }
+
+    private void handleProducts(HttpExchange exchange, String method, Integer id) throws IOException, ApiException {
+        if ( id == null ) {
+            switch ( method ) {
+                case "GET": listProducts(exchange); return;
+                case "POST": addProduct(exchange); return;
+                default: throw new ApiException(405, "Use GET or POST.");
+            }
+        }
+        Product product = this.inventory.lookupProduct(id);
+        if ( product == null ) {
+            throw new ApiException(404, "Product " + id + " does not exist.");
+        }
+        switch ( method ) {
+            case "GET": send(exchange, 200, appendProduct(new StringBuilder(), copyOf(product))); return;
+            case "PUT": updateProduct(exchange, product); return;
+            case "DELETE": deleteProduct(exchange, id); return;
+            default: throw new ApiException(405, "Use GET, PUT, or DELETE.");
+        }
+    }
+
+    private void handleStats(HttpExchange exchange, String method, Integer id) throws IOException, ApiException {
+        if ( id != null ) {
+            throw new ApiException(404, "Not found.");
+        }
+        if ( !method.equals("GET") ) {
+            throw new ApiException(405, "Use GET.");
+        }
+        StockTotals totals = this.inventory.getPartTotals();
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"parts\":").append(totals.getPartCount())
+            .append(",\"unitsInStock\":").append(totals.getUnitsInStock()).append(",\"stockValue\":");
+        if ( Double.isFinite(totals.getStockValue()) ) { json.append(totals.getStockValue()); }
+        else { json.append("null"); }
+        json.append(",\"lowStock\":").append(totals.getLowStockCount()).append('}');
+        send(exchange, 200, json);
+    }
+
+    private void listParts(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, String> query = readQuery(exchange);
+        int offset = queryInt(query, "offset", 0);
+        int limit = Math.min(queryInt(query, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+        int total;
+        List<Part> page;
+        if ( query.containsKey("name") ) {
+            List<Part> matches = this.inventory.lookupPart(query.get("name"));
+            total = matches.size();
+            page = matches.subList(Math.min(offset, total), (int) Math.min(total, (long) offset + limit));
+        } else {
+            total = this.inventory.getPartCount();
+            page = this.inventory.getParts(offset, limit);
+        }
+
+        StringBuilder json = new StringBuilder(64 + 160 * page.size());
+        json.append("{\"total\":").append(total).append(",\"offset\":").append(offset).append(",\"items\":[");
+        for ( int i = 0; i < page.size(); i++ ) {
+            if ( i > 0 ) { json.append(','); }
+            appendPart(json, page.get(i));
+        }
+        send(exchange, 200, json.append("]}"));
+    }
+
+    private void listProducts(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, String> query = readQuery(exchange);
+        int offset = queryInt(query, "offset", 0);
+        int limit = Math.min(queryInt(query, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+        int total;
+        List<Product> page;
+        if ( query.containsKey("name") ) {
+            synchronized (this.inventory) { // The matches are the inventory's own products, so copy them unchanged
+                List<Product> matches = this.inventory.lookupProduct(query.get("name"));
+                total = matches.size();
+                page = new ArrayList<>();
+                for ( int i = offset; i < total && i - offset < limit; i++ ) {
+                    page.add(matches.get(i).copy());
+                }
+            }
+        } else {
+            total = this.inventory.getProductCount();
+            page = this.inventory.getProducts(offset, limit);
+        }
+
+        StringBuilder json = new StringBuilder(64 + 200 * page.size());
+        json.append("{\"total\":").append(total).append(",\"offset\":").append(offset).append(",\"items\":[");
+        for ( int i = 0; i < page.size(); i++ ) {
+            if ( i > 0 ) { json.append(','); }
+            appendProduct(json, page.get(i));
+        }
+        send(exchange, 200, json.append("]}"));
+    }
+
+    private void addPart(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, Object> body = readBody(exchange);
+        Part part = readPart(body);
+        synchronized (this.inventory) { // So no other request takes the ID in between
+            part.setId(takeID(body, "Part", this.inventory::reservePartID, this.inventory::generatePartID));
+            this.inventory.addPart(part);
+        }
+        this.inventory.sync();
+        send(exchange, 201, appendPart(new StringBuilder(), part));
+    }
+
+    private void addProduct(HttpExchange exchange) throws IOException, ApiException {
+        Map<String, Object> body = readBody(exchange);
+        Product product = readProduct(body);
+        synchronized (this.inventory) {
+            product.setId(takeID(body, "Product", this.inventory::reserveProductID,
+                                 this.inventory::generateProductID));
+            this.inventory.addProduct(product);
+            product = product.copy();
+        }
+        this.inventory.sync();
+        send(exchange, 201, appendProduct(new StringBuilder(), product));
+    }
+
+    private void updatePart(HttpExchange exchange, Part current) throws IOException, ApiException {
+        Map<String, Object> body = readBody(exchange);
+        Part part = readPart(body);
+        part.setId(current.getId());
+        checkVersion(body, current.getVersion());
+        if ( !this.inventory.updatePart(current, part) ) {
+            throw new ApiException(409, "Part " + current.getId() + " was changed by someone else; get it again.");
+        }
+        this.inventory.sync();
+        send(exchange, 200, appendPart(new StringBuilder(), part));
+    }
+
+    private void updateProduct(HttpExchange exchange, Product current) throws IOException, ApiException {
+        Map<String, Object> body = readBody(exchange);
+        Product product = readProduct(body);
+        product.setId(current.getId());
+        checkVersion(body, current.getVersion());
+        synchronized (this.inventory) {
+            if ( !this.inventory.updateProduct(current, product) ) {
+                throw new ApiException(409, "Product " + current.getId()
+                                            + " was changed by someone else; get it again.");
+            }
+            product = product.copy();
+        }
+        this.inventory.sync();
+        send(exchange, 200, appendProduct(new StringBuilder(), product));
+    }
+
+    /**
+     * deletePart() looks the part up again and deletes it while the inventory is locked, so a part deleted by another
+     * request in between is reported as missing instead of as deleted twice.
+     *
+     * @param exchange the request
+     * @param id ID of the part to delete
+     * @throws ApiException 404 if there is no such part, 500 if the delete couldn't be written to the inventory log
+     */
+    private void deletePart(HttpExchange exchange, int id) throws IOException, ApiException {
+        synchronized (this.inventory) {
+            Part part = this.inventory.lookupPart(id);
+            if ( part == null ) {
+                throw new ApiException(404, "Part " + id + " does not exist.");
+            }
+            if ( !this.inventory.deletePart(part) ) {
+                throw new ApiException(500, "Part " + id + " could not be written to the inventory log, so it was "
+                                            + "not deleted.");
+            }
+        }
+        this.inventory.sync();
+        send(exchange, 204, null);
+    }
+
+    /**
+     * deleteProduct() deletes a product the same way deletePart() does, but only if it has no associated parts.
+     *
+     * @param exchange the request
+     * @param id ID of the product to delete
+     * @throws ApiException 404 if there is no such product, 409 if it has associated parts, 500 if the delete
+     *                      couldn't be written to the inventory log
+     */
+    private void deleteProduct(HttpExchange exchange, int id) throws IOException, ApiException {
+        synchronized (this.inventory) {
+            Product product = this.inventory.lookupProduct(id);
+            if ( product == null ) {
+                throw new ApiException(404, "Product " + id + " does not exist.");
+            }
+            if ( !product.getAllAssociatedParts().isEmpty() ) {
+                throw new ApiException(409, "Product with associated parts cannot be deleted.");
+            }
+            if ( !this.inventory.deleteProduct(product) ) {
+                throw new ApiException(500, "Product " + id + " could not be written to the inventory log, so it "
+                                            + "was not deleted.");
+            }
+        }
+        this.inventory.sync();
+        send(exchange, 204, null);
+    }
+
+    /**
+     * @param product a product in the inventory
+     * @return a copy that can be written out while the inventory goes on changing
+     */
+    private Product copyOf(Product product) {
+        synchronized (this.inventory) {
+            return product.copy();
+        }
+    }
+
+    /**
+     * @param body request body
+     * @param currentVersion version of the item in the inventory
+     * @throws ApiException 409 if the body has a different version
+     */
+    private static void checkVersion(Map<String, Object> body, long currentVersion) throws ApiException {
+        Object version = body.get("version");
+        if ( version != null && !(version instanceof Double && (Double) version == currentVersion) ) {
+            throw new ApiException(409, "This was changed by someone else since that version; get it again.");
+        }
+    }
+
+    /**
+     * takeID() takes the ID the body asks for, or a new one if it doesn't give one. Should be called while the
+     * inventory is locked, just before the item is added.
+     */
+    private static int takeID(Map<String, Object> body, String kind, IntPredicate reserve, IntSupplier generate)
+            throws ApiException {
+        if ( body.get("id") == null ) {
+            try {
+                return generate.getAsInt();
+            } catch ( IllegalStateException e ) {
+                throw new ApiException(409, "Every " + kind.toLowerCase(Locale.ROOT) + " ID is already in use.");
+            }
+        }
+        int id;
+        try {
+            id = intField(body, "id");
+        } catch ( NumberFormatException e ) {
+            throw new ApiException(400, "ID must be a digit.");
+        }
+        if ( id <= 0 ) {
+            throw new ApiException(400, "ID must be greater than 0.");
+        }
+        if ( !reserve.test(id) ) {
+            throw new ApiException(409, kind + " ID " + id + " is already in use.");
+        }
+        return id;
+    }
+
+    /**
+     * readPart() checks a part in a request body the same way isInputValid() on the part form checks its fields.
+     *
+     * @param body request body
+     * @return the part, with ID 0
+     * @throws ApiException 400 with every problem found
+     */
+    private static Part readPart(Map<String, Object> body) throws ApiException {
+        Object type = body.get("type");
+        boolean inHouse = "InHouse".equalsIgnoreCase(String.valueOf(type));
+        if ( !inHouse && !"Outsourced".equalsIgnoreCase(String.valueOf(type)) ) {
+            throw new ApiException(400, "Type must be InHouse or Outsourced.");
+        }
+        String extraField = inHouse ? "machineID" : "companyName";
+
+        String errors = checkFields(body, body.get(extraField) == null
+                                          || (!inHouse && body.get(extraField).toString().isEmpty()));
+        int machineID = 0;
+        if ( inHouse ) {
+            try {
+                machineID = intField(body, extraField);
+            } catch ( NumberFormatException e ) {
+                errors = append(errors, "Machine ID must be a digit.");
+            }
+        }
+        if ( !errors.isEmpty() ) {
+            throw new ApiException(400, errors);
+        }
+
+        String name = body.get("name").toString();
+        double price = doubleField(body, "price");
+        int stock = intField(body, "stock");
+        int min = intField(body, "min");
+        int max = intField(body, "max");
+        return inHouse
+                ? new InHouse(0, name, price, stock, min, max, machineID)
+                : new Outsourced(0, name, price, stock, min, max, body.get(extraField).toString());
+    }
+
+    /**
+     * readProduct() checks a product in a request body the same way isInputValid() on the product form checks its
+     * fields. Associated parts are given as "associatedParts":[{"id":partID,"quantity":n},...].
+     *
+     * @param body request body
+     * @return the product, with ID 0
+     * @throws ApiException 400 with every problem found
+     */
+    private Product readProduct(Map<String, Object> body) throws ApiException {
+        String errors = checkFields(body, false);
+        if ( !errors.isEmpty() ) {
+            throw new ApiException(400, errors);
+        }
+        Product product = new Product(0, body.get("name").toString(), doubleField(body, "price"),
+                                      intField(body, "stock"), intField(body, "min"), intField(body, "max"));
+
+        Object associatedParts = body.get("associatedParts");
+        if ( associatedParts == null ) {
+            return product;
+        }
+        if ( !(associatedParts instanceof List) ) {
+            throw new ApiException(400, "associatedParts must be a list of {\"id\":partID,\"quantity\":n}.");
+        }
+        for ( Object entry : (List<?>) associatedParts ) {
+            int partID;
+            int quantity;
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> fields = (Map<String, Object>) entry;
+                partID = intField(fields, "id");
+                quantity = intField(fields, "quantity");
+            } catch ( ClassCastException | NumberFormatException e ) {
+                throw new ApiException(400, "associatedParts must be a list of {\"id\":partID,\"quantity\":n}.");
+            }
+            if ( quantity <= 0 ) {
+                throw new ApiException(400, "Associated part quantity must be greater than 0.");
+            }
+            Part part = this.inventory.lookupPart(partID);
+            if ( part == null ) {
+                throw new ApiException(400, "Part " + partID + " does not exist.");
+            }
+            try {
+                product.addAssociatedPart(part, quantity);
+            } catch ( ArithmeticException e ) {
+                throw new ApiException(400, "Associated part " + partID + " has a total quantity greater than "
+                                            + Integer.MAX_VALUE + ".");
+            }
+        }
+        return product;
+    }
+
+    /**
+     * checkFields() checks the fields parts and products share, with the same rules and messages as the forms.
+     *
+     * @param body request body
+     * @param extraMissing whether a required field only parts have is missing
+     * @return the problems found, or an empty string
+     */
+    private static String checkFields(Map<String, Object> body, boolean extraMissing) {
+        String errors = "";
+        if ( body.get("name") == null || body.get("name").toString().isEmpty() || body.get("stock") == null
+                || body.get("price") == null || body.get("max") == null || body.get("min") == null || extraMissing ) {
+            errors = append(errors, "All fields are required.");
+        }
+        try {
+            int stock = intField(body, "stock");
+            int min = intField(body, "min");
+            int max = intField(body, "max");
+            doubleField(body, "price");
+
+            if ( min > max ) {
+                errors = append(errors, "Min cannot be greater than max.");
+            } else if ( stock > max ) {
+                errors = append(errors, "Inventory cannot be greater than max.");
+            } else if ( stock < min ) {
+                errors = append(errors, "Inventory cannot be less than min.");
+            }
+        } catch ( NumberFormatException e ) {
+            errors = append(errors, "Inventory fields (inv, min, max) and price must be a digit.");
+        }
+        return errors;
+    }
+
+    private static String append(String errors, String error) {
+        return errors.isEmpty() ? error : errors + " " + error;
+    }
+
+    /**
+     * @return the field as an int
+     * @throws NumberFormatException if the field isn't a whole number that fits in an int
+     */
+    private static int intField(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if ( !(value instanceof Double) ) {
+            throw new NumberFormatException(name);
+        }
+        double number = (Double) value;
+        if ( number != Math.rint(number) || number < Integer.MIN_VALUE || number > Integer.MAX_VALUE ) {
+            throw new NumberFormatException(name);
+        }
+        return (int) number;
+    }
+
+    /**
+     * @return the field as a double
+     * @throws NumberFormatException if the field isn't a number
+     */
+    private static double doubleField(Map<String, Object> body, String name) {
+        Object value = body.get(name);
+        if ( !(value instanceof Double) ) {
+            throw new NumberFormatException(name);
+        }
+        return (Double) value;
+    }
+
+    /**
+     * @return the request body as a JSON object
+     * @throws ApiException 413 if it's too large, 400 if it isn't a JSON object
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException, ApiException {
+        byte[] bytes;
+        try ( InputStream in = exchange.getRequestBody() ) {
+            bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if ( bytes.length > MAX_BODY_BYTES ) {
+            throw new ApiException(413, "Request body is too large.");
+        }
+        Object body = JsonReader.parse(new String(bytes, StandardCharsets.UTF_8));
+        if ( !(body instanceof Map) ) {
+            throw new ApiException(400, "Request body must be a JSON object.");
+        }
+        return (Map<String, Object>) body;
+    }
+
+    /**
+     * @return the query string's parameters, decoded
+     */
+    private static Map<String, String> readQuery(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if ( raw == null ) {
+            return query;
+        }
+        for ( String pair : raw.split("&") ) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            query.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                      URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    /**
+     * @return the parameter as an int, or fallback if it isn't given
+     * @throws ApiException 400 if it isn't a whole number 0 or greater
+     */
+    private static int queryInt(Map<String, String> query, String name, int fallback) throws ApiException {
+        String value = query.get(name);
+        if ( value == null ) {
+            return fallback;
+        }
+        try {
+            int number = Integer.parseInt(value);
+            if ( number >= 0 ) {
+                return number;
+            }
+        } catch ( NumberFormatException e ) {
+            // Handled below along with negative numbers
+        }
+        throw new ApiException(400, name + " must be a whole number 0 or greater.");
+    }
+
+    /**
+     * @param json builder to add to
+     * @param part part to write
+     * @return json param
+     */
+    private static StringBuilder appendPart(StringBuilder json, Part part) {
+        json.append(part instanceof InHouse ? "{\"type\":\"InHouse\",\"id\":" : "{\"type\":\"Outsourced\",\"id\":")
+            .append(part.getId()).append(",\"name\":");
+        appendText(json, part.getName());
+        appendNumbers(json, part.getPrice(), part.getStock(), part.getMin(), part.getMax());
+        if ( part instanceof InHouse ) {
+            json.append(",\"machineID\":").append(((InHouse) part).getMachineID());
+        } else {
+            json.append(",\"companyName\":");
+            appendText(json, ((Outsourced) part).getCompanyName());
+        }
+        return json.append(",\"version\":").append(part.getVersion()).append('}');
+    }
+
+    /**
+     * @param json builder to add to
+     * @param product product to write; should be a copy the inventory can't change meanwhile
+     * @return json param
+     */
+    private static StringBuilder appendProduct(StringBuilder json, Product product) {
+        json.append("{\"id\":").append(product.getId()).append(",\"name\":");
+        appendText(json, product.getName());
+        appendNumbers(json, product.getPrice(), product.getStock(), product.getMin(), product.getMax());
+        json.append(",\"associatedParts\":[");
+        List<Part> associatedParts = product.getAllAssociatedParts();
+        for ( int i = 0; i < associatedParts.size(); i++ ) {
+            Part part = associatedParts.get(i);
+            json.append(i == 0 ? "{\"id\":" : ",{\"id\":").append(part.getId())
+                .append(",\"quantity\":").append(product.getAssociatedPartQuantity(part)).append('}');
+        }
+        return json.append("],\"version\":").append(product.getVersion()).append('}');
+    }
+
+    private static void appendNumbers(StringBuilder json, double price, int stock, int min, int max) {
+        json.append(",\"price\":");
+        if ( Double.isFinite(price) ) { json.append(price); }
+        else { json.append("null"); }
+        json.append(",\"stock\":").append(stock).append(",\"min\":").append(min).append(",\"max\":").append(max);
+    }
+
+    private static void appendText(StringBuilder json, String text) {
+        json.append('"');
+        for ( int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            if ( c == '"' || c == '\\' ) {
+                json.append('\\').append(c);
+            } else if ( c < 0x20 ) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendText(json, message);
+        send(exchange, status, json.append('}'));
+    }
+
+    /**
+     * @param json response body, or null for 204
+     */
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        if ( json == null ) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try ( OutputStream out = exchange.getResponseBody() ) {
+            out.write(bytes);
+        }
+    }
+}
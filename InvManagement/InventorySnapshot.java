@@ -0,0 +1,58 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * InventorySnapshot is every part and product in an Inventory at one point in time, so the whole inventory can be
+ * written out on a background thread while changes keep being made.
+ * <p>
+ * Taking a snapshot only copies references to the parts, since the forms replace a part instead of changing it (or
+ * just the row numbers, if the parts are still rows of a mapped snapshot). Each
+ * product is copied, along with its associated parts and their quantities, because a product's associated parts can
+ * be changed on the product form before it is saved.
+ */
+public class InventorySnapshot {
+    /**
+     * Parts in the inventory when the snapshot was taken, in inventory order.
+     */
+    private final List<Part> parts;
+    /**
+     * Copies of the products in the inventory when the snapshot was taken, in inventory order.
+     */
+    private final List<Product> products;
+
+    /**
+     * Should only be called while the inventory is locked; see Inventory.snapshot().
+     *
+     * @param parts a copy of all parts in the inventory, which the snapshot keeps
+     * @param products all products in the inventory
+     */
+    InventorySnapshot(List<Part> parts, List<Product> products) {
+        this.parts = parts;
+        List<Product> copies = new ArrayList<>(products.size());
+        for ( Product product : products ) {
+            copies.add(product.copy());
+        }
+        this.products = Collections.unmodifiableList(copies);
+    }
+
+    /**
+     * @return the parts in the snapshot
+     */
+    public List<Part> getParts() { return Collections.unmodifiableList(parts); }
+
+    /**
+     * getMappedParts() lets a snapshot writer copy parts that are still mapped snapshot rows straight from the old
+     * file, instead of creating a Part object for each of them.
+     *
+     * @return the parts as a mapped list, or null if the inventory wasn't opened from a mapped snapshot
+     */
+    public MappedPartList getMappedParts() { return parts instanceof MappedPartList ? (MappedPartList) parts : null; }
+
+    /**
+     * @return the products in the snapshot; changing them doesn't change the inventory
+     */
+    public List<Product> getProducts() { return products; }
+}
@@ -0,0 +1,216 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JsonReader turns JSON text into plain Java objects: an object becomes a Map (keeping the order of its fields), an
+ * array a List, a string a String, a number a Double, true and false a Boolean, and null null.
+ * <p>
+ * It's meant for the small request bodies InventoryServer receives, so it reads the whole text at once and keeps no
+ * state between calls.
+ */
+public class JsonReader {
+    /**
+     * Deepest nesting of objects and arrays allowed, so a malicious body can't overflow the stack.
+     */
+    private static final int MAX_DEPTH = 32;
+
+    private final String text;
+    /**
+     * Next character to read.
+     */
+    private int position;
+
+    /**
+     * @param text JSON text to read
+     */
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * parse() reads one JSON value; nothing but whitespace may follow it.
+     *
+     * @param text JSON text
+     * @return the value, as described in the class comment
+     * @throws IllegalArgumentException if text isn't valid JSON; the message says where
+     */
+    public static Object parse(String text) {
+        JsonReader reader = new JsonReader(text);
+        Object value = reader.readValue(0);
+        reader.skipWhitespace();
+        if ( reader.position < text.length() ) {
+            throw reader.error("Unexpected text after the JSON value");
+        }
+        return value;
+    }
+
+    private Object readValue(int depth) {
+        if ( depth > MAX_DEPTH ) {
+            throw error("JSON is nested too deeply");
+        }
+        skipWhitespace();
+        if ( position >= text.length() ) {
+            throw error("Expected a value");
+        }
+        char c = text.charAt(position);
+        switch ( c ) {
+            case '{': return readObject(depth);
+            case '[': return readArray(depth);
+            case '"': return readString();
+            case 't': return readWord("true", Boolean.TRUE);
+            case 'f': return readWord("false", Boolean.FALSE);
+            case 'n': return readWord("null", null);
+            default:
+                if ( c == '-' || (c >= '0' && c <= '9') ) {
+                    return readNumber();
+                }
+                throw error("Expected a value");
+        }
+    }
+
+    private Map<String, Object> readObject(int depth) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        position++; // {
+        skipWhitespace();
+        if ( peek() == '}' ) {
+            position++;
+            return object;
+        }
+        while ( true ) {
+            skipWhitespace();
+            if ( peek() != '"' ) {
+                throw error("Expected a field name");
+            }
+            String name = readString();
+            skipWhitespace();
+            expect(':');
+            object.put(name, readValue(depth + 1));
+            skipWhitespace();
+            if ( peek() == ',' ) {
+                position++;
+            } else {
+                expect('}');
+                return object;
+            }
+        }
+    }
+
+    private List<Object> readArray(int depth) {
+        List<Object> array = new ArrayList<>();
+        position++; // [
+        skipWhitespace();
+        if ( peek() == ']' ) {
+            position++;
+            return array;
+        }
+        while ( true ) {
+            array.add(readValue(depth + 1));
+            skipWhitespace();
+            if ( peek() == ',' ) {
+                position++;
+            } else {
+                expect(']');
+                return array;
+            }
+        }
+    }
+
+    private String readString() {
+        position++; // "
+        StringBuilder value = new StringBuilder();
+        while ( true ) {
+            if ( position >= text.length() ) {
+                throw error("Unterminated string");
+            }
+            char c = text.charAt(position++);
+            if ( c == '"' ) {
+                return value.toString();
+            }
+            if ( c < 0x20 ) {
+                throw error("Control character in string");
+            }
+            if ( c != '\\' ) {
+                value.append(c);
+                continue;
+            }
+            if ( position >= text.length() ) {
+                throw error("Unterminated string");
+            }
+            char escape = text.charAt(position++);
+            switch ( escape ) {
+                case '"': value.append('"'); break;
+                case '\\': value.append('\\'); break;
+                case '/': value.append('/'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    if ( position + 4 > text.length() ) {
+                        throw error("Bad \\u escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch ( NumberFormatException e ) {
+                        throw error("Bad \\u escape");
+                    }
+                    position += 4;
+                    break;
+                default: throw error("Bad escape \\" + escape);
+            }
+        }
+    }
+
+    private Double readNumber() {
+        int start = position;
+        if ( peek() == '-' ) { position++; }
+        while ( position < text.length() && "0123456789.eE+-".indexOf(text.charAt(position)) >= 0 ) {
+            position++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch ( NumberFormatException e ) {
+            position = start;
+            throw error("Bad number");
+        }
+    }
+
+    private Object readWord(String word, Object value) {
+        if ( !text.startsWith(word, position) ) {
+            throw error("Expected a value");
+        }
+        position += word.length();
+        return value;
+    }
+
+    private void expect(char c) {
+        if ( peek() != c ) {
+            throw error("Expected '" + c + "'");
+        }
+        position++;
+    }
+
+    /**
+     * @return the next character, or 0 at the end of the text
+     */
+    private char peek() { return position < text.length() ? text.charAt(position) : 0; }
+
+    private void skipWhitespace() {
+        while ( position < text.length() ) {
+            char c = text.charAt(position);
+            if ( c != ' ' && c != '\t' && c != '\n' && c != '\r' ) {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String problem) {
+        return new IllegalArgumentException(problem + " at character " + (position + 1) + ".");
+    }
+}
@@ -0,0 +1,117 @@
+package InvManagement;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ListEdit describes one change to the inventory's parts or products list, without a copy of the list: at one
+ * position, some items were taken out and some put in their place. The inventory hands them to the views through a
+ * ChangeFeed, and the views only read the rows they show (see TableRows).
+ * <p>
+ * Only the number of items put in is kept, plus the item itself when there is just one, which is all a table needs
+ * to move that one row; a bulk load doesn't have to be copied to be reported.
+ *
+ * @param <E> type of the items (Part or Product)
+ */
+public class ListEdit<E> {
+    /**
+     * Position of the change, in the list as it was after the edits before this one.
+     */
+    private final int from;
+    /**
+     * The items taken out at that position.
+     */
+    private final List<E> removed;
+    /**
+     * Number of items put in at that position.
+     */
+    private final int addedSize;
+    /**
+     * The item put in, if exactly one was; otherwise null.
+     */
+    private final E added;
+
+    /**
+     * @param from position of the change
+     * @param removed the items taken out there; not copied
+     * @param addedSize number of items put in there
+     * @param added the item put in, if exactly one was; otherwise null
+     */
+    private ListEdit(int from, List<E> removed, int addedSize, E added) {
+        this.from = from;
+        this.removed = removed;
+        this.addedSize = addedSize;
+        this.added = added;
+    }
+
+    /**
+     * @param from position the item was added at
+     * @param item the item
+     * @param <E> type of the item
+     * @return an edit that adds one item
+     */
+    public static <E> ListEdit<E> added(int from, E item) {
+        return new ListEdit<>(from, Collections.emptyList(), 1, item);
+    }
+
+    /**
+     * @param from position the first item was added at
+     * @param count number of items added there
+     * @param <E> type of the items
+     * @return an edit that adds many items
+     */
+    public static <E> ListEdit<E> addedAll(int from, int count) {
+        return new ListEdit<>(from, Collections.emptyList(), count, null);
+    }
+
+    /**
+     * @param from position of the item that was replaced
+     * @param oldItem the item that was there
+     * @param item the item there now
+     * @param <E> type of the items
+     * @return an edit that replaces one item
+     */
+    public static <E> ListEdit<E> replaced(int from, E oldItem, E item) {
+        return new ListEdit<>(from, Collections.singletonList(oldItem), 1, item);
+    }
+
+    /**
+     * @param from position of the first item removed
+     * @param removed the items removed from there, in order; not copied, so it should be a list nothing changes
+     * @param <E> type of the items
+     * @return an edit that removes items
+     */
+    public static <E> ListEdit<E> removed(int from, List<E> removed) {
+        return new ListEdit<>(from, removed, 0, null);
+    }
+
+    /**
+     * @return position of the change, in the list as it was after the edits before this one
+     */
+    public int getFrom() { return from; }
+
+    /**
+     * @return position just after the items put in
+     */
+    public int getTo() { return from + addedSize; }
+
+    /**
+     * @return the items taken out
+     */
+    public List<E> getRemoved() { return removed; }
+
+    /**
+     * @return number of items taken out
+     */
+    public int getRemovedSize() { return removed.size(); }
+
+    /**
+     * @return number of items put in
+     */
+    public int getAddedSize() { return addedSize; }
+
+    /**
+     * @return the item put in, if exactly one was; otherwise null
+     */
+    public E getAdded() { return added; }
+}
@@ -28,6 +28,10 @@ import javafx.stage.Stage;
  * @author Lee Rhodes
  */
 public class Main extends Application {
+    /**
+     * Controller of the main view; told when the program is closing so it can finish saving.
+     */
+    private MainController mainController;
 
     /**
      * @param stage the window that will open for the user first; populated with MainForm.fxml
@@ -36,6 +40,7 @@ public class Main extends Application {
     public void start(Stage stage) throws Exception {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("MainForm.fxml"));
         Parent parent = loader.load();
+        mainController = loader.getController();
 
         Scene scene = new Scene(parent);
 
@@ -44,6 +49,16 @@ public class Main extends Application {
         stage.show();
     }
 
+    /**
+     * stop() runs when the last window is closed; the inventory log is flushed before the program exits.
+     */
+    @Override
+    public void stop() {
+        if ( mainController != null ) {
+            mainController.shutdown();
+        }
+    }
+
     /**
      * @param args any command-line arguments that may have been passed when starting the program
      */
@@ -1,19 +1,31 @@
 package InvManagement;
 
 import javafx.application.Platform;
-import javafx.collections.transformation.FilteredList;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.layout.GridPane;
+import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
+import java.io.File;
 import java.io.IOException;
-import java.text.NumberFormat;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * MainController is responsible for the main menu of the inventory management program.
@@ -22,15 +34,18 @@ import java.util.Optional;
  * @author Lee Rhodes
  */
 public class MainController {
-    /**
-     * Format for price double in table view; displayed as "$#.##".
-     */
-    NumberFormat priceFormat = NumberFormat.getCurrencyInstance(Locale.US);
-
     /**
      * Main inventory object; all parts and products are in an array list in this object.
      */
     private Inventory inventory;
+    /**
+     * Write-ahead log the inventory is saved to; null if it couldn't be opened and the inventory only lives in memory.
+     */
+    private InventoryLog inventoryLog;
+    /**
+     * Local HTTP API for other programs; null unless the invmanagement.api.port system property is set.
+     */
+    private InventoryServer apiServer;
 
     /**
      * Waits for when user wants to exit main menu and end program.
@@ -38,6 +53,22 @@ public class MainController {
     @FXML
     private Button exitBtn;
 
+    /**
+     * Starts importing parts and products from a CSV file.
+     */
+    @FXML
+    private Button importBtn;
+    /**
+     * Starts exporting the inventory to a CSV or JSON file.
+     */
+    @FXML
+    private Button exportBtn;
+    /**
+     * Shows how far along an import or export is; hidden when neither is running.
+     */
+    @FXML
+    private ProgressBar progressBar;
+
     /**
      * Shows any errors that occur when selecting parts and products.
      */
@@ -118,10 +149,17 @@ public class MainController {
      * was hitting that error because the table views on the GUI were running too early before everything was compiled.
      * I fixed it by adding in the Platform.runLater(() block, which told my program to run the table view GUI
      * methods after everything was compiled. Threading is fun!
+     * <p>
+     * The inventory is loaded from its log directory in the user's home directory (see InventoryLog), and every change
+     * from then on is saved to it. If the log can't be opened, the program still runs but nothing is saved.
+     * <p>
+     * If asked for, the local HTTP API is started on the same inventory (see InventoryServer).
      */
     public void initialize() {
         if (this.inventory == null) {
             this.inventory = new Inventory();
+            openInventoryLog();
+            startApiServer();
         }
 
         Platform.runLater(() -> {
@@ -130,126 +168,222 @@ public class MainController {
         });
     }
 
+    /**
+     * openInventoryLog() loads the saved inventory and starts logging changes; shows an error if that fails, or if a
+     * snapshot of the log fails later on.
+     */
+    private void openInventoryLog() {
+        Path logDirectory = Paths.get(System.getProperty("user.home"), ".invmanagement");
+        try {
+            this.inventoryLog = InventoryLog.open(logDirectory, this.inventory);
+        } catch ( IOException | RuntimeException e ) {
+            Platform.runLater(() -> showError("The saved inventory could not be loaded from " + logDirectory + ".",
+                    "Changes made now will not be saved. (" + e.getMessage() + ")"));
+            return;
+        }
+        this.inventoryLog.setOnSnapshotFailed(e -> Platform.runLater(() -> showError(
+                "A snapshot of the inventory could not be written to " + logDirectory + ".",
+                "Every change is still saved, but the program will take longer to start. (" + e.getMessage() + ")")));
+    }
+
+    /**
+     * showError() shows an error dialog and waits for the user to close it.
+     *
+     * @param header what went wrong
+     * @param content more about it, such as what it means for the user
+     */
+    private void showError(String header, String content) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error Dialog");
+        alert.setHeaderText(header);
+        alert.setContentText(content);
+        alert.showAndWait();
+    }
+
+    /**
+     * @param e what the inventory log threw when a change was made
+     * @return the message shown below the tables when a change couldn't be saved
+     */
+    private static String notSaved(UncheckedIOException e) {
+        return "The change couldn't be written to the inventory log, so nothing was changed. ("
+               + e.getCause().getMessage() + ")";
+    }
+
+    /**
+     * syncInventory() waits until every change made so far is in the inventory log; the forms and the buttons on
+     * this view call it before they treat a change as saved. If the log can't be written, the user is told that the
+     * change was made but will be lost when the program closes.
+     *
+     * @return whether the changes are in the log
+     */
+    boolean syncInventory() {
+        try {
+            this.inventory.sync();
+            return true;
+        } catch ( UncheckedIOException e ) {
+            showError("The change was made, but it could not be written to the inventory log.",
+                    "It will be lost when the program closes. (" + e.getCause().getMessage() + ")");
+            return false;
+        }
+    }
+
+    /**
+     * startApiServer() starts the local HTTP API if the invmanagement.api.port system property is set; shows an error
+     * if the port can't be opened.
+     */
+    private void startApiServer() {
+        String port = System.getProperty(InventoryServer.PORT_PROPERTY);
+        if ( port == null ) {
+            return;
+        }
+        try {
+            this.apiServer = InventoryServer.start(this.inventory, Integer.parseInt(port.trim()));
+        } catch ( IOException | RuntimeException e ) {
+            Platform.runLater(() -> {
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Error Dialog");
+                alert.setHeaderText("The inventory API could not be started on port " + port + ".");
+                alert.setContentText("Other programs won't be able to reach the inventory. (" + e.getMessage() + ")");
+                alert.showAndWait();
+            });
+        }
+    }
+
+    /**
+     * shutdown() is called when the program closes; it stops the API so no change comes in after the log is closed,
+     * then makes sure every change has been written to the log. If that fails, the user is told before the program
+     * exits.
+     */
+    public void shutdown() {
+        if ( this.apiServer != null ) {
+            this.apiServer.close();
+        }
+        if ( this.inventoryLog == null ) {
+            return;
+        }
+        try {
+            this.inventoryLog.close();
+        } catch ( IOException e ) {
+            showError("The last changes could not be written to the inventory log.",
+                    "Changes made since the last save may be lost. (" + e.getMessage() + ")");
+        }
+    }
+
     /**
      * fillPartTableView() tells the partTableView what type of data to expect, how to display the price field, and
-     * sets the data in the table according to a filtered list that is pulled from filterParts().
+     * sets the data in the table according to a paged list that is pulled from filterParts().
      */
     private void fillPartTableView() {
         // Telling each partTableView column what type of data to expect
-        partIDCol.setCellValueFactory(new PropertyValueFactory<>("id"));
-        partNameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
-        partStockCol.setCellValueFactory(new PropertyValueFactory<>("stock"));
-        partPriceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
+        partIDCol.setCellValueFactory(CellValues.ofInt(Part::getId));
+        partNameCol.setCellValueFactory(CellValues.of(Part::getName));
+        partStockCol.setCellValueFactory(CellValues.ofInt(Part::getStock));
+        partPriceCol.setCellValueFactory(CellValues.ofDouble(Part::getPrice));
 
-        // Uses priceFormat declared previously to format price double values; displays as "$#.##"
-        partPriceCol.setCellFactory(tc -> new TableCell<>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if ( empty ) { setText(null); }
-                else { setText(priceFormat.format(price)); }
-            }
-        });
+        // Uses PriceFormat to format price double values; displays as "$#.##"
+        partPriceCol.setCellFactory(PriceFormat.cellFactory());
 
-        /* Set items in partTableView equal to a filtered list of parts in inventory;
-           Filtered list only returns matches for the part search bar which is in filterParts() below */
+        /* Set items in partTableView equal to a paged list of parts in inventory; only the rows on screen are read,
+           and only matches for the part search bar are shown, which is in filterParts() below */
         partTableView.setItems(filterParts());
+        partTableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE); // For bulk delete and edit
     }
 
     /**
      * filterParts() listens for when the search text field input changes and filters the list of parts based on what
-     * matches the input.
+     * matches the input. The search itself runs in the background through AsyncSearch so typing stays responsive.
      * Digit-only input will search for parts with a matching ID; otherwise, it searches for parts with a name that
      * begins with or equals the input.
+     * <p>
+     * The rows are read a page at a time through TableRows, which is also the table's sort policy; see TableRows for
+     * which columns can be sorted.
      *
      * @return the list of parts that have a match with the input in the search text field
      */
-    private FilteredList<Part> filterParts() {
-        // Filtered list expands off of all parts in inventory
-        FilteredList<Part> filteredParts = new FilteredList<>(inventory.getAllParts());
-
-        /* Adding a listener to watch whenever the search text field input is changed & react
-           NOTE: Could simplify if statement to just return boolean value of matches, but decided to separate it
-                 out into a long if-statement for readability */
-        partSearchTextField.textProperty().addListener((observable, oldValue, newValue) ->
-                filteredParts.setPredicate(part -> {
-            if( newValue == null || newValue.isEmpty()) { // If search text is empty, show all parts
-                return true;
-            } else if ( newValue.matches("[0-9]*") // If search text is an integer, can search for matches by ID
-                    && part == inventory.lookupPart(Integer.parseInt(newValue)) ) {
-                return true;
-            } else if ( inventory.lookupPart(newValue) != null && inventory.lookupPart(newValue).contains(part) ) {
-                /* For all search text, find matches for all parts that begin with and/or equal search text;
-                   NOTE: Assumption made that no parts have a name of only numbers */
-                return true;
+    private ObservableList<Part> filterParts() {
+        // Paged rows read off of all parts in inventory; columns are sorted through the inventory's sorted indexes
+        TableRows<Part> partRows = TableRows.forParts(inventory);
+        partRows.sortsBy(partIDCol, SortKey.ID);
+        partRows.sortsBy(partNameCol, SortKey.NAME);
+        partRows.sortsBy(partStockCol, SortKey.STOCK);
+        partRows.sortsBy(partPriceCol, SortKey.PRICE);
+        partTableView.setSortPolicy(partRows::sort);
+
+        /* Adding a listener to watch whenever the search text field input is changed & react;
+           the search runs in the background and only the newest query's matches are shown */
+        SearchEngine<Part> partEngine = SearchEngine.forParts(inventory);
+        AsyncSearch<Set<Part>> partSearch = new AsyncSearch<>(
+                query -> query.isEmpty() ? null : partEngine.matches(query), partRows::setMatches);
+        partSearchTextField.textProperty().addListener((observable, oldValue, newValue) -> partSearch.submit(newValue));
+
+        // Rows added or replaced while a search is active are only matched once the query is run again
+        inventory.getPartChanges().addListener(edits -> {
+            if ( !partSearchTextField.getText().isEmpty() ) {
+                partSearch.submit(partSearchTextField.getText());
             }
-            return false; // Not a match, leave part out of filter.
-        }));
+        });
 
-        // Sending back the filtered list so it can populate the partTableView
-        return filteredParts;
+        // Sending back the paged list so it can populate the partTableView
+        return partRows.getList();
     }
 
     /**
      * fillProductTableView() tells the productTableView what type of data to expect, how to display the price field,
-     * and sets the data in the table according to a filtered list that is pulled from filterProducts().
+     * and sets the data in the table according to a paged list that is pulled from filterProducts().
      */
     private void fillProductTableView() {
         // Telling each productTableView column what type of data to expect
-        productIDCol.setCellValueFactory(new PropertyValueFactory<>("id"));
-        productNameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
-        productStockCol.setCellValueFactory(new PropertyValueFactory<>("stock"));
-        productPriceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
+        productIDCol.setCellValueFactory(CellValues.ofInt(Product::getId));
+        productNameCol.setCellValueFactory(CellValues.of(Product::getName));
+        productStockCol.setCellValueFactory(CellValues.ofInt(Product::getStock));
+        productPriceCol.setCellValueFactory(CellValues.ofDouble(Product::getPrice));
 
-        // Uses priceFormat declared previously to format price double values; displays as "$#.##"
-        productPriceCol.setCellFactory(tc -> new TableCell<>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if ( empty ) { setText(null); }
-                else { setText(priceFormat.format(price)); }
-            }
-        });
+        // Uses PriceFormat to format price double values; displays as "$#.##"
+        productPriceCol.setCellFactory(PriceFormat.cellFactory());
 
-        /* Set items in productTableView equal to a filtered list of products in inventory;
-           Filtered list only returns matches for the product search bar which is in filterProducts() below */
+        /* Set items in productTableView equal to a paged list of products in inventory; only the rows on screen are
+           read, and only matches for the product search bar are shown, which is in filterProducts() below */
         productTableView.setItems(filterProducts());
+        productTableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE); // For bulk delete and edit
     }
 
     /**
      * filterProducts() listens for when the search text field input changes and filters the list of products based on
-     * what matches the input.
+     * what matches the input. The search itself runs in the background through AsyncSearch so typing stays responsive.
      * <p>
      * Digit-only input will search for products with a matching ID; otherwise, it searches for products with a name
      * that begins with or equals the input.
+     * <p>
+     * The rows are read a page at a time through TableRows, like the parts table's; see filterParts().
      *
      * @return the list of products that have a match with the input in the search text field
      */
-    private FilteredList<Product> filterProducts() {
-        // Filtered list expands off of all products in inventory
-        FilteredList<Product> filteredProducts = new FilteredList<>(inventory.getAllProducts());
-
-        /* Adding a listener to watch whenever the search text field input is changed & react
-           NOTE: Could simplify if statement to just return boolean value of matches, but decided to separate it
-                 out into a long if-statement for readability */
+    private ObservableList<Product> filterProducts() {
+        // Paged rows read off of all products in inventory; columns are sorted through the inventory's sorted indexes
+        TableRows<Product> productRows = TableRows.forProducts(inventory);
+        productRows.sortsBy(productIDCol, SortKey.ID);
+        productRows.sortsBy(productNameCol, SortKey.NAME);
+        productRows.sortsBy(productStockCol, SortKey.STOCK);
+        productRows.sortsBy(productPriceCol, SortKey.PRICE);
+        productTableView.setSortPolicy(productRows::sort);
+
+        /* Adding a listener to watch whenever the search text field input is changed & react;
+           the search runs in the background and only the newest query's matches are shown */
+        SearchEngine<Product> productEngine = SearchEngine.forProducts(inventory);
+        AsyncSearch<Set<Product>> productSearch = new AsyncSearch<>(
+                query -> query.isEmpty() ? null : productEngine.matches(query), productRows::setMatches);
         productSearchTextField.textProperty().addListener((observable, oldValue, newValue) ->
-                filteredProducts.setPredicate(product -> {
-            if( newValue == null || newValue.isEmpty()) { // If search text is empty, show all products
-                return true;
-            } else if ( newValue.matches("[0-9]*") // If search text is an integer, can search for matches by ID
-                    && product == inventory.lookupProduct(Integer.parseInt(newValue)) ) {
-                return true;
-            } else if ( inventory.lookupProduct(newValue) != null
-                    && inventory.lookupProduct(newValue).contains(product) ) {
-                /* For all search text, find matches for all products that begin with and/or equal search text;
-                   NOTE: Assumption made that no products have a name of only numbers */
-                return true;
+                productSearch.submit(newValue));
+
+        // Rows added or replaced while a search is active are only matched once the query is run again
+        inventory.getProductChanges().addListener(edits -> {
+            if ( !productSearchTextField.getText().isEmpty() ) {
+                productSearch.submit(productSearchTextField.getText());
             }
-            return false; // Not a match, leave product out of filter.
-        }));
+        });
 
-        // Sending back the filtered list so it can populate the productTableView
-        return filteredProducts;
+        // Sending back the paged list so it can populate the productTableView
+        return productRows.getList();
     }
 
     /**
@@ -322,30 +456,46 @@ public class MainController {
     }
 
     /**
-     * deletePart() deletes the selected part from the main inventory object.
+     * deletePart() deletes the selected parts from the main inventory object. Several parts can be selected at once;
+     * they're all deleted together through Inventory.deleteParts(), so the table only refreshes once.
      * <p>
-     * An alert appears to receive user confirmation first before deleting the part.
+     * One alert appears to receive user confirmation first before deleting the parts, however many there are.
      * <p>
      * If no part is selected or the user declines confirmation, nothing happens and method is exited.
      */
     public void deletePart() {
         String errors = "";
-        Part existingPart = partTableView.getSelectionModel().getSelectedItem();
+        List<Part> selectedParts = new ArrayList<>(partTableView.getSelectionModel().getSelectedItems());
 
-        // Can only delete part if selecting a row in partTableView
-        if ( existingPart != null ) {
+        // Can only delete parts if selecting at least one row in partTableView
+        if ( !selectedParts.isEmpty() ) {
             // Must confirm that user wants to delete before calling method & making changes
             Alert confirmDelete = new Alert(Alert.AlertType.CONFIRMATION);
             confirmDelete.setTitle("Confirmation Dialog");
-            confirmDelete.setHeaderText("Deleting the part will remove it from the inventory and any associated products.");
-            confirmDelete.setContentText("Are you sure you want to delete this part?");
+            int usedBy = countProductsWithParts(selectedParts);
+            if ( selectedParts.size() == 1 ) {
+                confirmDelete.setHeaderText("Deleting the part will remove it from the inventory and any associated "
+                                            + "products.");
+                confirmDelete.setContentText((usedBy > 0 ? "This part is associated with " + usedBy
+                                              + " product(s). " : "") + "Are you sure you want to delete this part?");
+            } else {
+                confirmDelete.setHeaderText("Deleting " + selectedParts.size() + " parts will remove them from the "
+                                            + "inventory and any associated products.");
+                confirmDelete.setContentText((usedBy > 0 ? "These parts are associated with " + usedBy
+                                              + " product(s). " : "") + "Are you sure you want to delete these parts?");
+            }
 
             // Using buttons "YES" and "NO" instead of the default buttons for user-friendliness
             confirmDelete.getButtonTypes().setAll(ButtonType.YES, ButtonType.NO);
 
             Optional<ButtonType> result = confirmDelete.showAndWait();
             if (result.get() == ButtonType.YES) {
-                this.inventory.deletePart(existingPart);
+                try {
+                    this.inventory.deleteParts(selectedParts);
+                    syncInventory();
+                } catch ( UncheckedIOException e ) {
+                    errors = notSaved(e);
+                }
             }
         } else {
             errors = "A part must be selected for deletion.";
@@ -353,6 +503,121 @@ public class MainController {
         errorLabel.setText(errors);
     }
 
+    /**
+     * @param parts parts about to be deleted
+     * @return how many different products use at least one of the parts
+     */
+    private int countProductsWithParts(List<Part> parts) {
+        Set<Product> products = Collections.newSetFromMap(new IdentityHashMap<>());
+        for ( Part part : parts ) {
+            products.addAll(this.inventory.lookupProductsWithPart(part));
+        }
+        return products.size();
+    }
+
+    /**
+     * editPartMinMax() sets the same min and max on every selected part, such as when restocking rules change for a
+     * whole group of parts. The new values follow the same rules as the part form: min can't be greater than max, and
+     * each part's inventory has to stay between them. If any selected part's inventory would fall outside the new
+     * range, nothing is changed.
+     * <p>
+     * The parts are replaced with updated copies, the same way the part form saves a change, all in one call to
+     * Inventory.updateParts().
+     */
+    @FXML
+    public void editPartMinMax() {
+        List<Part> selectedParts = new ArrayList<>(partTableView.getSelectionModel().getSelectedItems());
+        if ( selectedParts.isEmpty() ) {
+            errorLabel.setText("A part must be selected for modification.");
+            return;
+        }
+        Optional<int[]> range = askMinMax(selectedParts.size() == 1 ? "1 part" : selectedParts.size() + " parts");
+        if ( !range.isPresent() ) {
+            return;
+        }
+        int min = range.get()[0];
+        int max = range.get()[1];
+
+        List<Part> updatedParts = new ArrayList<>(selectedParts.size());
+        int outOfRange = 0;
+        for ( Part part : selectedParts ) {
+            if ( part.getStock() < min || part.getStock() > max ) {
+                outOfRange++;
+            } else if ( part instanceof InHouse ) {
+                updatedParts.add(new InHouse(part.getId(), part.getName(), part.getPrice(), part.getStock(), min, max,
+                        ((InHouse) part).getMachineID()));
+            } else {
+                updatedParts.add(new Outsourced(part.getId(), part.getName(), part.getPrice(), part.getStock(), min,
+                        max, ((Outsourced) part).getCompanyName()));
+            }
+        }
+        if ( outOfRange > 0 ) {
+            errorLabel.setText(outOfRange + " selected part(s) have inventory outside " + min + "-" + max
+                               + "; nothing was changed.");
+            return;
+        }
+        try {
+            this.inventory.updateParts(updatedParts);
+            syncInventory();
+        } catch ( UncheckedIOException e ) {
+            errorLabel.setText(notSaved(e));
+            return;
+        }
+        errorLabel.setText("");
+    }
+
+    /**
+     * askMinMax() shows a dialog asking for a new min and max. The dialog stays open until both are valid or the user
+     * cancels.
+     *
+     * @param what what is being edited, for the dialog's header, e.g. "2000 parts"
+     * @return the new min and max, in that order; empty if the user cancelled
+     */
+    private Optional<int[]> askMinMax(String what) {
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Edit Min/Max");
+        dialog.setHeaderText("Set min and max for " + what + ".");
+        dialog.getDialogPane().getButtonTypes().setAll(ButtonType.OK, ButtonType.CANCEL);
+
+        TextField minTextField = new TextField();
+        TextField maxTextField = new TextField();
+        Label dialogErrorLabel = new Label();
+        dialogErrorLabel.setTextFill(Color.RED);
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(10);
+        grid.addRow(0, new Label("Min"), minTextField);
+        grid.addRow(1, new Label("Max"), maxTextField);
+        grid.add(dialogErrorLabel, 0, 2, 2, 1);
+        dialog.getDialogPane().setContent(grid);
+
+        // Same checks as the part and product forms; the OK press is consumed while they fail
+        int[] range = new int[2];
+        dialog.getDialogPane().lookupButton(ButtonType.OK).addEventFilter(ActionEvent.ACTION, event -> {
+            String error = "";
+            if ( minTextField.getText().isEmpty() || maxTextField.getText().isEmpty() ) {
+                error = "All fields are required.";
+            } else {
+                try {
+                    range[0] = Integer.parseInt(minTextField.getText());
+                    range[1] = Integer.parseInt(maxTextField.getText());
+                    if ( range[0] > range[1] ) {
+                        error = "Min cannot be greater than max.";
+                    }
+                } catch ( NumberFormatException e ) {
+                    error = "Min and max must be a digit.";
+                }
+            }
+            if ( !error.isEmpty() ) {
+                dialogErrorLabel.setText(error);
+                event.consume();
+            }
+        });
+
+        Optional<ButtonType> result = dialog.showAndWait();
+        return result.isPresent() && result.get() == ButtonType.OK ? Optional.of(range) : Optional.empty();
+    }
+
     /**
      * addProduct() calls child view ProductFormController which is the form to add or modify products.
      * This method can only be called by pressing the "Add" button on the main form's UI.
@@ -412,39 +677,59 @@ public class MainController {
     }
 
     /**
-     * deleteProduct() deletes the selected product from the main inventory object.
+     * deleteProduct() deletes the selected products from the main inventory object. Several products can be selected
+     * at once; they're all deleted together through Inventory.deleteProducts(), so the table only refreshes once.
      * <p>
-     * An alert appears to receive user confirmation first before deleting the product.
+     * One alert appears to receive user confirmation first before deleting the products, however many there are.
      * <p>
      * If no product is selected or the user declines confirmation, nothing happens and method is exited.
      * <p>
-     * If the selected product has associated parts, the user will receive a warning that it cannot be deleted, then
-     * the method is exited.
+     * If any selected product has associated parts, the user will receive a warning that it cannot be deleted, then
+     * the method is exited without deleting any of them.
      */
     public void deleteProduct() {
         String errors = "";
-        Product existingProduct = productTableView.getSelectionModel().getSelectedItem();
+        List<Product> selectedProducts = new ArrayList<>(productTableView.getSelectionModel().getSelectedItems());
+        int withParts = 0;
+        for ( Product product : selectedProducts ) {
+            if ( !product.getAllAssociatedParts().isEmpty() ) { withParts++; }
+        }
 
-        // Can only delete product if selecting a row in productTableView AND that product has no associated parts
-        if ( existingProduct != null && existingProduct.getAllAssociatedParts().isEmpty()) {
+        // Can only delete products if selecting at least one row in productTableView AND none have associated parts
+        if ( !selectedProducts.isEmpty() && withParts == 0 ) {
             // Must confirm that user wants to delete before calling method & making changes
             Alert confirmDelete = new Alert(Alert.AlertType.CONFIRMATION);
             confirmDelete.setTitle("Confirmation Dialog");
-            confirmDelete.setHeaderText("Deleting the product will remove it from the inventory.");
-            confirmDelete.setContentText("Are you sure you want to delete this product?");
+            if ( selectedProducts.size() == 1 ) {
+                confirmDelete.setHeaderText("Deleting the product will remove it from the inventory.");
+                confirmDelete.setContentText("Are you sure you want to delete this product?");
+            } else {
+                confirmDelete.setHeaderText("Deleting " + selectedProducts.size() + " products will remove them from "
+                                            + "the inventory.");
+                confirmDelete.setContentText("Are you sure you want to delete these products?");
+            }
 
             // Using buttons "YES" and "NO" instead of the default buttons for user-friendliness
             confirmDelete.getButtonTypes().setAll(ButtonType.YES, ButtonType.NO);
 
             Optional<ButtonType> result = confirmDelete.showAndWait();
             if (result.get() == ButtonType.YES) {
-                this.inventory.deleteProduct(existingProduct);
+                try {
+                    this.inventory.deleteProducts(selectedProducts);
+                    syncInventory();
+                } catch ( UncheckedIOException e ) {
+                    errors = notSaved(e);
+                }
             }
-        } else if (existingProduct != null && !existingProduct.getAllAssociatedParts().isEmpty()) {
-            // Let user know that product cannot be deleted due to associated parts & exit func without deleting
+        } else if ( withParts > 0 ) {
+            // Let user know that products cannot be deleted due to associated parts & exit func without deleting
             Alert deleteError = new Alert(Alert.AlertType.ERROR);
             deleteError.setTitle("Error Dialog");
-            deleteError.setHeaderText("Product has associated parts.");
+            if ( selectedProducts.size() == 1 ) {
+                deleteError.setHeaderText("Product has associated parts.");
+            } else {
+                deleteError.setHeaderText(withParts + " of the selected products have associated parts.");
+            }
             deleteError.setContentText("Product with associated parts cannot be deleted.");
             deleteError.showAndWait();
         } else {
@@ -453,6 +738,173 @@ public class MainController {
         errorLabel.setText(errors);
     }
 
+    /**
+     * editProductMinMax() sets the same min and max on every selected product, with the same rules as
+     * editPartMinMax(). The products are replaced with updated copies in one call to Inventory.updateProducts().
+     */
+    @FXML
+    public void editProductMinMax() {
+        List<Product> selectedProducts = new ArrayList<>(productTableView.getSelectionModel().getSelectedItems());
+        if ( selectedProducts.isEmpty() ) {
+            errorLabel.setText("A product must be selected for modification.");
+            return;
+        }
+        Optional<int[]> range = askMinMax(selectedProducts.size() == 1 ? "1 product"
+                                          : selectedProducts.size() + " products");
+        if ( !range.isPresent() ) {
+            return;
+        }
+        int min = range.get()[0];
+        int max = range.get()[1];
+
+        List<Product> updatedProducts = new ArrayList<>(selectedProducts.size());
+        int outOfRange = 0;
+        for ( Product product : selectedProducts ) {
+            if ( product.getStock() < min || product.getStock() > max ) {
+                outOfRange++;
+            } else {
+                Product updated = product.copy();
+                updated.setMin(min);
+                updated.setMax(max);
+                updatedProducts.add(updated);
+            }
+        }
+        if ( outOfRange > 0 ) {
+            errorLabel.setText(outOfRange + " selected product(s) have inventory outside " + min + "-" + max
+                               + "; nothing was changed.");
+            return;
+        }
+        try {
+            this.inventory.updateProducts(updatedProducts);
+            syncInventory();
+        } catch ( UncheckedIOException e ) {
+            errorLabel.setText(notSaved(e));
+            return;
+        }
+        errorLabel.setText("");
+    }
+
+    /**
+     * importCsv() asks the user for a CSV file and imports its parts and products on a background thread (see
+     * InventoryImporter for the file's layout). Each batch of rows is added to the inventory on that thread as well,
+     * and the import waits for the batch to reach the inventory log before it reads on; the table views pick the
+     * batches up on the JavaFX thread as they arrive.
+     * <p>
+     * When the import is done, the user is told how many rows were imported and which rows were skipped and why.
+     */
+    @FXML
+    public void importCsv() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Parts and Products");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        File file = chooser.showOpenDialog(importBtn.getScene().getWindow());
+        if ( file == null ) {
+            return;
+        }
+
+        InventoryImporter importer = new InventoryImporter(this.inventory, (parts, products) -> {
+            this.inventory.load(parts, products);
+            this.inventory.sync();
+        });
+        Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() throws IOException {
+                long size = file.length();
+                importer.importFile(file.toPath(), bytesRead -> updateProgress(bytesRead, size));
+                return null;
+            }
+        };
+
+        task.setOnSucceeded(event -> finishImport(importer, null));
+        task.setOnFailed(event -> finishImport(importer, task.getException()));
+        runInBackground(task, "inventory-import");
+    }
+
+    /**
+     * finishImport() tells the user how the import went.
+     *
+     * @param importer the importer that ran
+     * @param failure what stopped the import early, or null if the whole file was read
+     */
+    private void finishImport(InventoryImporter importer, Throwable failure) {
+        Alert alert = new Alert(failure == null ? Alert.AlertType.INFORMATION : Alert.AlertType.ERROR);
+        alert.setTitle(failure == null ? "Information Dialog" : "Error Dialog");
+        alert.setHeaderText(failure == null ? "Import finished." : "The import stopped early: " + failure.getMessage());
+        String summary = importer.getImportedCount() + " parts and products were imported.";
+        if ( importer.getErrorCount() > 0 ) {
+            summary += "\n" + importer.getErrorCount() + " rows were skipped; see the details below.";
+            TextArea details = new TextArea(String.join("\n", importer.getErrors()));
+            details.setEditable(false);
+            alert.getDialogPane().setExpandableContent(details);
+        }
+        alert.setContentText(summary);
+        alert.showAndWait();
+    }
+
+    /**
+     * exportInventory() asks the user where to save the inventory and writes it there on a background thread, as JSON
+     * if the file name ends in ".json" and as CSV otherwise. The inventory is snapshotted first, so the file shows it
+     * as it was when Export was pressed, and the user can keep making changes while it's written.
+     */
+    @FXML
+    public void exportInventory() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Inventory");
+        chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("JSON Files", "*.json"));
+        File file = chooser.showSaveDialog(exportBtn.getScene().getWindow());
+        if ( file == null ) {
+            return;
+        }
+        InventoryExporter.Format format = file.getName().toLowerCase(Locale.ROOT).endsWith(".json")
+                ? InventoryExporter.Format.JSON : InventoryExporter.Format.CSV;
+
+        InventorySnapshot snapshot = this.inventory.snapshot();
+        long total = snapshot.getParts().size() + snapshot.getProducts().size();
+        Task<Void> task = new Task<Void>() {
+            @Override
+            protected Void call() throws IOException {
+                InventoryExporter.export(snapshot, file.toPath(), format, written -> updateProgress(written, total));
+                return null;
+            }
+        };
+        task.setOnSucceeded(event -> errorLabel.setText(""));
+        task.setOnFailed(event -> {
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Error Dialog");
+            alert.setHeaderText("The inventory could not be exported to " + file + ".");
+            alert.setContentText(task.getException().getMessage());
+            alert.showAndWait();
+        });
+        runInBackground(task, "inventory-export");
+    }
+
+    /**
+     * runInBackground() runs an import or export task on its own thread. The progress bar follows the task, and the
+     * Import and Export buttons are disabled until it's done so only one runs at a time.
+     *
+     * @param task the task to run
+     * @param name name for the thread
+     */
+    private void runInBackground(Task<Void> task, String name) {
+        importBtn.setDisable(true);
+        exportBtn.setDisable(true);
+        progressBar.progressProperty().bind(task.progressProperty());
+        progressBar.setVisible(true);
+        task.runningProperty().addListener((observable, wasRunning, running) -> {
+            if ( !running ) {
+                progressBar.progressProperty().unbind();
+                progressBar.setVisible(false);
+                importBtn.setDisable(false);
+                exportBtn.setDisable(false);
+            }
+        });
+
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * exitBtnListener() listens for when the "Exit" button is pressed. Once it is, it closes the window which will
      * end the program.
@@ -0,0 +1,314 @@
+package InvManagement;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * MappedPartList is the list of all parts when the inventory was opened on a PartTable: a ColumnarSnapshot file, or
+ * PartColumns in memory. Parts that came from the table stay rows of it until something asks for them; only then is a
+ * Part object created, and the same object is handed out every time after that.
+ * <p>
+ * Each position in the list either refers to a table row or holds a Part added or changed since the table was
+ * opened. The list can be changed like any other list; setting a position to a new part means that position no longer
+ * refers to a row.
+ * <p>
+ * Searching the list with indexOf() or contains() compares by identity without creating any parts, since a part that
+ * was never created can't be the one being searched for.
+ */
+public class MappedPartList extends AbstractList<Part> implements RandomAccess {
+    /**
+     * The table the rows come from.
+     */
+    private final PartTable table;
+    /**
+     * Part object created for each row, or null if none has been yet; shared with copies of this list, so a row
+     * always turns into the same object.
+     */
+    private final Part[] partsByRow;
+
+    /**
+     * Table row at each position, or -1 where the position holds a part from parts instead.
+     */
+    private int[] rows;
+    /**
+     * Part at each position that doesn't refer to a row.
+     */
+    private Part[] parts;
+    /**
+     * Number of positions in use.
+     */
+    private int size;
+    /**
+     * Rows that are still somewhere in this list.
+     */
+    private BitSet liveRows;
+
+    /**
+     * @param table the mapped snapshot or columns
+     * @param removedRows rows that should not be in the list, e.g. because the part was deleted since the snapshot
+     * @param replacements parts that take the place of a row, by row; the row keeps its position in the list
+     */
+    public MappedPartList(PartTable table, BitSet removedRows, IntObjectMap<Part> replacements) {
+        this.table = table;
+        this.partsByRow = new Part[table.size()];
+        this.rows = new int[Math.max(8, table.size())];
+        this.parts = new Part[this.rows.length];
+        this.liveRows = new BitSet(table.size());
+
+        for ( int row = 0; row < table.size(); row++ ) {
+            if ( removedRows.get(row) ) {
+                continue;
+            }
+            Part replacement = replacements.get(row);
+            if ( replacement != null ) {
+                this.rows[this.size] = -1;
+                this.parts[this.size] = replacement;
+            } else {
+                this.rows[this.size] = row;
+                this.liveRows.set(row);
+            }
+            this.size++;
+        }
+    }
+
+    /**
+     * @param source list to copy
+     */
+    private MappedPartList(MappedPartList source) {
+        this.table = source.table;
+        this.partsByRow = source.partsByRow;
+        this.rows = Arrays.copyOf(source.rows, source.size);
+        this.parts = Arrays.copyOf(source.parts, source.size);
+        this.size = source.size;
+        this.liveRows = (BitSet) source.liveRows.clone();
+    }
+
+    /**
+     * copy() only copies the row numbers, so it's cheap even for a million parts and creates no Part objects.
+     *
+     * @return a separate list with the same parts
+     */
+    public MappedPartList copy() { return new MappedPartList(this); }
+
+    /**
+     * @return the table the rows come from
+     */
+    public PartTable getTable() { return table; }
+
+    /**
+     * @param index a position in the list
+     * @return the table row at that position, or -1 if the position holds a part added or changed since then
+     */
+    public int mappedRowAt(int index) {
+        checkIndex(index);
+        return rows[index];
+    }
+
+    /**
+     * lookup() finds a part that is still a table row by its ID, creating the Part object if needed.
+     *
+     * @param id the part ID to look for
+     * @return the part, or null if no row with that ID is still in the list
+     */
+    public Part lookup(int id) {
+        int row = table.rowOf(id);
+        return row >= 0 && liveRows.get(row) ? partAtRow(row) : null;
+    }
+
+    /**
+     * @param row a table row
+     * @return whether the row's part is still in the list, unchanged
+     */
+    public boolean isLiveRow(int row) { return liveRows.get(row); }
+
+    /**
+     * @param row a table row
+     * @return the row's part, created if needed, or null if it was deleted or replaced since the table was opened
+     */
+    public Part partOfRow(int row) { return liveRows.get(row) ? partAtRow(row) : null; }
+
+    /**
+     * addTotals() counts every part in the list, reading the fields of parts that are still table rows straight from
+     * the table's columns, so no Part objects are created.
+     *
+     * @param totals the totals to count the parts in
+     */
+    public void addTotals(StockTotals totals) {
+        for ( int i = 0; i < size; i++ ) {
+            int row = rows[i];
+            if ( row >= 0 ) {
+                totals.add(table.getPrice(row), table.getStock(row), table.getMin(row));
+            } else {
+                totals.add(parts[i]);
+            }
+        }
+    }
+
+    @Override
+    public Part get(int index) {
+        checkIndex(index);
+        return rows[index] >= 0 ? partAtRow(rows[index]) : parts[index];
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public Part set(int index, Part part) {
+        Part previous = get(index);
+        if ( rows[index] >= 0 ) {
+            liveRows.clear(rows[index]);
+            rows[index] = -1;
+        }
+        parts[index] = part;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Part part) {
+        if ( index < 0 || index > size ) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if ( size == rows.length ) {
+            rows = Arrays.copyOf(rows, Math.max(8, size * 2));
+            parts = Arrays.copyOf(parts, Math.max(8, size * 2));
+        }
+        System.arraycopy(rows, index, rows, index + 1, size - index);
+        System.arraycopy(parts, index, parts, index + 1, size - index);
+        rows[index] = -1;
+        parts[index] = part;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public Part remove(int index) {
+        Part previous = get(index);
+        if ( rows[index] >= 0 ) {
+            liveRows.clear(rows[index]);
+        }
+        System.arraycopy(rows, index + 1, rows, index, size - index - 1);
+        System.arraycopy(parts, index + 1, parts, index, size - index - 1);
+        size--;
+        parts[size] = null;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if ( !(o instanceof Part) ) {
+            return -1;
+        }
+        synchronized (partsByRow) {
+            for ( int i = 0; i < size; i++ ) {
+                if ( (rows[i] >= 0 ? partsByRow[rows[i]] : parts[i]) == o ) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) { return indexOf(o) >= 0; }
+
+    /**
+     * positionsOf() finds where each of the given parts is without creating any parts, for the same reason as
+     * indexOf().
+     *
+     * @param items the parts to find; checked with contains(), so pass an identity-based set
+     * @return the positions that hold one of the parts
+     */
+    public BitSet positionsOf(Set<?> items) {
+        BitSet positions = new BitSet(size);
+        synchronized (partsByRow) {
+            for ( int i = 0; i < size; i++ ) {
+                Part part = rows[i] >= 0 ? partsByRow[rows[i]] : parts[i];
+                if ( part != null && items.contains(part) ) {
+                    positions.set(i);
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * removedParts() lists the parts at some positions so they can be reported as removed, without creating a Part for
+     * every row among them. The positions are read right away, but a row's part is only created if the list is read,
+     * and it isn't kept, since the row is about to leave the list.
+     *
+     * @param from first position
+     * @param to position after the last one
+     * @return the parts from from param up to to param, as they are now
+     */
+    public List<Part> removedParts(int from, int to) {
+        int[] removedRows = Arrays.copyOfRange(rows, from, to);
+        Part[] removedParts = Arrays.copyOfRange(parts, from, to);
+        return new AbstractList<Part>() {
+            @Override
+            public Part get(int index) {
+                if ( removedRows[index] < 0 ) {
+                    return removedParts[index];
+                }
+                synchronized (partsByRow) {
+                    Part part = partsByRow[removedRows[index]];
+                    return part != null ? part : table.createPart(removedRows[index]);
+                }
+            }
+
+            @Override
+            public int size() { return removedRows.length; }
+        };
+    }
+
+    /**
+     * removePositions() removes many positions in one pass, instead of shifting the rest of the list once per removed
+     * part.
+     *
+     * @param positions the positions to remove
+     */
+    public void removePositions(BitSet positions) {
+        int kept = 0;
+        for ( int i = 0; i < size; i++ ) {
+            if ( positions.get(i) ) {
+                if ( rows[i] >= 0 ) { liveRows.clear(rows[i]); }
+            } else {
+                rows[kept] = rows[i];
+                parts[kept] = parts[i];
+                kept++;
+            }
+        }
+        Arrays.fill(parts, kept, size, null);
+        size = kept;
+        modCount++;
+    }
+
+    /**
+     * partAtRow() creates the Part object for a row the first time it's needed. It's synchronized so the table view
+     * and a background search can never create two different objects for the same row.
+     *
+     * @param row a table row
+     * @return the one Part object for that row
+     */
+    private Part partAtRow(int row) {
+        synchronized (partsByRow) {
+            Part part = partsByRow[row];
+            if ( part == null ) {
+                part = table.createPart(row);
+                partsByRow[row] = part;
+            }
+            return part;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if ( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
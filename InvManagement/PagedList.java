@@ -0,0 +1,350 @@
+package InvManagement;
+
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PagedList is a read-only observable list for a table view that doesn't hold its rows. It asks a Source for them a
+ * page at a time, when the table first asks for a row on that page, and only keeps the last few pages it fetched. A
+ * table only asks for the rows it has on screen, so however many rows the source has, the list holds a few hundred at
+ * most.
+ * <p>
+ * Each fetch also brings in the pages just before and after the one asked for, so scrolling a little either way
+ * doesn't have to wait for the source.
+ * <p>
+ * The list doesn't notice when the source's rows change; whoever owns the source tells it, either with refresh(),
+ * which drops every cached page and tells listeners that every row was replaced, with forward(), which passes on the
+ * edits the inventory reported (see ListEdit), or with rowChanged() when only one row was added, removed, or moved.
+ * Only the number of removed rows is known after a refresh, so the removed rows in its change event are all null.
+ * <p>
+ * It should only be used on the JavaFX application thread. A source that reads a list changed on other threads can
+ * end up with fewer rows than it had when the list last refreshed; the missing rows are null until it's refreshed
+ * again.
+ *
+ * @param <T> type of the rows
+ */
+public class PagedList<T> extends AbstractList<T> implements ObservableList<T> {
+    /**
+     * Rows per page; about as many as a table shows at once.
+     */
+    private static final int PAGE_SIZE = 64;
+    /**
+     * Most pages kept at once; the ones used longest ago are dropped first.
+     */
+    private static final int MAX_PAGES = 32;
+
+    /**
+     * Source is where a paged list gets its rows from.
+     *
+     * @param <T> type of the rows
+     */
+    public interface Source<T> {
+        /**
+         * @return how many rows there are
+         */
+        int size();
+
+        /**
+         * @param offset index of the first row to return
+         * @param limit the most rows to return
+         * @return the rows from offset param on; fewer than limit param at the end
+         */
+        List<T> fetch(int offset, int limit);
+    }
+
+    private final List<InvalidationListener> invalidationListeners = new ArrayList<>();
+    private final List<ListChangeListener<? super T>> changeListeners = new ArrayList<>();
+
+    /**
+     * Pages fetched so far, by page number, least recently used first.
+     */
+    private final LinkedHashMap<Integer, List<T>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) { return size() > MAX_PAGES; }
+    };
+    /**
+     * Where the rows come from.
+     */
+    private Source<T> source;
+    /**
+     * Number of rows, as the source reported at the last refresh or forwarded change.
+     */
+    private int size;
+
+    /**
+     * @param source where the rows come from
+     */
+    public PagedList(Source<T> source) {
+        this.source = source;
+        this.size = source.size();
+    }
+
+    /**
+     * of() wraps a list that is already in memory, such as the matches of a search or an inventory view.
+     *
+     * @param rows the rows, in the order they should be shown; read, not copied
+     * @param <T> type of the rows
+     * @return a source that reads the list
+     */
+    public static <T> Source<T> of(List<T> rows) {
+        return new Source<T>() {
+            public int size() { return rows.size(); }
+            public List<T> fetch(int offset, int limit) {
+                int from = Math.min(offset, rows.size());
+                return new ArrayList<>(rows.subList(from, Math.min(rows.size(), from + limit)));
+            }
+        };
+    }
+
+    @Override
+    public T get(int index) {
+        if ( index < 0 || index >= size ) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        int pageNumber = index / PAGE_SIZE;
+        List<T> page = pages.get(pageNumber);
+        if ( page == null ) {
+            page = fetchAround(pageNumber);
+        }
+        int at = index % PAGE_SIZE;
+        return at < page.size() ? page.get(at) : null;
+    }
+
+    @Override
+    public int size() { return size; }
+
+    /**
+     * fetchAround() fetches a page along with the pages on either side of it in one call to the source.
+     *
+     * @param pageNumber the page that was asked for
+     * @return that page's rows
+     */
+    private List<T> fetchAround(int pageNumber) {
+        int first = Math.max(0, pageNumber - 1);
+        List<T> rows = source.fetch(first * PAGE_SIZE, (pageNumber + 2 - first) * PAGE_SIZE);
+        List<T> wanted = Collections.emptyList();
+        for ( int number = first; number <= pageNumber + 1; number++ ) {
+            int from = Math.min(rows.size(), (number - first) * PAGE_SIZE);
+            List<T> page = rows.subList(from, Math.min(rows.size(), from + PAGE_SIZE));
+            if ( number == pageNumber ) {
+                wanted = page;
+            } else if ( page.isEmpty() ) {
+                continue;
+            }
+            pages.put(number, page);
+        }
+        pages.get(pageNumber); // Make sure the page asked for is the last one to be dropped
+        return wanted;
+    }
+
+    /**
+     * setSource() switches to other rows, such as the same items in a different order; see refresh().
+     *
+     * @param source where the rows come from from now on
+     */
+    public void setSource(Source<T> source) {
+        this.source = source;
+        refresh();
+    }
+
+    /**
+     * refresh() drops every cached page and tells listeners that every row was replaced.
+     */
+    public void refresh() {
+        int oldSize = this.size;
+        this.pages.clear();
+        this.size = this.source.size();
+        fire(new Reset(oldSize));
+    }
+
+    /**
+     * forward() passes on edits to the source's rows, as one change event, so listeners such as a table's selection
+     * only hear about the rows that actually changed.
+     *
+     * @param edits the edits, with the same indexes as this list's rows; in order of position, none starting before
+     *              the end of the one ahead of it
+     */
+    public void forward(List<ListEdit<T>> edits) {
+        this.pages.clear();
+        this.size = this.source.size();
+        int[] positions = new int[2 * edits.size()];
+        List<List<T>> removed = new ArrayList<>(edits.size());
+        for ( int i = 0; i < edits.size(); i++ ) {
+            positions[2 * i] = edits.get(i).getFrom();
+            positions[2 * i + 1] = edits.get(i).getTo();
+            removed.add(Collections.unmodifiableList(edits.get(i).getRemoved()));
+        }
+        fire(new Steps(positions, removed));
+    }
+
+    /**
+     * rowChanged() tells listeners that a single row was added or removed, or that one row was removed and another
+     * added, such as an item that moved in a sorted list when it was updated. Only those rows change for listeners
+     * like a table's selection.
+     *
+     * @param removedAt where the removed row was, before the change; -1 if no row was removed
+     * @param removed the removed row; ignored if removedAt param is -1
+     * @param addedAt where the added row is, after the change; -1 if no row was added
+     */
+    public void rowChanged(int removedAt, T removed, int addedAt) {
+        this.pages.clear();
+        this.size = this.source.size();
+        List<T> removedRow = Collections.singletonList(removed);
+        List<T> nothing = Collections.emptyList();
+        if ( removedAt < 0 ) {
+            fire(new Steps(new int[] { addedAt, addedAt + 1 }, Collections.singletonList(nothing)));
+        } else if ( addedAt < 0 ) {
+            fire(new Steps(new int[] { removedAt, removedAt }, Collections.singletonList(removedRow)));
+        } else if ( addedAt == removedAt ) {
+            fire(new Steps(new int[] { addedAt, addedAt + 1 }, Collections.singletonList(removedRow)));
+        } else if ( addedAt < removedAt ) {
+            // Adding first moves the removed row down by one
+            fire(new Steps(new int[] { addedAt, addedAt + 1, removedAt + 1, removedAt + 1 },
+                    Arrays.asList(nothing, removedRow)));
+        } else {
+            fire(new Steps(new int[] { removedAt, removedAt, addedAt, addedAt + 1 },
+                    Arrays.asList(removedRow, nothing)));
+        }
+    }
+
+    private void fire(ListChangeListener.Change<T> change) {
+        for ( InvalidationListener listener : new ArrayList<>(invalidationListeners) ) {
+            listener.invalidated(this);
+        }
+        for ( ListChangeListener<? super T> listener : new ArrayList<>(changeListeners) ) {
+            change.reset();
+            listener.onChanged(change);
+        }
+    }
+
+    @Override
+    public void addListener(InvalidationListener listener) { invalidationListeners.add(listener); }
+
+    @Override
+    public void removeListener(InvalidationListener listener) { invalidationListeners.remove(listener); }
+
+    @Override
+    public void addListener(ListChangeListener<? super T> listener) { changeListeners.add(listener); }
+
+    @Override
+    public void removeListener(ListChangeListener<? super T> listener) { changeListeners.remove(listener); }
+
+    @SafeVarargs
+    @Override
+    public final boolean addAll(T... elements) { throw new UnsupportedOperationException(); }
+
+    @SafeVarargs
+    @Override
+    public final boolean setAll(T... elements) { throw new UnsupportedOperationException(); }
+
+    @Override
+    public boolean setAll(Collection<? extends T> col) { throw new UnsupportedOperationException(); }
+
+    @SafeVarargs
+    @Override
+    public final boolean removeAll(T... elements) { throw new UnsupportedOperationException(); }
+
+    @SafeVarargs
+    @Override
+    public final boolean retainAll(T... elements) { throw new UnsupportedOperationException(); }
+
+    @Override
+    public void remove(int from, int to) { throw new UnsupportedOperationException(); }
+
+    /**
+     * The change event for refresh(): every old row was removed and every new row added, in one step.
+     */
+    private class Reset extends ListChangeListener.Change<T> {
+        /**
+         * Stands in for the removed rows, which aren't kept.
+         */
+        private final List<T> removed;
+        private boolean started;
+
+        Reset(int oldSize) {
+            super(PagedList.this);
+            this.removed = Collections.nCopies(oldSize, null);
+        }
+
+        @Override
+        public boolean next() {
+            if ( started ) {
+                return false;
+            }
+            started = true;
+            return true;
+        }
+
+        @Override
+        public void reset() { started = false; }
+
+        @Override
+        public int getFrom() { return 0; }
+
+        @Override
+        public int getTo() { return size; }
+
+        @Override
+        public List<T> getRemoved() { return removed; }
+
+        @Override
+        protected int[] getPermutation() { return new int[0]; }
+    }
+
+    /**
+     * The change event for rowChanged() and forward(): one or more steps, each removing some rows and adding others at
+     * one place. Each step's positions are in the list as it is after the steps before it.
+     */
+    private class Steps extends ListChangeListener.Change<T> {
+        /**
+         * from and to of each step, one after the other.
+         */
+        private final int[] positions;
+        /**
+         * Rows each step removed.
+         */
+        private final List<List<T>> removed;
+        /**
+         * Step being looked at; -1 before next() is first called.
+         */
+        private int step = -1;
+
+        /**
+         * @param positions from and to of each step, one after the other
+         * @param removed rows each step removed, one list per step
+         */
+        Steps(int[] positions, List<List<T>> removed) {
+            super(PagedList.this);
+            this.positions = positions;
+            this.removed = removed;
+        }
+
+        @Override
+        public boolean next() { return ++step < removed.size(); }
+
+        @Override
+        public void reset() { step = -1; }
+
+        @Override
+        public int getFrom() { return positions[2 * step]; }
+
+        @Override
+        public int getTo() { return positions[2 * step + 1]; }
+
+        @Override
+        public List<T> getRemoved() { return removed.get(step); }
+
+        @Override
+        protected int[] getPermutation() { return new int[0]; }
+    }
+}
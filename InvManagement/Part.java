@@ -14,7 +14,12 @@ public abstract class Part {
     private double price;
     private int stock;
     private int min;
-    private int max;    
+    private int max;
+    /**
+     * Stamped by the inventory each time the part is stored in it; a part that replaces another gets a higher stamp
+     * than the one it replaced. Lets an editor check when saving that nobody changed the part since it was opened.
+     */
+    private long version;
     public Part(int id, String name, double price, int stock, int min, int max) {
         this.id = id;
         this.name = name;
@@ -107,4 +112,18 @@ public abstract class Part {
         this.max = max;
     }
 
+    /**
+     * @return the version; 0 if the part was never stored in an inventory
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version the version to set; only the inventory sets it, when it stores the part
+     */
+    void setVersion(long version) {
+        this.version = version;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+package InvManagement;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * PartColumns keeps parts in memory the way a ColumnarSnapshot keeps them in a file: one array per field, with a
+ * part's fields all at the same index (its row), instead of one object per part. Names and company names go into one
+ * shared StringPool, so each distinct name is stored once, as bytes.
+ * <p>
+ * A Part object with its name takes over a hundred bytes, on top of what the inventory's indexes keep for it; a row
+ * takes about 40 bytes plus its name. Opened through a MappedPartList (see Inventory.loadMapped()), rows only turn
+ * into Part objects when a part is shown, looked up, changed, or found by a name search; the name search itself reads
+ * the pooled name bytes (see RowNameIndex). Reading one field of every row, as Inventory.getPartTotals() does, goes
+ * through a few arrays in order instead of visiting a million objects.
+ * <p>
+ * The columns never change once they're built; a MappedPartList keeps track of parts added, changed, or deleted since.
+ * They can be read from any thread.
+ */
+public class PartColumns implements PartTable {
+    private final int[] ids;
+    private final double[] prices;
+    private final int[] stocks;
+    private final int[] mins;
+    private final int[] maxes;
+    /**
+     * Whether each row is an In-House part; otherwise it's Outsourced.
+     */
+    private final boolean[] inHouse;
+    /**
+     * Each row's machine ID if it's In-House, or its company name's handle in strings if it's Outsourced.
+     */
+    private final int[] extras;
+    /**
+     * Each row's name's handle in strings.
+     */
+    private final int[] names;
+    /**
+     * Names and company names.
+     */
+    private final StringPool strings;
+    /**
+     * The IDs in sorted order, and the row each one is on, for rowOf().
+     */
+    private final int[] sortedIDs;
+    private final int[] sortedRows;
+
+    /**
+     * @param size number of rows
+     * @param strings pool for the rows' names
+     */
+    private PartColumns(int size, StringPool strings) {
+        this.ids = new int[size];
+        this.prices = new double[size];
+        this.stocks = new int[size];
+        this.mins = new int[size];
+        this.maxes = new int[size];
+        this.inHouse = new boolean[size];
+        this.extras = new int[size];
+        this.names = new int[size];
+        this.strings = strings;
+        this.sortedIDs = new int[size];
+        this.sortedRows = new int[size];
+    }
+
+    /**
+     * of() copies parts into columns, one row per part in the order given. Once this returns, the Part objects
+     * themselves aren't needed anymore.
+     *
+     * @param parts the parts to copy; their IDs should all be different
+     * @return columns with one row for each part
+     */
+    public static PartColumns of(Collection<? extends Part> parts) {
+        PartColumns columns = new PartColumns(parts.size(), new StringPool());
+        long[] sorted = new long[parts.size()];
+        int row = 0;
+        for ( Part part : parts ) {
+            columns.ids[row] = part.getId();
+            columns.prices[row] = part.getPrice();
+            columns.stocks[row] = part.getStock();
+            columns.mins[row] = part.getMin();
+            columns.maxes[row] = part.getMax();
+            columns.names[row] = columns.strings.add(part.getName());
+            if ( part instanceof InHouse ) {
+                columns.inHouse[row] = true;
+                columns.extras[row] = ((InHouse) part).getMachineID();
+            } else {
+                String companyName = part instanceof Outsourced ? ((Outsourced) part).getCompanyName() : "";
+                columns.extras[row] = columns.strings.add(companyName);
+            }
+            sorted[row] = ((long) part.getId() << 32) | row;
+            row++;
+        }
+        columns.strings.trim();
+
+        // Sorting (id, row) pairs packed into longs keeps the sort on primitives, like ColumnarSnapshot.write()
+        Arrays.sort(sorted);
+        for ( int i = 0; i < sorted.length; i++ ) {
+            columns.sortedIDs[i] = (int) (sorted[i] >> 32);
+            columns.sortedRows[i] = (int) sorted[i];
+        }
+        return columns;
+    }
+
+    @Override
+    public int size() { return ids.length; }
+
+    @Override
+    public int getId(int row) { return ids[row]; }
+
+    @Override
+    public double getPrice(int row) { return prices[row]; }
+
+    @Override
+    public int getStock(int row) { return stocks[row]; }
+
+    @Override
+    public int getMin(int row) { return mins[row]; }
+
+    @Override
+    public int getMax(int row) { return maxes[row]; }
+
+    @Override
+    public boolean isInHouse(int row) { return inHouse[row]; }
+
+    @Override
+    public int getMachineID(int row) { return inHouse[row] ? extras[row] : 0; }
+
+    @Override
+    public String getName(int row) { return strings.get(names[row]); }
+
+    @Override
+    public String getCompanyName(int row) { return inHouse[row] ? "" : strings.get(extras[row]); }
+
+    @Override
+    public ByteBuffer getNameBytes(int row) { return strings.getBytes(names[row]); }
+
+    @Override
+    public ByteBuffer getCompanyNameBytes(int row) {
+        return inHouse[row] ? ByteBuffer.allocate(0) : strings.getBytes(extras[row]);
+    }
+
+    @Override
+    public int rowOf(int id) {
+        int index = Arrays.binarySearch(sortedIDs, id);
+        return index >= 0 ? sortedRows[index] : -1;
+    }
+
+    @Override
+    public int getSortedID(int index) { return sortedIDs[index]; }
+}
@@ -5,7 +5,7 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.io.UncheckedIOException;
 
 /**
  * PartFormController is responsible for the part form pane of the inventory management program.
@@ -40,11 +40,6 @@ public class PartFormController {
      */
     private Part existingPart;
 
-    /**
-     * Used to generate ID for new parts.
-     */
-    private static final AtomicInteger generateID = new AtomicInteger(1);
-
     /**
      * Shows any errors that occur when validating input.
      */
@@ -197,19 +192,31 @@ public class PartFormController {
      * First, it uses isInputValid() to make sure all fields fit business rules and expected data types.
      * Next, it calls either addPart() or updatePart() depending on which process was selected from MainController.
      * Finally, it exits the part form pane and returns to main inventory menu, which will show data updates.
+     * If the change can't be written to the inventory log, the part isn't saved and the form stays open with the
+     * reason shown. The form waits for the log to be written before it closes, so a closed form means a saved part.
      */
     public void addUpdatePart() {
         if (isInputValid()) {
-            switch (action) {
-                case ADD: addPart(fillPartData());
-                    break;
-                case UPDATE: updatePart(fillPartData());
-                    break;
-                default: Stage stage = (Stage) cancelBtn.getScene().getWindow();
-                    stage.close();
+            boolean saved = true;
+            try {
+                switch (action) {
+                    case ADD: saved = addPart(fillPartData());
+                        break;
+                    case UPDATE: saved = updatePart(fillPartData());
+                        break;
+                    default: Stage stage = (Stage) cancelBtn.getScene().getWindow();
+                        stage.close();
+                }
+            } catch ( UncheckedIOException e ) {
+                saved = false;
+                errorLabel.setText("The part couldn't be written to the inventory log, so it wasn't saved.\n"
+                                   + "(" + e.getCause().getMessage() + ")");
             }
 
-            exitForm();
+            if ( saved ) {
+                mainController.syncInventory();
+                exitForm();
+            }
         }
     }
 
@@ -309,23 +316,33 @@ public class PartFormController {
      * updatePart() makes changes to an existing part in the main inventory.
      * This function is private so that it can only be called from addUpdatePart within this class. That way,
      * it will ALWAYS be called after a call to isInputValid().
-     * Additionally, products in the inventory are also scanned to find any products that may contain the associated
-     * part that is being updated. If it has that part, it is deleted and the new updated part is added. This is a key
-     * spot for optimization work.
+     * Any products that have the existing part associated with them get the updated part in its place; the inventory
+     * takes care of that using its part-to-product index, so only those products are touched.
+     * <p>
+     * If the part was changed somewhere else (another form, an import) after this form was opened, the save is turned
+     * down and the user is told; pressing "Save" again overwrites those changes on purpose. If it was deleted, it
+     * can't be saved at all.
      *
      * @param newPart part with changes
+     * @return whether or not the part was saved
      */
-    private void updatePart(Part newPart) {
+    private boolean updatePart(Part newPart) {
         newPart.setId(existingPart.getId());
 
-        mainController.getInventory().updatePart(mainController.getInventory().getAllParts().indexOf(existingPart), newPart);
+        Inventory inventory = mainController.getInventory();
+        if ( inventory.updatePart(existingPart, newPart) ) {
+            return true;
+        }
 
-        for (Product product : mainController.getInventory().getAllProducts() ) {
-            while ( product.getAllAssociatedParts().contains(existingPart) ) {
-                product.deleteAssociatedPart(existingPart);
-                product.addAssociatedPart(newPart);
-            }
+        Part latest = inventory.lookupPart(existingPart.getId());
+        if ( latest == null ) {
+            errorLabel.setText("This part was deleted after the form was opened, so it can't be saved.");
+        } else {
+            this.existingPart = latest;
+            errorLabel.setText("This part was changed somewhere else after the form was opened.\n"
+                               + "Press Save again to overwrite those changes.");
         }
+        return false;
     }
 
     /**
@@ -334,13 +351,18 @@ public class PartFormController {
      * it will ALWAYS be called after a call to isInputValid().
      *
      * @param newPart part to be added
+     * @return false, with the reason shown, if there's no ID left to give the part
      */
-    private void addPart(Part newPart) {
-        int newID = generateID.getAndIncrement();
-        while (mainController.getInventory().lookupPart(newID) != null) { newID = generateID.getAndIncrement(); }
-        newPart.setId(newID);
+    private boolean addPart(Part newPart) {
+        try {
+            newPart.setId(mainController.getInventory().generatePartID());
+        } catch ( IllegalStateException e ) {
+            errorLabel.setText("Every part ID is already in use, so the part can't be saved.");
+            return false;
+        }
 
         mainController.getInventory().addPart(newPart);
+        return true;
     }
 
     /**
@@ -0,0 +1,113 @@
+package InvManagement;
+
+import java.nio.ByteBuffer;
+
+/**
+ * PartTable is a table of parts stored as columns, one row per part, that a MappedPartList reads parts from. Each
+ * field of every row can be read on its own, without creating a Part object; createPart() is only called when a part
+ * is actually needed as an object.
+ * <p>
+ * There are two kinds: a ColumnarSnapshot, whose columns are a memory-mapped file, and a PartColumns, whose columns
+ * are arrays in memory.
+ */
+public interface PartTable {
+    /**
+     * @return number of parts (rows) in the table
+     */
+    int size();
+
+    /**
+     * @param row a row in the table
+     * @return the part's ID
+     */
+    int getId(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's price
+     */
+    double getPrice(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's stock
+     */
+    int getStock(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's min
+     */
+    int getMin(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's max
+     */
+    int getMax(int row);
+
+    /**
+     * @param row a row in the table
+     * @return whether the part is In-House (otherwise it's Outsourced)
+     */
+    boolean isInHouse(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's machine ID; 0 for an Outsourced part
+     */
+    int getMachineID(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's name
+     */
+    String getName(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's company name; empty for an In-House part
+     */
+    String getCompanyName(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's name as UTF-8, read without creating a String; read-only
+     */
+    ByteBuffer getNameBytes(int row);
+
+    /**
+     * @param row a row in the table
+     * @return the part's company name as UTF-8, read without creating a String; read-only
+     */
+    ByteBuffer getCompanyNameBytes(int row);
+
+    /**
+     * rowOf() finds a part by ID with a binary search of the table's IDs in sorted order.
+     *
+     * @param id the part ID to look for
+     * @return the row of the part with that ID, or -1 if the table has no such part
+     */
+    int rowOf(int id);
+
+    /**
+     * @param index position in the table's IDs, sorted
+     * @return the index-th smallest part ID in the table
+     */
+    int getSortedID(int index);
+
+    /**
+     * createPart() is where a row finally turns into a Part object; every call makes a new one.
+     *
+     * @param row a row in the table
+     * @return a new part with the row's data
+     */
+    default Part createPart(int row) {
+        if ( isInHouse(row) ) {
+            return new InHouse(getId(row), getName(row), getPrice(row), getStock(row), getMin(row), getMax(row),
+                    getMachineID(row));
+        }
+        return new Outsourced(getId(row), getName(row), getPrice(row), getStock(row), getMin(row), getMax(row),
+                getCompanyName(row));
+    }
+}
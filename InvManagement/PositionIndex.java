@@ -0,0 +1,95 @@
+package InvManagement;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * PositionIndex remembers where each part or product is in the inventory's list, by ID, so an item found through its
+ * ID can be replaced or deleted without scanning the list for it.
+ * <p>
+ * Items are only ever added at the end of the list, but deleting one moves every item after it up by one. Instead of
+ * renumbering all of those right away, the index only keeps track of how far from the start its positions are still
+ * right. The first lookup that needs a position past that point reads the IDs from there to the end of the list again;
+ * a burst of deletes therefore costs one catch-up, not one per delete. A bulk load is handled the same way: nothing is
+ * added to the index until a position is needed.
+ * <p>
+ * IDs are read through a function rather than from the items, so an inventory opened on a PartTable can read them
+ * from the table's ID column without creating a Part for every row.
+ * <p>
+ * It isn't thread-safe; the inventory only uses it while it's locked.
+ */
+public class PositionIndex {
+    /**
+     * Position of each ID, plus one, since IntIntMap can't store zero.
+     */
+    private final IntIntMap positions = new IntIntMap();
+    /**
+     * Positions below this are right for every item there; the items from here on may be missing or out of date.
+     */
+    private int validUpTo;
+
+    /**
+     * find() looks up where the item with an ID is, catching up with the list first if the ID's position might be out
+     * of date.
+     *
+     * @param id the ID to look for
+     * @param size number of items in the list
+     * @param idAt reads the ID of the item at a position in the list
+     * @return the ID's position in the list, or -1 if no item there has that ID
+     */
+    public int find(int id, int size, IntUnaryOperator idAt) {
+        int position = positions.get(id) - 1;
+        if ( position >= 0 && position < validUpTo ) {
+            return position;
+        }
+        for ( ; validUpTo < size; validUpTo++ ) {
+            positions.put(idAt.applyAsInt(validUpTo), validUpTo + 1);
+        }
+        position = positions.get(id) - 1;
+        return position < size ? position : -1;
+    }
+
+    /**
+     * @param id ID of the item just added to the end of the list
+     * @param position where it was added; the list's size before the add
+     */
+    public void added(int id, int position) {
+        if ( position == validUpTo ) {
+            positions.put(id, position + 1);
+            validUpTo++;
+        }
+    }
+
+    /**
+     * @param oldId ID of the item that was replaced
+     * @param newId ID of the item that took its place
+     * @param position where the item is in the list
+     */
+    public void replaced(int oldId, int newId, int position) {
+        if ( oldId != newId ) {
+            positions.remove(oldId);
+        }
+        if ( position < validUpTo ) {
+            positions.put(newId, position + 1);
+        }
+    }
+
+    /**
+     * removed() forgets an item's ID. Every item after it has moved up by one, so their positions are out of date
+     * until the next find() that needs one of them.
+     *
+     * @param id ID of the item that was removed
+     * @param position where the item was in the list
+     */
+    public void removed(int id, int position) {
+        positions.remove(id);
+        validUpTo = Math.min(validUpTo, position);
+    }
+
+    /**
+     * clear() forgets every position, such as when the inventory switches to a different list.
+     */
+    public void clear() {
+        positions.clear();
+        validUpTo = 0;
+    }
+}
@@ -0,0 +1,168 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * PrefixIndex keeps parts or products sorted by their normalized name so "starts with" searches only visit the
+ * matches instead of every item in the inventory.
+ * <p>
+ * A name is normalized the same way the search bars always compared names: lowercase with all spaces removed. That
+ * key is worked out once when an item is added and remembered, so a query never has to lowercase every name again.
+ * Remembering the key also means an item can still be removed after its name was changed in place.
+ * <p>
+ * Items with the same normalized name share one entry in the sorted map. Each item also remembers where it is in
+ * that entry's list, and a removed item's place is taken by the last item in the list, so removing one of thousands
+ * of parts with the same name doesn't scan or shift the others. Items with the same name therefore aren't kept in any
+ * particular order.
+ *
+ * @param <T> the type of item being indexed (Part or Product)
+ */
+public class PrefixIndex<T> {
+    /**
+     * Sorted map of normalized name to every item with that name.
+     */
+    private final TreeMap<String, List<T>> itemsByKey = new TreeMap<>();
+    /**
+     * Where each item was indexed; compared by identity, since items are mutable.
+     */
+    private final IdentityHashMap<T, Slot> slotByItem = new IdentityHashMap<>();
+
+    /**
+     * Slot is where an item is in the index: the normalized key it was indexed under, and its position in that key's
+     * list.
+     */
+    private static final class Slot {
+        private final String key;
+        private int position;
+
+        private Slot(String key, int position) {
+            this.key = key;
+            this.position = position;
+        }
+    }
+
+    /**
+     * @param name the name as typed by the user or stored on a part/product
+     * @return the name in lowercase with all spaces removed
+     */
+    public static String normalize(String name) {
+        return name.toLowerCase().replace(" ", "");
+    }
+
+    /**
+     * compareNormalized() puts names in the order of their normalized keys, mostly; it lowercases and skips spaces one
+     * character at a time instead of making new strings, so it's cheap enough to be used for sorting.
+     *
+     * @param name a name
+     * @param otherName another name
+     * @return negative, zero, or positive as name param comes before, together with, or after otherName param
+     */
+    public static int compareNormalized(String name, String otherName) {
+        int i = 0;
+        int j = 0;
+        while ( true ) {
+            while ( i < name.length() && name.charAt(i) == ' ' ) { i++; }
+            while ( j < otherName.length() && otherName.charAt(j) == ' ' ) { j++; }
+            boolean nameEnded = i == name.length();
+            boolean otherNameEnded = j == otherName.length();
+            if ( nameEnded || otherNameEnded ) {
+                return nameEnded == otherNameEnded ? 0 : (nameEnded ? -1 : 1); // A prefix comes first
+            }
+            char c = Character.toLowerCase(name.charAt(i++));
+            char d = Character.toLowerCase(otherName.charAt(j++));
+            if ( c != d ) {
+                return c - d;
+            }
+        }
+    }
+
+    /**
+     * @param item the item to add to the index
+     * @param name the item's current name
+     */
+    public void add(T item, String name) {
+        remove(item);
+        String key = normalize(name);
+        List<T> items = itemsByKey.computeIfAbsent(key, k -> new ArrayList<>(1));
+        slotByItem.put(item, new Slot(key, items.size()));
+        items.add(item);
+    }
+
+    /**
+     * @param item the item to remove from the index
+     * @return whether or not the item was in the index
+     */
+    public boolean remove(T item) {
+        Slot slot = slotByItem.remove(item);
+        if ( slot == null ) {
+            return false;
+        }
+        List<T> items = itemsByKey.get(slot.key);
+        T last = items.remove(items.size() - 1);
+        if ( last != item ) {
+            items.set(slot.position, last);
+            slotByItem.get(last).position = slot.position;
+        }
+        if ( items.isEmpty() ) {
+            itemsByKey.remove(slot.key);
+        }
+        return true;
+    }
+
+    /**
+     * @param item an indexed item
+     * @return the normalized key the item is indexed under, or null if it is not in the index
+     */
+    public String keyOf(T item) {
+        Slot slot = slotByItem.get(item);
+        return slot != null ? slot.key : null;
+    }
+
+    /**
+     * @return number of items in the index
+     */
+    public int size() { return slotByItem.size(); }
+
+    /**
+     * startingWith() walks the sorted keys from the first one that could match and stops at the first one that
+     * doesn't, so the cost depends on how many matches there are rather than on the size of the inventory.
+     *
+     * @param query the search text; normalized before comparing
+     * @return all items whose normalized name begins with or equals the normalized query, in name order
+     */
+    public List<T> startingWith(String query) {
+        String prefix = normalize(query);
+        List<T> matches = new ArrayList<>();
+        for ( Map.Entry<String, List<T>> entry : itemsByKey.tailMap(prefix, true).entrySet() ) {
+            if ( !entry.getKey().startsWith(prefix) ) {
+                break;
+            }
+            matches.addAll(entry.getValue());
+        }
+        return matches;
+    }
+
+    /**
+     * refine() narrows down an earlier result using the keys remembered for each item, so no names are normalized
+     * again. Items that are no longer in the index are left out.
+     *
+     * @param previous items that matched an earlier query
+     * @param query the new search text; normalized before comparing
+     * @return the items in previous whose normalized name begins with or equals the normalized query, in the same order
+     */
+    public List<T> refine(List<T> previous, String query) {
+        String prefix = normalize(query);
+        List<T> matches = new ArrayList<>();
+        for ( T item : previous ) {
+            String key = keyOf(item);
+            if ( key != null && key.startsWith(prefix) ) {
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+}
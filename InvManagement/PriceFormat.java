@@ -0,0 +1,92 @@
+package InvManagement;
+
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.util.Callback;
+
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * PriceFormat turns prices into text like "$1,234.50", exactly as NumberFormat.getCurrencyInstance(Locale.US) does,
+ * for every price column in the program.
+ * <p>
+ * A table shows the same few prices over and over, so each price's text is kept in a small cache and handed out
+ * again instead of being formatted each time a cell is redrawn. Handing out the same String also lets a cell see
+ * that its text hasn't changed. The cache has a fixed number of slots, in pairs picked by the price's bits; a price
+ * that isn't in its pair is formatted again and pushes the older of the two out, so memory use stays the same however
+ * many distinct prices there are.
+ * <p>
+ * It can be used from any thread: NumberFormat isn't thread-safe, so each thread formats with its own, and the
+ * cache's slots only ever hold complete entries that are never changed.
+ */
+public class PriceFormat {
+    /**
+     * Number of cache slots; a power of two. Enough that a few thousand distinct prices rarely push each other out.
+     */
+    private static final int CACHE_SLOTS = 16384;
+    /**
+     * Bits of a price's hash used to pick its pair of slots.
+     */
+    private static final int SLOT_SHIFT = 64 - Integer.numberOfTrailingZeros(CACHE_SLOTS);
+
+    private static final ThreadLocal<NumberFormat> FORMATS =
+            ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(Locale.US));
+    /**
+     * Recently formatted prices, or null; each pair holds the newer entry first.
+     */
+    private static final Entry[] CACHE = new Entry[CACHE_SLOTS];
+
+    private PriceFormat() { }
+
+    /**
+     * A price and its text. Its fields are final, so another thread that finds it in the cache always sees both.
+     */
+    private static class Entry {
+        private final long bits;
+        private final String text;
+
+        Entry(long bits, String text) {
+            this.bits = bits;
+            this.text = text;
+        }
+    }
+
+    /**
+     * @param price the price to format
+     * @return the price as "$#,##0.00"; the same String each time while the price stays in the cache
+     */
+    public static String format(double price) {
+        long bits = Double.doubleToRawLongBits(price);
+        int slot = (int) ((bits * 0x9E3779B97F4A7C15L) >>> SLOT_SHIFT) & ~1; // Prices mostly differ in the high bits
+        Entry newer = CACHE[slot];
+        if ( newer != null && newer.bits == bits ) {
+            return newer.text;
+        }
+        Entry older = CACHE[slot + 1];
+        if ( older != null && older.bits == bits ) {
+            return older.text;
+        }
+        String text = FORMATS.get().format(price);
+        CACHE[slot + 1] = newer;
+        CACHE[slot] = new Entry(bits, text);
+        return text;
+    }
+
+    /**
+     * cellFactory() makes the cells for a price column, so every table shows prices the same way.
+     *
+     * @param <S> type of the table's items
+     * @return a cell factory whose cells show the price formatted by format()
+     */
+    public static <S> Callback<TableColumn<S, Double>, TableCell<S, Double>> cellFactory() {
+        return column -> new TableCell<>() {
+            @Override
+            protected void updateItem(Double price, boolean empty) {
+                super.updateItem(price, empty);
+                if ( empty || price == null ) { setText(null); }
+                else { setText(format(price)); }
+            }
+        };
+    }
+}
@@ -7,7 +7,8 @@ import javafx.collections.ObservableList;
  * abstract. Product has no subclasses, and includes an array list of associated parts.
  * <p>
  * The array list of associated parts works similarly to the lists of inventory - it can be retrieved with an accessor
- * method but cannot be set by a mutator. Associated parts have to be added or deleted one at a time.
+ * method but cannot be set by a mutator. Each part appears in it once; how many of that part the product uses is kept
+ * as a quantity, so associating 500 of a part doesn't mean 500 entries in the list.
  * <p>
  * Validation for a new product object is done within the ProductFormController view. A product object should NOT be
  * created outside of that view unless it is accompanied by the validation function. Otherwise, bad data could be passed
@@ -15,9 +16,13 @@ import javafx.collections.ObservableList;
  */
 public class Product {
     /**
-     * Array list of associated parts from main inventory.
+     * Array list of associated parts from main inventory; one row per distinct part.
      */
     private ObservableList<Part> associatedParts = FXCollections.observableArrayList();
+    /**
+     * How many of each associated part the product uses, by part ID.
+     */
+    private final IntIntMap associatedQuantities = new IntIntMap();
     /**
      * Unique identifier for product objects.
      */
@@ -42,6 +47,10 @@ public class Product {
      * Product maximum stock; required; must be greater than min.
      */
     private int max;
+    /**
+     * Stamped by the inventory each time the product is stored in it; see Part.getVersion().
+     */
+    private long version;
     public Product(int id, String name, double price, int stock, int min, int max) {
         this.id = id;
         this.name = name;
@@ -133,26 +142,153 @@ public class Product {
     public void setMax(int max) {
         this.max = max;
     }
+
+    /**
+     * @return the version; 0 if the product was never stored in an inventory
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version the version to set; only the inventory sets it, when it stores the product
+     */
+    void setVersion(long version) {
+        this.version = version;
+    }
     /**
      * @param part the part that will be added to the associatedParts array
      */
-    public void addAssociatedPart(Part part) { this.associatedParts.add(part); }
+    public void addAssociatedPart(Part part) { addAssociatedPart(part, 1); }
     /**
+     * addAssociatedPart() adds quantity param more of a part. A part that is already associated keeps its one row in
+     * the associatedParts array and only its quantity goes up.
+     *
+     * @param part the part that will be added to the associatedParts array
+     * @param quantity how many of the part to add; nothing happens if it's less than 1
+     * @throws ArithmeticException if the part's quantity would go past Integer.MAX_VALUE; nothing is added
+     */
+    public void addAssociatedPart(Part part, int quantity) {
+        if ( quantity < 1 ) {
+            return;
+        }
+        int previous = this.associatedQuantities.get(part.getId());
+        this.associatedQuantities.put(part.getId(), Math.addExact(previous, quantity));
+        if ( previous == 0 ) {
+            this.associatedParts.add(part);
+        }
+    }
+    /**
+     * deleteAssociatedPart() removes one of the part; the part's row is removed once none are left.
+     *
      * @param selectedAssociatedPart the part that will be deleted from the associatedParts array
      * @return whether or not the removal was a success
      */
     public boolean deleteAssociatedPart(Part selectedAssociatedPart) {
         try {
-            this.associatedParts.remove(selectedAssociatedPart);
+            deleteAssociatedPart(selectedAssociatedPart, 1);
         } catch (Exception e) {
             return false;
         }
         return true;
     }
     /**
-     * @return a list of all associated parts
+     * deleteAssociatedPart() removes quantity param of the part at once; the part's row is removed once none are left.
+     *
+     * @param selectedAssociatedPart the part that will be deleted from the associatedParts array
+     * @param quantity how many of the part to remove
+     * @return how many were actually removed
+     */
+    public int deleteAssociatedPart(Part selectedAssociatedPart, int quantity) {
+        int id = selectedAssociatedPart.getId();
+        int current = this.associatedQuantities.get(id);
+        int removed = Math.max(0, Math.min(current, quantity));
+        if ( removed == 0 ) {
+            return 0;
+        }
+        this.associatedQuantities.put(id, current - removed);
+        if ( current == removed ) {
+            this.associatedParts.remove(rowOf(id));
+        }
+        return removed;
+    }
+    /**
+     * deleteAssociatedPartCopies() removes every one of a part from the associatedParts array at once. Used when a
+     * part is deleted from the main inventory.
+     *
+     * @param selectedAssociatedPart the part that will be removed from the associatedParts array
+     * @return how many were removed
+     */
+    public int deleteAssociatedPartCopies(Part selectedAssociatedPart) {
+        return deleteAssociatedPart(selectedAssociatedPart, Integer.MAX_VALUE);
+    }
+    /**
+     * replaceAssociatedPart() swaps oldPart for newPart, keeping its row in the list and its quantity. Used when a
+     * part is updated in the main inventory.
+     *
+     * @param oldPart the part to replace
+     * @param newPart the part to put in its place
+     * @return the quantity of oldPart that was replaced
+     * @throws ArithmeticException if newPart is already associated and the two quantities together would go past
+     *         Integer.MAX_VALUE; nothing is replaced
+     */
+    public int replaceAssociatedPart(Part oldPart, Part newPart) {
+        int row = rowOf(oldPart.getId());
+        if ( row < 0 ) {
+            return 0;
+        }
+        int quantity = this.associatedQuantities.get(oldPart.getId());
+        if ( newPart.getId() == oldPart.getId() ) {
+            this.associatedParts.set(row, newPart);
+        } else if ( this.associatedQuantities.get(newPart.getId()) > 0 ) {
+            // newPart already has its own row; fold the quantity into it
+            int merged = Math.addExact(this.associatedQuantities.get(newPart.getId()), quantity);
+            this.associatedQuantities.remove(oldPart.getId());
+            this.associatedQuantities.put(newPart.getId(), merged);
+            this.associatedParts.remove(row);
+        } else {
+            this.associatedQuantities.remove(oldPart.getId());
+            this.associatedQuantities.put(newPart.getId(), quantity);
+            this.associatedParts.set(row, newPart);
+        }
+        return quantity;
+    }
+
+    /**
+     * @param part an associated part
+     * @return how many of the part this product uses; 0 if it isn't associated
+     */
+    public int getAssociatedPartQuantity(Part part) { return this.associatedQuantities.get(part.getId()); }
+    /**
+     * @return a list of all associated parts; each part appears once, see getAssociatedPartQuantity() for how many
      */
     public ObservableList<Part> getAllAssociatedParts() {
         return associatedParts;
     }
+    /**
+     * copy() makes a separate product with the same data and associated parts; changes to one don't affect the other.
+     * The copy has the same version, so it can be edited and then saved with Inventory.updateProduct(Product, Product).
+     *
+     * @return a copy of this product
+     */
+    public Product copy() {
+        Product copy = new Product(this.id, this.name, this.price, this.stock, this.min, this.max);
+        copy.version = this.version;
+        for ( Part part : this.associatedParts ) {
+            copy.addAssociatedPart(part, this.associatedQuantities.get(part.getId()));
+        }
+        return copy;
+    }
+    /**
+     * @param partID id of an associated part
+     * @return where the part's row is in the associatedParts array, or -1 if it isn't there
+     */
+    private int rowOf(int partID) {
+        for ( int i = 0; i < this.associatedParts.size(); i++ ) {
+            if ( this.associatedParts.get(i).getId() == partID ) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
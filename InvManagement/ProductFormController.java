@@ -1,16 +1,15 @@
 package InvManagement;
 
 import javafx.application.Platform;
-import javafx.collections.transformation.FilteredList;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 
-import java.text.NumberFormat;
-import java.util.Locale;
+import java.io.UncheckedIOException;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * ProductFormController is responsible for the product form pane of the inventory management program.
@@ -23,7 +22,7 @@ import java.util.concurrent.atomic.AtomicInteger;
  * <li>Double Price: the product price, displayed in form "$#.##" for table views</li>
  * <li>Integer Min: the minimum number of product in stock allowed</li>
  * <li>Integer Max: the maximum number of product in stock allowed</li>
- * <li>Array Associated Parts: parts from main inventory to associate with current product</li>
+ * <li>Array Associated Parts: parts from main inventory to associate with current product, each with a quantity</li>
  * </ul>
  * <p>
  * Form pane also has two table views for all parts from main inventory and associated parts with current product.
@@ -33,11 +32,6 @@ import java.util.concurrent.atomic.AtomicInteger;
  * @author Lee Rhodes
  */
 public class ProductFormController {
-    /**
-     * Format for price double in table view; displayed as "$#.##".
-     */
-    NumberFormat priceFormat = NumberFormat.getCurrencyInstance(Locale.US);
-
     /**
      * Controller from which the product form view was called; holds inventory data.
      */
@@ -49,14 +43,22 @@ public class ProductFormController {
     private actionType action;
 
     /**
-     * Used for updates -- product passed from MainController that we are updating.
+     * Used for updates -- product passed from MainController that we are updating. It's left as it is; the form's
+     * changes go into product until they're saved.
      */
     private Product existingProduct;
 
     /**
-     * Used to generate ID for new products.
+     * The product the form's changes go into: a new product when adding, or a copy of existingProduct when updating,
+     * so nothing changes in the main inventory until "Save" is pressed.
+     */
+    private Product product;
+
+    /**
+     * Runs the part search again when the inventory's parts change. The inventory only holds it weakly (see
+     * filterParts()), so this field is what keeps it alive, and only for as long as the form is open.
      */
-    private static final AtomicInteger generateID = new AtomicInteger(1);
+    private Consumer<List<ListEdit<Part>>> partsChangedListener;
 
     /**
      * Shows any errors that occur when validating input.
@@ -164,6 +166,16 @@ public class ProductFormController {
      */
     @FXML
     private TableColumn<Part, Double> associatedPartPriceCol;
+    /**
+     * Table column for how many of each associated part the product uses.
+     */
+    @FXML
+    private TableColumn<Part, Integer> associatedPartQuantityCol;
+    /**
+     * Holds user input for how many of the selected part to associate at once; must be a positive Integer.
+     */
+    @FXML
+    private TextField quantityTextField;
 
     /**
      * initialize() is responsible for making sure the new product object is instantiated whenever the view starts.
@@ -175,8 +187,8 @@ public class ProductFormController {
      * If adding a new product, all fields will still be null.
      */
     public void initialize() {
-        if ( this.existingProduct == null ) {
-            this.existingProduct = new Product(0, "", 0, 0, 0, 0);
+        if ( this.product == null ) {
+            this.product = new Product(0, "", 0, 0, 0, 0);
         }
 
         Platform.runLater(() -> {
@@ -210,27 +222,20 @@ public class ProductFormController {
 
     /**
      * fillPartTableView() tells the partTableView what type of data to expect, how to display the price field, and
-     * sets the data in the table according to a filtered list that is pulled from filterParts().
+     * sets the data in the table according to a paged list that is pulled from filterParts().
      */
     public void fillPartTableView() {
         // Telling each partTableView column what type of data to expect
-        partIDCol.setCellValueFactory(new PropertyValueFactory<>("id"));
-        partNameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
-        partStockCol.setCellValueFactory(new PropertyValueFactory<>("stock"));
-        partPriceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
-
-        // Uses priceFormat declared previously to format price double values; displays as "$#.##"
-        partPriceCol.setCellFactory(tc -> new TableCell<>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if ( empty ) { setText(null); }
-                else { setText(priceFormat.format(price)); }
-            }
-        });
+        partIDCol.setCellValueFactory(CellValues.ofInt(Part::getId));
+        partNameCol.setCellValueFactory(CellValues.of(Part::getName));
+        partStockCol.setCellValueFactory(CellValues.ofInt(Part::getStock));
+        partPriceCol.setCellValueFactory(CellValues.ofDouble(Part::getPrice));
+
+        // Uses PriceFormat to format price double values; displays as "$#.##"
+        partPriceCol.setCellFactory(PriceFormat.cellFactory());
 
-        /* Set items in partTableView equal to a filtered list of parts in inventory;
-           Filtered list only returns matches for the part search bar which is in filterParts() below */
+        /* Set items in partTableView equal to a paged list of parts in inventory; only the rows on screen are read,
+           and only matches for the part search bar are shown, which is in filterParts() below */
         partTableView.setItems(filterParts());
     }
 
@@ -240,34 +245,39 @@ public class ProductFormController {
      * <p>
      * Digit-only input will search for parts with a matching ID; otherwise, it searches for parts with a name that
      * begins with or equals the input.
+     * <p>
+     * The rows are read a page at a time through TableRows, like the main form's parts table, so opening the form
+     * doesn't copy or filter every part in the inventory.
      *
      * @return the list of parts that have a match with the input in the search text field
      */
-    public FilteredList<Part> filterParts() {
-        // Filtered list expands off of all parts in inventory
-        FilteredList<Part> filteredParts = new FilteredList<>(mainController.getInventory().getAllParts());
-
-        /* Adding a listener to watch whenever the search text field input is changed & react
-           NOTE: Could simplify if statement to just return boolean value of matches, but decided to separate it
-                 out into a long if-statement for readability */
+    public ObservableList<Part> filterParts() {
+        // Paged rows read off of all parts in inventory; columns are sorted through the inventory's sorted indexes
+        Inventory inventory = mainController.getInventory();
+        TableRows<Part> partRows = TableRows.forParts(inventory);
+        partRows.sortsBy(partIDCol, SortKey.ID);
+        partRows.sortsBy(partNameCol, SortKey.NAME);
+        partRows.sortsBy(partStockCol, SortKey.STOCK);
+        partRows.sortsBy(partPriceCol, SortKey.PRICE);
+        partTableView.setSortPolicy(partRows::sort);
+
+        /* Adding a listener to watch whenever the search text field input is changed & react;
+           matches are worked out once per change and only those are shown */
+        SearchEngine<Part> partSearch = SearchEngine.forParts(inventory);
         partSearchTextField.textProperty().addListener((observable, oldValue, newValue) ->
-                filteredParts.setPredicate(part -> {
-                    if( newValue == null || newValue.isEmpty()) { // If search text is empty, show all parts
-                        return true;
-                    } else if ( newValue.matches("[0-9]*") // If search text is an integer, can search for matches by ID
-                            && part == mainController.getInventory().lookupPart(Integer.parseInt(newValue)) ) {
-                        return true;
-                    } else if ( mainController.getInventory().lookupPart(newValue) != null
-                            && mainController.getInventory().lookupPart(newValue).contains(part) ) {
-                /* For all search text, find matches for all parts that begin with and/or equal search text;
-                   NOTE: Assumption made that no parts have a name of only numbers */
-                        return true;
-                    }
-                    return false; // Not a match, leave part out of filter.
-                }));
-
-        // Sending back the filtered list so it can populate the partTableView
-        return filteredParts;
+                partRows.setMatches(newValue.isEmpty() ? null : partSearch.matches(newValue)));
+
+        /* Rows added or replaced while a search is active are only matched once the query is run again;
+           held weakly, so a closed form doesn't stay reachable from the inventory and keep searching */
+        partsChangedListener = edits -> {
+            if ( !partSearchTextField.getText().isEmpty() ) {
+                partRows.setMatches(partSearch.matches(partSearchTextField.getText()));
+            }
+        };
+        inventory.getPartChanges().addWeakListener(partsChangedListener);
+
+        // Sending back the paged list so it can populate the partTableView
+        return partRows.getList();
     }
 
     /**
@@ -276,25 +286,24 @@ public class ProductFormController {
      * in the current product object.
      */
     public void fillAssociatedPartsTableView() {
-        associatedPartIDCol.setCellValueFactory(new PropertyValueFactory<>("id"));
-        associatedPartNameCol.setCellValueFactory(new PropertyValueFactory<>("name"));
-        associatedPartStockCol.setCellValueFactory(new PropertyValueFactory<>("stock"));
-        associatedPartPriceCol.setCellValueFactory(new PropertyValueFactory<>("price"));
-        associatedPartPriceCol.setCellFactory(tc -> new TableCell<>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if ( empty ) { setText(null); }
-                else { setText(priceFormat.format(price)); }
-            }
-        });
+        associatedPartIDCol.setCellValueFactory(CellValues.ofInt(Part::getId));
+        associatedPartNameCol.setCellValueFactory(CellValues.of(Part::getName));
+        associatedPartStockCol.setCellValueFactory(CellValues.ofInt(Part::getStock));
+        associatedPartPriceCol.setCellValueFactory(CellValues.ofDouble(Part::getPrice));
+        associatedPartPriceCol.setCellFactory(PriceFormat.cellFactory());
+
+        associatedPartQuantityCol.setCellValueFactory(
+                CellValues.ofInt(part -> product.getAssociatedPartQuantity(part)));
 
-        associatedPartsTableView.setItems(existingProduct.getAllAssociatedParts());
+        associatedPartsTableView.setItems(product.getAllAssociatedParts());
     }
 
     /**
      * Copy the selected part from partTableView into the associated parts array for the current product object.
      * <p>
+     * The number in the quantity field is how many of the part get associated at once. A part that is already
+     * associated keeps its one row and its quantity goes up.
+     * <p>
      * New associated part will be updated on the associatedPartsTableView.
      * <p>
      * NOTE: If user cancels changes after adding an associated part, product will not be changed in main inventory and
@@ -305,7 +314,24 @@ public class ProductFormController {
         Part selectedPart = partTableView.getSelectionModel().getSelectedItem();
 
         if ( selectedPart != null ) {
-            this.existingProduct.addAssociatedPart(selectedPart);
+            int quantity = 0;
+            try {
+                quantity = Integer.parseInt(quantityTextField.getText().trim());
+            } catch ( NumberFormatException e ) {
+                // Handled below along with zero and negative quantities
+            }
+
+            if ( quantity > 0 ) {
+                try {
+                    this.product.addAssociatedPart(selectedPart, quantity);
+                    associatedPartsTableView.refresh(); // Quantity changes don't add a row, so redraw the column
+                } catch ( ArithmeticException e ) {
+                    errors = "Quantity is too large; the part's total quantity can't be more than "
+                             + Integer.MAX_VALUE + ".";
+                }
+            } else {
+                errors = "Quantity must be a whole number greater than 0.";
+            }
         } else {
             errors = "A part must be selected to add it to associated parts.";
         }
@@ -313,7 +339,8 @@ public class ProductFormController {
     }
 
     /**
-     * deleteAssociatedPart() deletes the selected part from the associated parts array in the current product object.
+     * deleteAssociatedPart() deletes the selected part, along with its whole quantity, from the associated parts array
+     * in the current product object.
      * <p>
      * An alert appears to receive user confirmation first before deleting the associated part.
      * <p>
@@ -328,8 +355,9 @@ public class ProductFormController {
         if ( selectedPart != null ) {
             Alert confirmDelete = new Alert(Alert.AlertType.CONFIRMATION);
             confirmDelete.setTitle("Confirmation Dialog");
-            confirmDelete.setHeaderText("Deleting the part will de-associate from this product. It will still be in"
-                                        + " the inventory.");
+            confirmDelete.setHeaderText("Deleting the part will de-associate all "
+                                        + product.getAssociatedPartQuantity(selectedPart)
+                                        + " of it from this product. It will still be in the inventory.");
             confirmDelete.setContentText("Are you sure you want to remove this part?");
 
 
@@ -337,7 +365,7 @@ public class ProductFormController {
 
             Optional<ButtonType> result = confirmDelete.showAndWait();
             if (result.get() == ButtonType.YES) {
-                this.existingProduct.deleteAssociatedPart(selectedPart);
+                this.product.deleteAssociatedPartCopies(selectedPart);
             }
         } else {
             errors = "An associated part must be selected to remove it.";
@@ -351,25 +379,37 @@ public class ProductFormController {
      * First, it uses isInputValid() to make sure all fields fit business rules and expected data types.
      * Next, it calls either addProduct() or updateProduct() depending on which process was selected from MainController.
      * Finally, it exits the product form pane and returns to main inventory menu, which will show data updates.
+     * If the change can't be written to the inventory log, the product isn't saved and the form stays open with the
+     * reason shown. The form waits for the log to be written before it closes, so a closed form means a saved product.
      */
     public void addUpdateProduct() {
         if (isInputValid()) {
-            this.existingProduct.setName(nameTextField.getText());
-            this.existingProduct.setPrice(Double.parseDouble(priceTextField.getText()));
-            this.existingProduct.setStock(Integer.parseInt(stockTextField.getText()));
-            this.existingProduct.setMin(Integer.parseInt(minTextField.getText()));
-            this.existingProduct.setMax(Integer.parseInt(maxTextField.getText()));
-
-            switch ( action ) {
-                case ADD: addProduct();
-                    break;
-                case UPDATE: updateProduct();
-                    break;
-                default: Stage stage = (Stage) cancelBtn.getScene().getWindow();
-                    stage.close();
+            this.product.setName(nameTextField.getText());
+            this.product.setPrice(Double.parseDouble(priceTextField.getText()));
+            this.product.setStock(Integer.parseInt(stockTextField.getText()));
+            this.product.setMin(Integer.parseInt(minTextField.getText()));
+            this.product.setMax(Integer.parseInt(maxTextField.getText()));
+
+            boolean saved = true;
+            try {
+                switch ( action ) {
+                    case ADD: saved = addProduct();
+                        break;
+                    case UPDATE: saved = updateProduct();
+                        break;
+                    default: Stage stage = (Stage) cancelBtn.getScene().getWindow();
+                        stage.close();
+                }
+            } catch ( UncheckedIOException e ) {
+                saved = false;
+                errorLabel.setText("The product couldn't be written to the inventory log, so it wasn't saved.\n"
+                                   + "(" + e.getCause().getMessage() + ")");
             }
 
-            exitForm();
+            if ( saved ) {
+                mainController.syncInventory();
+                exitForm();
+            }
         }
     }
 
@@ -436,22 +476,46 @@ public class ProductFormController {
      * updateProduct() makes changes to an existing product in the main inventory.
      * This function is private so that it can only be called from addUpdateProduct within this class. That way,
      * it will ALWAYS be called after a call to isInputValid().
+     * <p>
+     * If the product was changed somewhere else (another form, an import) after this form was opened, the save is
+     * turned down and the user is told; pressing "Save" again overwrites those changes on purpose. If it was deleted,
+     * it can't be saved at all.
+     *
+     * @return whether or not the product was saved
      */
-    private void updateProduct() {
-        int index = mainController.getInventory().getAllProducts().indexOf(existingProduct);
-        mainController.getInventory().updateProduct(index, existingProduct);
+    private boolean updateProduct() {
+        Inventory inventory = mainController.getInventory();
+        if ( inventory.updateProduct(existingProduct, product) ) {
+            return true;
+        }
+
+        Product latest = inventory.lookupProduct(existingProduct.getId());
+        if ( latest == null ) {
+            errorLabel.setText("This product was deleted after the form was opened, so it can't be saved.");
+        } else {
+            this.existingProduct = latest;
+            errorLabel.setText("This product was changed somewhere else after the form was opened.\n"
+                               + "Press Save again to overwrite those changes.");
+        }
+        return false;
     }
 
     /**
      * addProduct() adds a new product to the main inventory.
      * This function is private so that it can only be called from addUpdateProduct within this class. That way,
      * it will ALWAYS be called after a call to isInputValid().
+     *
+     * @return false, with the reason shown, if there's no ID left to give the product
      */
-    private void addProduct() {
-        int newID = generateID.getAndIncrement();
-        while (mainController.getInventory().lookupProduct(newID) != null) { newID = generateID.getAndIncrement(); }
-        this.existingProduct.setId(newID);
-        mainController.getInventory().addProduct(existingProduct);
+    private boolean addProduct() {
+        try {
+            this.product.setId(mainController.getInventory().generateProductID());
+        } catch ( IllegalStateException e ) {
+            errorLabel.setText("Every product ID is already in use, so the product can't be saved.");
+            return false;
+        }
+        mainController.getInventory().addProduct(product);
+        return true;
     }
 
     /**
@@ -468,7 +532,10 @@ public class ProductFormController {
      *
      * @param existingProduct the product to set
      */
-    public void setExistingProduct(Product existingProduct) { this.existingProduct = existingProduct; }
+    public void setExistingProduct(Product existingProduct) {
+        this.existingProduct = existingProduct;
+        this.product = existingProduct.copy();
+    }
 
     /**
      * Setter for actionType action.
@@ -0,0 +1,487 @@
+package InvManagement;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * RowNameIndex does what PrefixIndex and TrigramIndex do, for the rows of a PartTable instead of for Part objects: it
+ * finds the rows whose name starts with a search text, and ranks the rows whose name contains it or is close to it.
+ * <p>
+ * Those two indexes keep an object, a String, and a map entry for every item, which is more than a row of the table
+ * takes in the first place. This one is built straight from the table's name bytes (see PartTable.getNameBytes())
+ * and only keeps arrays of ints and bytes:
+ * <ul>
+ * <li>every normalized name (see PrefixIndex.normalize), as UTF-8, back to back in one byte array;</li>
+ * <li>the rows sorted by normalized name, for "starts with" searches;</li>
+ * <li>for each trigram, the rows whose name has it, all in one int array (see TrigramIndex).</li>
+ * </ul>
+ * That comes to roughly 24 bytes per row plus four per trigram of its name. The table never changes, so neither does
+ * the index; rows that were deleted or replaced since the table was opened are left out of the results by the caller's
+ * filter, and parts added since are indexed as objects.
+ * <p>
+ * Searches return row numbers, so only the rows that match ever become Part objects. It isn't thread-safe; the
+ * inventory only uses it while it's locked.
+ */
+public class RowNameIndex {
+    /**
+     * Rows per sorted run below which the sort switches to insertion sort.
+     */
+    private static final int INSERTION_SORT_ROWS = 12;
+    /**
+     * Whether lowercasing ASCII letters the simple way gives the same result as String.toLowerCase(), which depends on
+     * the default locale; it doesn't for "I" in Turkish.
+     */
+    private static final boolean ASCII_LOWERCASE = "I".toLowerCase().equals("i");
+
+    /**
+     * Normalized names, as UTF-8, back to back.
+     */
+    private final byte[] keys;
+    /**
+     * Where each row's normalized name starts in keys; the entry after the last row is where the last name ends.
+     */
+    private final int[] keyStarts;
+    /**
+     * Whether each row's normalized name is all ASCII, so its bytes are also its characters.
+     */
+    private final boolean allAscii;
+    /**
+     * The rows, sorted by normalized name.
+     */
+    private final int[] sortedRows;
+    /**
+     * Position of each trigram's rows in postingRows.
+     */
+    private final IntIntMap postingIndex = new IntIntMap();
+    /**
+     * Where each trigram's rows start in postingRows, by the trigram's position in postingIndex (one based); the entry
+     * after the last trigram is where its rows end.
+     */
+    private int[] postingStarts;
+    /**
+     * Rows of every trigram, one trigram after another.
+     */
+    private int[] postingRows;
+    /**
+     * Number of distinct trigrams of each row's name, so candidates can be scored without working out their trigrams.
+     */
+    private final int[] gramCounts;
+    /**
+     * Shared-trigram count per row while a query runs; always cleared back to zero before search() returns.
+     */
+    private final int[] counts;
+
+    /**
+     * @param table the table whose names are indexed
+     */
+    public RowNameIndex(PartTable table) {
+        int rowCount = table.size();
+        this.keyStarts = new int[rowCount + 1];
+        this.counts = new int[rowCount];
+        this.gramCounts = new int[rowCount];
+
+        byte[] keyBytes = new byte[(int) Math.min(Integer.MAX_VALUE - 8, Math.max(16, rowCount * 16L))];
+        int length = 0;
+        boolean ascii = true;
+        for ( int row = 0; row < rowCount; row++ ) {
+            byte[] key = normalize(table.getNameBytes(row));
+            if ( length + key.length > keyBytes.length ) {
+                keyBytes = Arrays.copyOf(keyBytes, (int) Math.min(Integer.MAX_VALUE - 8,
+                        Math.max((long) length + key.length, 3L * keyBytes.length / 2)));
+            }
+            for ( byte b : key ) {
+                ascii &= b >= 0;
+            }
+            System.arraycopy(key, 0, keyBytes, length, key.length);
+            length += key.length;
+            this.keyStarts[row + 1] = length;
+        }
+        this.keys = Arrays.copyOf(keyBytes, length);
+        this.allAscii = ascii;
+
+        this.sortedRows = new int[rowCount];
+        for ( int row = 0; row < rowCount; row++ ) {
+            this.sortedRows[row] = row;
+        }
+        sort(this.sortedRows, 0, rowCount, 0);
+        buildPostings(rowCount);
+    }
+
+    /**
+     * startingWith() finds the first row whose normalized name isn't before the query with a binary search, and walks
+     * the sorted rows from there until a name doesn't start with it.
+     *
+     * @param query the search text; normalized before comparing
+     * @param live which rows to include
+     * @return the live rows whose normalized name begins with or equals the normalized query, in name order
+     */
+    public int[] startingWith(String query, IntPredicate live) {
+        byte[] prefix = PrefixIndex.normalize(query).getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = sortedRows.length;
+        while ( low < high ) {
+            int middle = (low + high) >>> 1;
+            if ( compare(sortedRows[middle], prefix) < 0 ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int[] matches = new int[16];
+        int count = 0;
+        for ( int i = low; i < sortedRows.length && startsWith(sortedRows[i], prefix); i++ ) {
+            if ( live.test(sortedRows[i]) ) {
+                if ( count == matches.length ) { matches = Arrays.copyOf(matches, count * 2); }
+                matches[count++] = sortedRows[i];
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    /**
+     * search() ranks rows the same way TrigramIndex.search() ranks items.
+     *
+     * @param query the search text; normalized before comparing
+     * @param limit the most results to return
+     * @param live which rows to include
+     * @return up to limit live rows, best match first
+     */
+    public int[] search(String query, int limit, IntPredicate live) {
+        String key = PrefixIndex.normalize(query);
+        int[] grams = TrigramIndex.trigrams(key);
+        if ( grams.length == 0 || limit <= 0 ) {
+            return new int[0];
+        }
+
+        // Shortest posting lists first, as in TrigramIndex
+        long[] lists = new long[grams.length];
+        int listCount = 0;
+        for ( int g = 0; g < grams.length; g++ ) {
+            int list = postingIndex.get(grams[g]);
+            if ( list != 0 ) { lists[listCount++] = (long) postingSize(list) << 32 | list; }
+        }
+        Arrays.sort(lists, 0, listCount);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a[0], b[0]));
+
+        // Names that contain the whole query first, from the rarest trigram's rows or all rows, as in TrigramIndex
+        if ( listCount == grams.length ) {
+            int rarest = (int) lists[0];
+            boolean scan = (long) postingSize(rarest) * TrigramIndex.SCAN_FRACTION > gramCounts.length;
+            int from = scan ? 0 : postingStarts[rarest - 1];
+            int end = scan ? gramCounts.length : postingStarts[rarest];
+            int found = 0;
+            for ( int at = from; at < end; at++ ) {
+                int row = scan ? at : postingRows[at];
+                if ( live.test(row) && contains(row, keyBytes) ) {
+                    found++;
+                    double score = TrigramIndex.score(grams.length, grams.length, gramCounts[row], true);
+                    TrigramIndex.offer(best, limit, score, row);
+                }
+            }
+            if ( found >= limit ) {
+                return ranked(best);
+            }
+            best.clear();
+        }
+
+        int minShared = TrigramIndex.minShared(grams.length);
+        int candidateLists = listCount - minShared + 1;
+        if ( candidateLists <= 0 ) {
+            return new int[0];
+        }
+
+        int[] candidates = new int[16];
+        int candidateCount = 0;
+        for ( int i = 0; i < candidateLists; i++ ) {
+            int list = (int) lists[i];
+            for ( int at = postingStarts[list - 1]; at < postingStarts[list]; at++ ) {
+                int row = postingRows[at];
+                if ( counts[row]++ == 0 ) {
+                    if ( candidateCount == candidates.length ) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = row;
+                }
+            }
+        }
+
+        // Later lists not much longer than the candidates are read to count them; longer ones are checked per row
+        int checkedFrom = candidateLists;
+        while ( checkedFrom < listCount && postingSize((int) lists[checkedFrom]) <= 8L * candidateCount ) {
+            int list = (int) lists[checkedFrom++];
+            for ( int at = postingStarts[list - 1]; at < postingStarts[list]; at++ ) {
+                if ( counts[postingRows[at]] > 0 ) { counts[postingRows[at]]++; }
+            }
+        }
+        int[] laterGrams = new int[listCount - checkedFrom];
+        for ( int g = 0, i = 0; g < grams.length; g++ ) {
+            int list = postingIndex.get(grams[g]);
+            for ( int j = checkedFrom; j < listCount; j++ ) {
+                if ( (int) lists[j] == list && list != 0 ) { laterGrams[i++] = grams[g]; }
+            }
+        }
+
+        int[] rowGrams = new int[16];
+        for ( int c = 0; c < candidateCount; c++ ) {
+            int row = candidates[c];
+            int shared = counts[row];
+            counts[row] = 0;
+            if ( !live.test(row) ) {
+                continue;
+            }
+
+            if ( laterGrams.length > 0 ) {
+                rowGrams = gramBuffer(row, rowGrams);
+                int gramCount = trigrams(row, rowGrams);
+                for ( int i = 0; i < laterGrams.length && shared + (laterGrams.length - i) >= minShared; i++ ) {
+                    if ( Arrays.binarySearch(rowGrams, 0, gramCount, laterGrams[i]) >= 0 ) { shared++; }
+                }
+            }
+            if ( shared < minShared ) {
+                continue;
+            }
+
+            // A name missing one of the query's trigrams can't contain the query
+            boolean contains = shared == grams.length && contains(row, keyBytes);
+            TrigramIndex.offer(best, limit, TrigramIndex.score(shared, grams.length, gramCounts[row], contains), row);
+        }
+        return ranked(best);
+    }
+
+    /**
+     * @param best rows with their scores, in a min-heap
+     * @return the rows, best score first; empties best
+     */
+    private static int[] ranked(PriorityQueue<double[]> best) {
+        int[] ranked = new int[best.size()];
+        for ( int i = ranked.length - 1; i >= 0; i-- ) {
+            ranked[i] = (int) best.poll()[1];
+        }
+        return ranked;
+    }
+
+    /**
+     * buildPostings() counts the rows of each trigram first and then fills them in, so each trigram's rows end up next
+     * to each other in one array without a growing list per trigram.
+     *
+     * @param rowCount number of rows in the table
+     */
+    private void buildPostings(int rowCount) {
+        int[] rowGrams = new int[16];
+        int[] sizes = new int[1024];
+        int total = 0;
+        for ( int row = 0; row < rowCount; row++ ) {
+            rowGrams = gramBuffer(row, rowGrams);
+            int gramCount = trigrams(row, rowGrams);
+            for ( int i = 0; i < gramCount; i++ ) {
+                int list = postingIndex.get(rowGrams[i]);
+                if ( list == 0 ) {
+                    list = postingIndex.size() + 1;
+                    postingIndex.put(rowGrams[i], list);
+                    if ( list == sizes.length ) { sizes = Arrays.copyOf(sizes, 2 * sizes.length); }
+                }
+                sizes[list]++;
+            }
+            gramCounts[row] = gramCount;
+            total += gramCount;
+        }
+
+        postingStarts = new int[postingIndex.size() + 1];
+        for ( int list = 1; list < postingStarts.length; list++ ) {
+            postingStarts[list] = postingStarts[list - 1] + sizes[list];
+        }
+        int[] next = sizes; // Reused: where the next row of each trigram goes
+        System.arraycopy(postingStarts, 0, next, 0, postingStarts.length);
+        postingRows = new int[total];
+        for ( int row = 0; row < rowCount; row++ ) {
+            rowGrams = gramBuffer(row, rowGrams);
+            int gramCount = trigrams(row, rowGrams);
+            for ( int i = 0; i < gramCount; i++ ) {
+                postingRows[next[postingIndex.get(rowGrams[i]) - 1]++] = row;
+            }
+        }
+    }
+
+    /**
+     * @param list a trigram's position in postingIndex
+     * @return number of rows with that trigram
+     */
+    private int postingSize(int list) { return postingStarts[list] - postingStarts[list - 1]; }
+
+    /**
+     * @param row a row
+     * @param grams the buffer used so far
+     * @return grams, or a bigger buffer if the row's trigrams don't fit in it
+     */
+    private int[] gramBuffer(int row, int[] grams) {
+        int length = keyStarts[row + 1] - keyStarts[row];
+        return grams.length < length ? new int[length] : grams;
+    }
+
+    /**
+     * trigrams() works out a row's trigrams the way TrigramIndex.trigrams() does. An ASCII name is read straight from
+     * its bytes; any other name is decoded first.
+     *
+     * @param row a row
+     * @param grams where the trigrams go; at least as long as the row's normalized name in bytes
+     * @return number of distinct trigrams, sorted, at the start of grams
+     */
+    private int trigrams(int row, int[] grams) {
+        int from = keyStarts[row];
+        int to = keyStarts[row + 1];
+        if ( !allAscii ) {
+            for ( int i = from; i < to; i++ ) {
+                if ( keys[i] < 0 ) {
+                    int[] decoded = TrigramIndex.trigrams(new String(keys, from, to - from, StandardCharsets.UTF_8));
+                    System.arraycopy(decoded, 0, grams, 0, decoded.length);
+                    return decoded.length;
+                }
+            }
+        }
+        int count = 0;
+        for ( int i = from; i + 2 < to; i++ ) {
+            grams[count++] = TrigramIndex.gram((char) keys[i], (char) keys[i + 1], (char) keys[i + 2]);
+        }
+        Arrays.sort(grams, 0, count);
+        int distinct = 0;
+        for ( int i = 0; i < count; i++ ) {
+            if ( i == 0 || grams[i] != grams[i - 1] ) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * @param name a name as UTF-8
+     * @return the name normalized the way PrefixIndex.normalize() does it, as UTF-8; ASCII names are normalized without
+     *         creating a String
+     */
+    private static byte[] normalize(ByteBuffer name) {
+        int length = name.remaining();
+        byte[] key = new byte[length];
+        int keyLength = 0;
+        for ( int i = 0; i < length; i++ ) {
+            byte b = name.get(name.position() + i);
+            if ( b < 0 || !ASCII_LOWERCASE ) {
+                byte[] utf8 = new byte[length];
+                name.duplicate().get(utf8);
+                return PrefixIndex.normalize(new String(utf8, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            }
+            if ( b == ' ' ) {
+                continue;
+            }
+            key[keyLength++] = b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+        }
+        return keyLength == length ? key : Arrays.copyOf(key, keyLength);
+    }
+
+    /**
+     * @param row a row
+     * @param depth how many bytes of its normalized name to skip
+     * @return the byte at that depth, from 0 to 255, or -1 if the name is shorter
+     */
+    private int byteAt(int row, int depth) {
+        int at = keyStarts[row] + depth;
+        return at < keyStarts[row + 1] ? keys[at] & 0xFF : -1;
+    }
+
+    /**
+     * @param row a row
+     * @param prefix a normalized name as UTF-8
+     * @return negative, zero, or positive as the row's normalized name comes before, equals, or comes after prefix
+     */
+    private int compare(int row, byte[] prefix) {
+        return Arrays.compareUnsigned(keys, keyStarts[row], keyStarts[row + 1], prefix, 0, prefix.length);
+    }
+
+    /**
+     * @param row a row
+     * @param prefix a normalized name as UTF-8
+     * @return whether the row's normalized name begins with prefix
+     */
+    private boolean startsWith(int row, byte[] prefix) {
+        int from = keyStarts[row];
+        return keyStarts[row + 1] - from >= prefix.length
+               && Arrays.equals(keys, from, from + prefix.length, prefix, 0, prefix.length);
+    }
+
+    /**
+     * @param row a row
+     * @param key a normalized query as UTF-8
+     * @return whether the row's normalized name contains key anywhere
+     */
+    private boolean contains(int row, byte[] key) {
+        int from = keyStarts[row];
+        int last = keyStarts[row + 1] - key.length;
+        for ( int at = from; at <= last; at++ ) {
+            if ( Arrays.equals(keys, at, at + key.length, key, 0, key.length) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * sort() sorts rows by normalized name with a three-way radix quicksort: the rows are split on one byte of their
+     * names at a time, so no two names are ever compared from the start again.
+     *
+     * @param rows the rows being sorted
+     * @param from first position to sort
+     * @param to position after the last one to sort
+     * @param depth bytes that every name in the range already has in common
+     */
+    private void sort(int[] rows, int from, int to, int depth) {
+        while ( to - from > INSERTION_SORT_ROWS ) {
+            int pivot = byteAt(rows[(from + to) >>> 1], depth);
+            int less = from;
+            int greater = to;
+            int i = from;
+            while ( i < greater ) {
+                int b = byteAt(rows[i], depth);
+                if ( b < pivot ) {
+                    swap(rows, less++, i++);
+                } else if ( b > pivot ) {
+                    swap(rows, i, --greater);
+                } else {
+                    i++;
+                }
+            }
+            sort(rows, from, less, depth);
+            sort(rows, greater, to, depth);
+            if ( pivot < 0 ) {
+                return; // The names in the middle all ended here, so they're equal
+            }
+            from = less;
+            to = greater;
+            depth++;
+        }
+        for ( int i = from + 1; i < to; i++ ) {
+            for ( int j = i; j > from && compareFrom(rows[j], rows[j - 1], depth) < 0; j-- ) {
+                swap(rows, j, j - 1);
+            }
+        }
+    }
+
+    /**
+     * @param row a row
+     * @param other another row
+     * @param depth bytes the two names are already known to have in common
+     * @return negative, zero, or positive as row param's normalized name comes before, equals, or comes after other's
+     */
+    private int compareFrom(int row, int other, int depth) {
+        return Arrays.compareUnsigned(keys, keyStarts[row] + depth, keyStarts[row + 1],
+                keys, keyStarts[other] + depth, keyStarts[other + 1]);
+    }
+
+    private static void swap(int[] rows, int i, int j) {
+        int row = rows[i];
+        rows[i] = rows[j];
+        rows[j] = row;
+    }
+}
@@ -0,0 +1,91 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * SearchBenchmark times the ways a part can be searched for by name, on an inventory of generated parts:
+ * <ul>
+ * <li>scan: lowercasing every name and checking whether it contains the query, the way a search without indexes
+ * would.</li>
+ * <li>trigram: Inventory.searchParts(), the substring and typo-tolerant search (see TrigramIndex).</li>
+ * <li>prefix: Inventory.lookupPart(String), the "starts with" search (see PrefixIndex).</li>
+ * <li>typing: a SearchEngine fed a name one character at a time, like the search bar; after the first character it
+ * only narrows the last matches.</li>
+ * </ul>
+ * It isn't part of the program. Run it with the number of parts as the optional first argument (200,000 by default);
+ * it prints the average time per query for each way.
+ */
+public class SearchBenchmark {
+    /**
+     * Times each query is run after being run once to warm up.
+     */
+    private static final int ROUNDS = 20;
+    /**
+     * Words the generated part names are made of.
+     */
+    private static final String[] WORDS = { "bolt", "nut", "washer", "gear", "spring", "bearing", "axle", "bracket",
+            "hinge", "valve", "pump", "seal", "rotor", "pin", "clip", "shaft", "pulley", "chain", "sprocket", "cable" };
+
+    private SearchBenchmark() { }
+
+    /**
+     * @param args optional number of parts
+     */
+    public static void main(String[] args) {
+        int partCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Random random = new Random(42);
+        List<Part> parts = new ArrayList<>(partCount);
+        for ( int id = 1; id <= partCount; id++ ) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                    + random.nextInt(10_000);
+            parts.add(new InHouse(id, name, random.nextInt(10_000) / 100.0, random.nextInt(100), 0, 100, 1));
+        }
+        Inventory inventory = new Inventory();
+        inventory.addParts(parts);
+
+        String[] substrings = { "bearing", "pulley 12", "ring", "sprocket cab", "valve 99" };
+        String[] typos = { "baering", "pulely", "sprokcet" };
+        String[] prefixes = { "b", "bolt", "gear sh", "spring valve 1", "cable" };
+        System.out.println(partCount + " parts, average per query:");
+
+        time("scan", substrings, query -> {
+            String lower = query.toLowerCase(Locale.ROOT);
+            List<Part> matches = new ArrayList<>();
+            for ( Part part : parts ) {
+                if ( part.getName().toLowerCase(Locale.ROOT).contains(lower) ) { matches.add(part); }
+            }
+        });
+        time("trigram", substrings, query -> inventory.searchParts(query, 50));
+        time("trigram (typos)", typos, query -> inventory.searchParts(query, 50));
+        time("prefix", prefixes, inventory::lookupPart);
+        time("typing", prefixes, query -> {
+            SearchEngine<Part> engine = SearchEngine.forParts(inventory);
+            for ( int end = 1; end <= query.length(); end++ ) {
+                engine.matches(query.substring(0, end));
+            }
+        });
+    }
+
+    /**
+     * @param label what is being timed
+     * @param queries the queries to run
+     * @param search runs one query
+     */
+    private static void time(String label, String[] queries, Consumer<String> search) {
+        for ( String query : queries ) {
+            search.accept(query);
+        }
+        long start = System.nanoTime();
+        for ( int round = 0; round < ROUNDS; round++ ) {
+            for ( String query : queries ) {
+                search.accept(query);
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / (ROUNDS * queries.length);
+        System.out.printf("  %-16s %8.3f ms%n", label, millis);
+    }
+}
@@ -0,0 +1,190 @@
+package InvManagement;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SearchEngine turns the text typed in a search bar into the set of matches a table shows (see TableRows).
+ * <p>
+ * The matches for a query are worked out once, using the inventory's ID and name indexes, and collected into a set,
+ * so showing them costs one inventory search instead of one check per part or product.
+ * <p>
+ * Matching follows the same rules the search bars have always used: digit-only input matches the part or product with
+ * that ID, and any input matches names that begin with or equal it (ignoring case and spaces).
+ * <p>
+ * The name matches of the last query are remembered. When the user keeps typing (e.g. "bol" to "bolt"), the new
+ * query can only narrow those matches, so only they are checked again instead of running a full index query. Any
+ * other edit, such as a backspace, or any change to the inventory in between falls back to a full query.
+ * <p>
+ * When a query matches no ID and no name, the best substring and typo-tolerant matches from the inventory's trigram
+ * index are shown instead (for queries of three or more characters), so a part can still be found by any word in its
+ * name or despite a typo. They are never mixed into "starts with" matches, so a query that matches by name shows the
+ * same items as Inventory.lookupPart(String), and typing more of a name never runs a trigram query.
+ * SearchBenchmark compares both kinds of query with a plain scan of every name.
+ *
+ * @param <T> the type of item being searched (Part or Product)
+ */
+public class SearchEngine<T> {
+    /**
+     * Most substring/typo-tolerant matches to show when nothing matches by ID or name.
+     */
+    private static final int FUZZY_LIMIT = 50;
+
+    /**
+     * Source is where a search engine gets its matches from; usually the parts or products of an inventory.
+     *
+     * @param <T> the type of item being searched (Part or Product)
+     */
+    public interface Source<T> {
+        /**
+         * @param id the id to search for
+         * @return the item with that id, or null
+         */
+        T lookup(int id);
+
+        /**
+         * @param name the name to search for
+         * @return all items whose name begins with or equals the name
+         */
+        List<T> lookup(String name);
+
+        /**
+         * @param previous items that matched an earlier, shorter query
+         * @param name the new search text, which extends the earlier query
+         * @return the items in previous whose name begins with or equals the new search text
+         */
+        List<T> refine(List<T> previous, String name);
+
+        /**
+         * @param name the name to search for
+         * @param limit the most matches to return
+         * @return the items whose name contains or is close to the name, best match first
+         */
+        List<T> search(String name, int limit);
+
+        /**
+         * @return a number that changes whenever the items being searched change
+         */
+        long modCount();
+    }
+
+    /**
+     * Where the matches come from.
+     */
+    private final Source<T> source;
+
+    /**
+     * Normalized text of the last query that ran; null if there isn't one to refine.
+     */
+    private String lastQuery;
+    /**
+     * Name matches of the last query.
+     */
+    private List<T> lastNameMatches;
+    /**
+     * Source modification count when the last query ran.
+     */
+    private long lastModCount;
+
+    /**
+     * @param source where the matches come from
+     */
+    public SearchEngine(Source<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * @param inventory the inventory to search
+     * @return a search engine for the inventory's parts
+     */
+    public static SearchEngine<Part> forParts(Inventory inventory) {
+        return new SearchEngine<>(new Source<Part>() {
+            public Part lookup(int id) { return inventory.lookupPart(id); }
+            public List<Part> lookup(String name) { return inventory.lookupPart(name); }
+            public List<Part> refine(List<Part> previous, String name) {
+                return inventory.refinePartLookup(previous, name);
+            }
+            public List<Part> search(String name, int limit) { return inventory.searchParts(name, limit); }
+            public long modCount() { return inventory.getModCount(); }
+        });
+    }
+
+    /**
+     * @param inventory the inventory to search
+     * @return a search engine for the inventory's products
+     */
+    public static SearchEngine<Product> forProducts(Inventory inventory) {
+        return new SearchEngine<>(new Source<Product>() {
+            public Product lookup(int id) { return inventory.lookupProduct(id); }
+            public List<Product> lookup(String name) { return inventory.lookupProduct(name); }
+            public List<Product> refine(List<Product> previous, String name) {
+                return inventory.refineProductLookup(previous, name);
+            }
+            public List<Product> search(String name, int limit) { return inventory.searchProducts(name, limit); }
+            public long modCount() { return inventory.getModCount(); }
+        });
+    }
+
+    /**
+     * @param query the search text
+     * @return every item that matches the query by ID or name, or the closest matches if none do; compared by
+     *         identity
+     */
+    public synchronized Set<T> matches(String query) {
+        Set<T> matches = Collections.newSetFromMap(new IdentityHashMap<>());
+        if ( isDigits(query) ) { // If search text is an integer, can search for matches by ID
+            try {
+                T match = source.lookup(Integer.parseInt(query));
+                if ( match != null ) { matches.add(match); }
+            } catch ( NumberFormatException e ) {
+                // Too many digits to be an ID; only name matches apply
+            }
+        }
+        // NOTE: Assumption made that no items have a name of only numbers
+        matches.addAll(nameMatches(query));
+        if ( matches.isEmpty() ) {
+            matches.addAll(source.search(query, FUZZY_LIMIT));
+        }
+        return matches;
+    }
+
+    /**
+     * nameMatches() refines the last query's matches when the new query only adds to it and nothing in the source
+     * has changed since; otherwise it runs a full name lookup.
+     *
+     * @param query the search text
+     * @return all items whose name begins with or equals the query
+     */
+    private List<T> nameMatches(String query) {
+        String normalized = PrefixIndex.normalize(query);
+        long modCount = source.modCount();
+
+        List<T> nameMatches;
+        if ( lastQuery != null && modCount == lastModCount && normalized.startsWith(lastQuery) ) {
+            nameMatches = normalized.equals(lastQuery) ? lastNameMatches : source.refine(lastNameMatches, query);
+        } else {
+            nameMatches = source.lookup(query);
+        }
+
+        lastQuery = normalized;
+        lastNameMatches = nameMatches;
+        lastModCount = modCount;
+        return nameMatches;
+    }
+
+    /**
+     * @param text the search text
+     * @return whether or not the text is made of only digits
+     */
+    private static boolean isDigits(String text) {
+        for ( int i = 0; i < text.length(); i++ ) {
+            char c = text.charAt(i);
+            if ( c < '0' || c > '9' ) {
+                return false;
+            }
+        }
+        return !text.isEmpty();
+    }
+}
@@ -0,0 +1,13 @@
+package InvManagement;
+
+/**
+ * SortKey names an order the inventory keeps its parts and products in, besides the order they were added in, so a
+ * table can show them sorted without sorting them itself (see Inventory.getPartsInOrder() and TableRows). Ties in
+ * every order but ID are broken by ID.
+ */
+public enum SortKey {
+    ID,
+    NAME,
+    STOCK,
+    PRICE
+}
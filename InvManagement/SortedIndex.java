@@ -0,0 +1,254 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SortedIndex keeps parts or products sorted by one of their fields, so a table can show any page of them in that
+ * order, and find where an item goes in it, without sorting anything.
+ * <p>
+ * The items are kept in a list of small sorted blocks. Adding or removing an item finds its block with a binary
+ * search and only shifts the items in that block; a block that grows too big is split in two. Reading a page walks
+ * the block sizes to the block the page starts in and copies the page from there, so it costs about as much as the
+ * page itself plus one step per thousand items before it.
+ * <p>
+ * The order must never call two different items equal (ties should be broken by ID), and an item's fields must not
+ * change while it's in the index; the inventory replaces parts and products rather than changing them, so neither
+ * happens there.
+ *
+ * @param <T> the type of item being indexed (Part or Product)
+ */
+public class SortedIndex<T> {
+    /**
+     * Most items a block holds before it's split.
+     */
+    private static final int MAX_BLOCK = 1024;
+    /**
+     * Items per block when the index is built all at once; leaves room for adds before the blocks have to split.
+     */
+    private static final int BULK_BLOCK = 768;
+
+    /**
+     * The order the items are kept in.
+     */
+    private final Comparator<? super T> order;
+    /**
+     * Sorted blocks; every item in a block comes before every item in the blocks after it. None are empty.
+     */
+    private final ArrayList<ArrayList<T>> blocks = new ArrayList<>();
+    /**
+     * Number of items in all blocks.
+     */
+    private int size;
+
+    /**
+     * @param order the order to keep the items in
+     */
+    public SortedIndex(Comparator<? super T> order) {
+        this.order = order;
+    }
+
+    /**
+     * @return a new, empty index that keeps the same order
+     */
+    public SortedIndex<T> emptyCopy() { return new SortedIndex<>(order); }
+
+    /**
+     * @return number of items in the index
+     */
+    public int size() { return size; }
+
+    /**
+     * @param item the item to add to the index
+     */
+    public void add(T item) {
+        if ( blocks.isEmpty() ) {
+            blocks.add(new ArrayList<>());
+        }
+        int blockIndex = blockFor(item);
+        ArrayList<T> block = blocks.get(blockIndex);
+        block.add(lowerBound(block, item), item);
+        size++;
+
+        if ( block.size() > MAX_BLOCK ) {
+            List<T> upperHalf = block.subList(block.size() / 2, block.size());
+            blocks.add(blockIndex + 1, new ArrayList<>(upperHalf));
+            upperHalf.clear();
+        }
+    }
+
+    /**
+     * addAll() adds many items at once. If there are more new items than items already in the index, the whole index
+     * is sorted again in one go, on every core, instead of adding them one at a time.
+     *
+     * @param items the items to add to the index
+     */
+    public void addAll(Collection<? extends T> items) {
+        if ( items.size() <= size ) {
+            for ( T item : items ) {
+                add(item);
+            }
+            return;
+        }
+        List<T> all = new ArrayList<>(size + items.size());
+        for ( ArrayList<T> block : blocks ) {
+            all.addAll(block);
+        }
+        all.addAll(items);
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) all.toArray();
+        Arrays.parallelSort(sorted, order);
+
+        List<T> sortedList = Arrays.asList(sorted);
+        blocks.clear();
+        for ( int from = 0; from < sorted.length; from += BULK_BLOCK ) {
+            blocks.add(new ArrayList<>(sortedList.subList(from, Math.min(sorted.length, from + BULK_BLOCK))));
+        }
+        size = sorted.length;
+    }
+
+    /**
+     * clear() removes every item from the index.
+     */
+    public void clear() {
+        blocks.clear();
+        size = 0;
+    }
+
+    /**
+     * @param item the item to remove from the index; found by identity
+     * @return whether or not the item was in the index
+     */
+    public boolean remove(T item) {
+        if ( blocks.isEmpty() ) {
+            return false;
+        }
+        // The item is the first one not before it, or just after items the order calls equal to it
+        for ( int blockIndex = blockFor(item); blockIndex < blocks.size(); blockIndex++ ) {
+            ArrayList<T> block = blocks.get(blockIndex);
+            for ( int i = lowerBound(block, item); i < block.size(); i++ ) {
+                if ( block.get(i) == item ) {
+                    block.remove(i);
+                    size--;
+                    if ( block.isEmpty() ) {
+                        blocks.remove(blockIndex);
+                    }
+                    return true;
+                }
+                if ( order.compare(block.get(i), item) != 0 ) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * rank() says where an item is in the order, or where it would go if it isn't in the index.
+     *
+     * @param item an item, in the index or not
+     * @param ascending false to count from the end of the order
+     * @return how many items in the index come before item param; or, if ascending is false, after it
+     */
+    public int rank(T item, boolean ascending) {
+        if ( blocks.isEmpty() ) {
+            return 0;
+        }
+        int blockIndex = blockFor(item);
+        int before = 0;
+        for ( int i = 0; i < blockIndex; i++ ) {
+            before += blocks.get(i).size();
+        }
+        ArrayList<T> block = blocks.get(blockIndex);
+        int at = lowerBound(block, item);
+        if ( ascending ) {
+            return before + at;
+        }
+        // Items the order calls equal to item (only item itself, if it's in the index) don't come after it
+        int notAfter = before + at;
+        while ( at < block.size() && order.compare(block.get(at), item) == 0 ) {
+            at++;
+            notAfter++;
+        }
+        return size - notAfter;
+    }
+
+    /**
+     * @param offset how many items to skip
+     * @param limit the most items to return
+     * @param ascending false to read the order from its end
+     * @return up to limit param items from offset param on, in that order; empty if offset param is past the end
+     */
+    public List<T> page(int offset, int limit, boolean ascending) {
+        if ( offset < 0 || offset >= size ) {
+            return new ArrayList<>();
+        }
+        List<T> page = new ArrayList<>(Math.max(0, Math.min(limit, size - offset)));
+        // Descending, item k of the page is item (size - 1 - k) in ascending order
+        int position = ascending ? offset : size - 1 - offset;
+        int blockIndex = 0;
+        int blockStart = 0;
+        while ( blockStart + blocks.get(blockIndex).size() <= position ) {
+            blockStart += blocks.get(blockIndex++).size();
+        }
+        int at = position - blockStart;
+        while ( page.size() < limit && blockIndex >= 0 && blockIndex < blocks.size() ) {
+            ArrayList<T> block = blocks.get(blockIndex);
+            if ( ascending ) {
+                for ( ; at < block.size() && page.size() < limit; at++ ) {
+                    page.add(block.get(at));
+                }
+                blockIndex++;
+                at = 0;
+            } else {
+                for ( ; at >= 0 && page.size() < limit; at-- ) {
+                    page.add(block.get(at));
+                }
+                blockIndex--;
+                at = blockIndex >= 0 ? blocks.get(blockIndex).size() - 1 : 0;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * @param item an item
+     * @return the first block whose last item isn't before item param, or the last block if every item is
+     */
+    private int blockFor(T item) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while ( low < high ) {
+            int middle = (low + high) >>> 1;
+            ArrayList<T> block = blocks.get(middle);
+            if ( order.compare(block.get(block.size() - 1), item) < 0 ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param block a sorted block
+     * @param item an item
+     * @return index of the first item in the block that isn't before item param; the block's size if there is none
+     */
+    private int lowerBound(List<T> block, T item) {
+        int low = 0;
+        int high = block.size();
+        while ( low < high ) {
+            int middle = (low + high) >>> 1;
+            if ( order.compare(block.get(middle), item) < 0 ) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
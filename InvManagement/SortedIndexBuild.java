@@ -0,0 +1,102 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * SortedIndexBuild sorts every part or product into a new SortedIndex on a background thread, so the inventory isn't
+ * locked, and the table waiting for the order isn't frozen, while a million items are sorted.
+ * <p>
+ * The items sorted are a copy of the inventory's list, taken when the build started. Changes made to the inventory
+ * after that are written down here instead, and played back onto the index in the order they happened when the
+ * inventory swaps it in (see finish()).
+ * <p>
+ * Only build() is called without the inventory locked; it only touches the copy and the new index, which nothing
+ * else can see until finish() hands it over.
+ *
+ * @param <T> the type of item being indexed (Part or Product)
+ */
+public class SortedIndexBuild<T> {
+    /**
+     * The index being built.
+     */
+    private final SortedIndex<T> index;
+    /**
+     * The items as they were when the build started.
+     */
+    private final List<T> items;
+    /**
+     * Items added to or removed from the inventory since the build started, in the order it happened.
+     */
+    private final List<T> changes = new ArrayList<>();
+    /**
+     * Positions in changes that are removals; the rest are adds.
+     */
+    private final BitSet removals = new BitSet();
+    /**
+     * Run once the build is done or given up.
+     */
+    private final List<Runnable> whenDone = new ArrayList<>();
+
+    /**
+     * @param index an empty index that keeps the order to build
+     * @param items a copy of the inventory's list that nothing else changes
+     */
+    public SortedIndexBuild(SortedIndex<T> index, List<T> items) {
+        this.index = index;
+        this.items = items;
+    }
+
+    /**
+     * build() sorts the items into the index; it's the slow part, and the only part run without the inventory locked.
+     */
+    public void build() { index.addAll(items); }
+
+    /**
+     * @param item an item just added to the inventory
+     */
+    public void added(T item) { changes.add(item); }
+
+    /**
+     * @param added items just added to the inventory
+     */
+    public void addedAll(Collection<? extends T> added) { changes.addAll(added); }
+
+    /**
+     * @param item an item just removed from the inventory
+     */
+    public void removed(T item) {
+        removals.set(changes.size());
+        changes.add(item);
+    }
+
+    /**
+     * @param action what to run once the build is done or given up
+     */
+    public void whenDone(Runnable action) { whenDone.add(action); }
+
+    /**
+     * @return what to run now that the build is done or given up
+     */
+    public List<Runnable> getWhenDone() { return whenDone; }
+
+    /**
+     * finish() plays the changes made since the build started back onto the built index, so it matches the inventory
+     * as it is now.
+     *
+     * @return the finished index
+     */
+    public SortedIndex<T> finish() {
+        for ( int i = 0; i < changes.size(); i++ ) {
+            if ( removals.get(i) ) {
+                index.remove(changes.get(i));
+            } else {
+                index.add(changes.get(i));
+            }
+        }
+        changes.clear();
+        return index;
+    }
+}
@@ -0,0 +1,54 @@
+package InvManagement;
+
+/**
+ * StockTotals sums up the parts in an inventory: how many there are, how many units are in stock, what that stock is
+ * worth at the parts' prices, and how many parts are at or below their min and need to be ordered again. See
+ * Inventory.getPartTotals().
+ */
+public class StockTotals {
+    private int partCount;
+    private long unitsInStock;
+    private double stockValue;
+    private int lowStockCount;
+
+    /**
+     * add() counts one part in the totals.
+     *
+     * @param price the part's price
+     * @param stock the part's stock
+     * @param min the part's min
+     */
+    void add(double price, int stock, int min) {
+        this.partCount++;
+        this.unitsInStock += stock;
+        this.stockValue += price * stock;
+        if ( stock <= min ) {
+            this.lowStockCount++;
+        }
+    }
+
+    /**
+     * @param part a part to count in the totals
+     */
+    void add(Part part) { add(part.getPrice(), part.getStock(), part.getMin()); }
+
+    /**
+     * @return number of parts counted
+     */
+    public int getPartCount() { return partCount; }
+
+    /**
+     * @return stock of all parts added together
+     */
+    public long getUnitsInStock() { return unitsInStock; }
+
+    /**
+     * @return price times stock of all parts added together
+     */
+    public double getStockValue() { return stockValue; }
+
+    /**
+     * @return number of parts whose stock is at or below their min
+     */
+    public int getLowStockCount() { return lowStockCount; }
+}
@@ -0,0 +1,158 @@
+package InvManagement;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * StringPool stores names, such as part and company names, as UTF-8 bytes back to back in one shared byte array, and
+ * stores each distinct name only once. A name is referred to by a handle, an int, instead of by a String object.
+ * <p>
+ * A String costs about 40 bytes on top of its text, so for millions of short names the pool takes about a third of
+ * the memory, and far less when names repeat; a supplier's company name is usually shared by thousands of parts. The
+ * catch is that get() decodes a new String every time, so the pool suits names that are kept much more often than
+ * they are read.
+ * <p>
+ * Finding out whether a name is already in the pool uses an open-addressing hash table of handles, so it doesn't need
+ * a String or an entry object per name either.
+ * <p>
+ * It isn't thread-safe while names are being added. Once it's filled and handed to other threads the way any other
+ * object is (e.g. through a lock or a final field), it can be read from any thread.
+ */
+public class StringPool {
+    /**
+     * Marks an empty slot in the hash table.
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * UTF-8 bytes of every name, back to back.
+     */
+    private byte[] bytes = new byte[1024];
+    /**
+     * Where each name starts in bytes; the entry after the last name is where the next one will go.
+     */
+    private int[] starts = new int[64];
+    /**
+     * Number of distinct names in the pool.
+     */
+    private int count;
+    /**
+     * Handle of the name in each slot, or EMPTY; a power of two in length, and never more than half full. Null after
+     * trim(), until another name is added.
+     */
+    private int[] slots = newSlots(64);
+
+    /**
+     * add() adds a name to the pool, unless the same name is already there.
+     *
+     * @param name the name to add
+     * @return the name's handle; the same handle for the same name every time
+     * @throws IllegalStateException if the pool can't hold any more bytes
+     */
+    public int add(String name) {
+        byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+        if ( slots == null ) {
+            rehash(4 * Integer.highestOneBit(Math.max(16, count)));
+        }
+        int mask = slots.length - 1;
+        int slot = hash(utf8, 0, utf8.length) & mask;
+        for ( int handle = slots[slot]; handle != EMPTY; handle = slots[slot] ) {
+            if ( Arrays.equals(bytes, starts[handle], starts[handle + 1], utf8, 0, utf8.length) ) {
+                return handle;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int start = starts[count];
+        if ( (long) start + utf8.length > Integer.MAX_VALUE - 8 ) {
+            throw new IllegalStateException("Too many names for one string pool");
+        }
+        if ( start + utf8.length > bytes.length ) {
+            bytes = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8,
+                    Math.max(start + utf8.length, 2L * bytes.length)));
+        }
+        if ( count + 2 > starts.length ) {
+            starts = Arrays.copyOf(starts, 2 * starts.length);
+        }
+        System.arraycopy(utf8, 0, bytes, start, utf8.length);
+        int handle = count++;
+        starts[count] = start + utf8.length;
+        slots[slot] = handle;
+        if ( 2 * count > slots.length ) {
+            rehash(2 * slots.length);
+        }
+        return handle;
+    }
+
+    /**
+     * @param handle a handle from add()
+     * @return the name, decoded into a new String
+     */
+    public String get(int handle) {
+        return new String(bytes, starts[handle], starts[handle + 1] - starts[handle], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param handle a handle from add()
+     * @return the name's UTF-8 bytes, as a read-only view of the pool
+     */
+    public ByteBuffer getBytes(int handle) {
+        return ByteBuffer.wrap(bytes, starts[handle], starts[handle + 1] - starts[handle]).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return number of distinct names in the pool
+     */
+    public int size() { return count; }
+
+    /**
+     * trim() gives back the room kept for names that were never added, and the hash table, once no more names will
+     * be added. Adding another name after all still works; it builds the hash table again first.
+     */
+    public void trim() {
+        bytes = Arrays.copyOf(bytes, starts[count]);
+        starts = Arrays.copyOf(starts, count + 1);
+        slots = null;
+    }
+
+    /**
+     * @param slotCount new number of slots; a power of two
+     */
+    private void rehash(int slotCount) {
+        slots = newSlots(slotCount);
+        int mask = slotCount - 1;
+        for ( int handle = 0; handle < count; handle++ ) {
+            int slot = hash(bytes, starts[handle], starts[handle + 1]) & mask;
+            while ( slots[slot] != EMPTY ) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = handle;
+        }
+    }
+
+    /**
+     * @param slotCount number of slots
+     * @return a hash table with every slot empty
+     */
+    private static int[] newSlots(int slotCount) {
+        int[] newSlots = new int[slotCount];
+        Arrays.fill(newSlots, EMPTY);
+        return newSlots;
+    }
+
+    /**
+     * @param bytes an array holding a name
+     * @param from where the name starts
+     * @param to where the name ends
+     * @return a hash of the name, spread so that similar names land in different slots
+     */
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 1;
+        for ( int i = from; i < to; i++ ) {
+            hash = 31 * hash + bytes[i];
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
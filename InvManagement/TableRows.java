@@ -0,0 +1,395 @@
+package InvManagement;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * TableRows decides which rows one of the main form's tables shows and in what order, and hands them to the table a
+ * page at a time through a PagedList, so the table never needs a list of every part or product of its own.
+ * <p>
+ * The rows come from one of three places:
+ * <ul>
+ * <li>With no search and no sorting, they are the inventory's own list, read a page at a time straight from the
+ * inventory (see Inventory.getParts(int, int)) rather than from a copy of the whole list. The edits the inventory
+ * reports (see Inventory.getPartChanges()) are passed on as they are, so selected rows stay selected when other rows
+ * change. If the inventory has moved on since the edits were reported, the rows are refreshed instead; rows read past
+ * the inventory's end in the meantime are null until then.</li>
+ * <li>Sorted by a column that one of the inventory's indexes keeps in order, a page is read straight from that index
+ * (see Inventory.getPartsInOrder()). Nothing is sorted, so a new sort costs as much as the rows on screen. When a
+ * single item is added, updated, or deleted, the index says where it is, or was, and only that row is moved, so the
+ * rest of the rows and the selection stay as they are. After a bulk load the index first has to be built; that's done
+ * on a background thread (see Inventory.sortPartsInBackground()), and the rows are shown unsorted, as in the first
+ * case, until it's ready.</li>
+ * <li>While a search is active, they are the search's matches, sorted by the table's comparator when the table is
+ * sorted and by ID otherwise. Only the matches are ever sorted, never the whole inventory.</li>
+ * </ul>
+ * Without a search, the table can only be sorted by one column at a time, and only by a column an index keeps in
+ * order; the sort policy turns any other sort down and the table goes back to its previous sort order. With a search,
+ * every column can be sorted.
+ * <p>
+ * It should only be used on the JavaFX application thread. The inventory only holds it weakly, so a closed form's
+ * table can be garbage collected; the list it returns keeps it reachable for as long as the table uses it.
+ *
+ * @param <T> type of the rows (Part or Product)
+ */
+public class TableRows<T> {
+    /**
+     * Source is where a table's rows come from; usually the parts or products of an inventory.
+     *
+     * @param <T> type of the rows
+     */
+    public interface Source<T> {
+        /**
+         * @return where the inventory reports changes to its list; only listened to, for which rows changed
+         */
+        ChangeFeed<T> changes();
+
+        /**
+         * @return how many items there are right now
+         */
+        int count();
+
+        /**
+         * @param offset how many items to skip
+         * @param limit the most items to return
+         * @return the items from offset param on, in the order they were added, as they are right now
+         */
+        List<T> page(int offset, int limit);
+
+        /**
+         * @param key the order to read the items in
+         * @param ascending false to read the order from its end
+         * @param offset how many items to skip
+         * @param limit the most items to return
+         * @return the items from offset param on, in that order
+         */
+        List<T> inOrder(SortKey key, boolean ascending, int offset, int limit);
+
+        /**
+         * @param key an order
+         * @param whenSorted run on some other thread once the order is ready, or should be asked for again
+         * @return whether inOrder() and rank() can read the order right away; if not, it's made ready in the
+         *         background
+         */
+        boolean sortInBackground(SortKey key, Runnable whenSorted);
+
+        /**
+         * @param key the order the items are read in
+         * @param ascending false if the order is read from its end
+         * @param item an item, whether it's still one of the items or not
+         * @return how many items come before item param in that order
+         */
+        int rank(SortKey key, boolean ascending, T item);
+
+        /**
+         * @param item an item
+         * @return the item's ID
+         */
+        int id(T item);
+    }
+
+    /**
+     * Where the rows come from.
+     */
+    private final Source<T> source;
+    /**
+     * The list the table shows.
+     */
+    private final PagedList<T> list;
+    /**
+     * Called with the inventory's edits; held here because the inventory only holds it weakly.
+     */
+    private final Consumer<List<ListEdit<T>>> editsListener = this::itemsChanged;
+    /**
+     * Which index keeps each sortable column's order.
+     */
+    private final Map<TableColumn<T, ?>, SortKey> keys = new HashMap<>();
+
+    /**
+     * The table, once it has asked for its rows to be sorted.
+     */
+    private TableView<T> table;
+    /**
+     * The table's comparator for its current sort order; null if it isn't sorted.
+     */
+    private Comparator<T> comparator;
+    /**
+     * The index that keeps the current sort order; null if the table isn't sorted or isn't sorted by an index.
+     */
+    private SortKey key;
+    /**
+     * Whether the current sort order is ascending.
+     */
+    private boolean ascending = true;
+    /**
+     * Whether the rows are read from the index that keeps the current sort order; false while there's no such order,
+     * or while it's still being built.
+     */
+    private boolean sorted;
+    /**
+     * The current search's matches, in the order shown; null if there is no search.
+     */
+    private List<T> matches;
+
+    /**
+     * @param source where the rows come from
+     */
+    public TableRows(Source<T> source) {
+        this.source = source;
+        this.list = new PagedList<>(inListOrder());
+        source.changes().addWeakListener(editsListener);
+    }
+
+    /**
+     * @param inventory the inventory to show
+     * @return rows for the inventory's parts
+     */
+    public static TableRows<Part> forParts(Inventory inventory) {
+        return new TableRows<>(new Source<Part>() {
+            public ChangeFeed<Part> changes() { return inventory.getPartChanges(); }
+            public int count() { return inventory.getPartCount(); }
+            public List<Part> page(int offset, int limit) { return inventory.getParts(offset, limit); }
+            public List<Part> inOrder(SortKey key, boolean ascending, int offset, int limit) {
+                return inventory.getPartsInOrder(key, ascending, offset, limit);
+            }
+            public boolean sortInBackground(SortKey key, Runnable whenSorted) {
+                return inventory.sortPartsInBackground(key, whenSorted);
+            }
+            public int rank(SortKey key, boolean ascending, Part part) {
+                return inventory.getPartRank(key, ascending, part);
+            }
+            public int id(Part part) { return part.getId(); }
+        });
+    }
+
+    /**
+     * @param inventory the inventory to show
+     * @return rows for the inventory's products
+     */
+    public static TableRows<Product> forProducts(Inventory inventory) {
+        return new TableRows<>(new Source<Product>() {
+            public ChangeFeed<Product> changes() { return inventory.getProductChanges(); }
+            public int count() { return inventory.getProductCount(); }
+            public List<Product> page(int offset, int limit) { return inventory.getProductRows(offset, limit); }
+            public List<Product> inOrder(SortKey key, boolean ascending, int offset, int limit) {
+                return inventory.getProductsInOrder(key, ascending, offset, limit);
+            }
+            public boolean sortInBackground(SortKey key, Runnable whenSorted) {
+                return inventory.sortProductsInBackground(key, whenSorted);
+            }
+            public int rank(SortKey key, boolean ascending, Product product) {
+                return inventory.getProductRank(key, ascending, product);
+            }
+            public int id(Product product) { return product.getId(); }
+        });
+    }
+
+    /**
+     * @return the list to set as the table's items
+     */
+    public ObservableList<T> getList() { return list; }
+
+    /**
+     * sortsBy() lets a column be sorted without a search, by reading its order from an index.
+     *
+     * @param column one of the table's columns
+     * @param key the index that keeps the column's order
+     */
+    public void sortsBy(TableColumn<T, ?> column, SortKey key) { keys.put(column, key); }
+
+    /**
+     * sort() is the table's sort policy; see TableView.setSortPolicy(). Without a search, only a sort by a single
+     * column that an index keeps in order can be done.
+     *
+     * @param table the table being sorted
+     * @return whether the rows are now in the table's sort order
+     */
+    public boolean sort(TableView<T> table) {
+        this.table = table;
+        List<TableColumn<T, ?>> sortOrder = table.getSortOrder();
+        SortKey newKey = sortOrder.size() == 1 ? keys.get(sortOrder.get(0)) : null;
+        if ( !sortOrder.isEmpty() && newKey == null && matches == null ) {
+            return false;
+        }
+
+        this.comparator = sortOrder.isEmpty() ? null : table.getComparator();
+        this.key = newKey;
+        this.ascending = sortOrder.isEmpty() || sortOrder.get(0).getSortType() == TableColumn.SortType.ASCENDING;
+        if ( matches != null ) {
+            sortMatches();
+        }
+        show();
+        return true;
+    }
+
+    /**
+     * setMatches() shows a search's matches, or everything again once the search is cleared. If the table is sorted
+     * by a column only a search can sort, clearing the search clears the sort too.
+     *
+     * @param newMatches every item that matches the search; null if there is no search
+     */
+    public void setMatches(Set<T> newMatches) {
+        if ( newMatches == null ) {
+            this.matches = null;
+            if ( comparator != null && key == null ) {
+                table.getSortOrder().clear(); // Sorts again, which shows everything
+                return;
+            }
+        } else {
+            this.matches = new ArrayList<>(newMatches);
+            sortMatches();
+        }
+        show();
+    }
+
+    private void sortMatches() {
+        ToIntFunction<T> id = source::id;
+        matches.sort(comparator != null ? comparator : Comparator.comparingInt(id));
+    }
+
+    /**
+     * show() points the list at wherever the rows come from right now. If the sort order's index isn't ready, the rows
+     * are shown in list order until it is.
+     */
+    private void show() {
+        sorted = matches == null && key != null
+                 && source.sortInBackground(key, () -> Platform.runLater(this::sortReady));
+        if ( matches != null ) {
+            list.setSource(inMatchOrder());
+        } else if ( sorted ) {
+            SortKey order = key;
+            boolean up = ascending;
+            list.setSource(new PagedList.Source<T>() {
+                public int size() { return source.count(); }
+                public List<T> fetch(int offset, int limit) { return source.inOrder(order, up, offset, limit); }
+            });
+        } else {
+            list.setSource(inListOrder());
+        }
+    }
+
+    /**
+     * sortReady() switches the rows over to the sort order once its index is ready, if they're still waiting for it.
+     */
+    private void sortReady() {
+        if ( !sorted && matches == null && key != null ) {
+            show();
+        }
+    }
+
+    /**
+     * @return a source that reads the current search's matches
+     */
+    private PagedList.Source<T> inMatchOrder() {
+        return new PagedList.Source<T>() {
+            public int size() { return matches.size(); }
+            public List<T> fetch(int offset, int limit) { return PagedList.of(matches).fetch(offset, limit); }
+        };
+    }
+
+    /**
+     * @return a source that reads the items a page at a time, in the order they were added
+     */
+    private PagedList.Source<T> inListOrder() {
+        return new PagedList.Source<T>() {
+            public int size() { return source.count(); }
+            public List<T> fetch(int offset, int limit) { return source.page(offset, limit); }
+        };
+    }
+
+    /**
+     * itemsChanged() keeps the rows in step with the inventory. Items that were removed are taken out of a search's
+     * matches right away; new items only show up in a search once it's run again.
+     *
+     * @param edits the inventory's edits since the last batch, in the order they were made
+     */
+    private void itemsChanged(List<ListEdit<T>> edits) {
+        if ( matches != null ) {
+            Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for ( ListEdit<T> edit : edits ) {
+                removed.addAll(edit.getRemoved());
+            }
+            if ( matches.removeIf(removed::contains) ) {
+                list.refresh();
+            }
+        } else if ( sorted ) {
+            if ( !moveRow(edits) ) {
+                list.refresh();
+            }
+        } else if ( !forward(edits) ) {
+            list.refresh();
+        }
+    }
+
+    /**
+     * forward() passes on the inventory's edits as they are, as long as they're in order of position and the
+     * inventory still has as many items as they say. The edits can be a moment behind the inventory, whose rows are
+     * the ones shown.
+     *
+     * @param edits the inventory's edits
+     * @return false, with nothing passed on, if an edit comes before the one ahead of it or the inventory has changed
+     *         again since; the rows should be refreshed instead
+     */
+    private boolean forward(List<ListEdit<T>> edits) {
+        int expectedCount = list.size();
+        int end = 0;
+        for ( ListEdit<T> edit : edits ) {
+            if ( edit.getFrom() < end ) {
+                return false; // A change event's steps have to be in order
+            }
+            end = edit.getTo();
+            expectedCount += edit.getAddedSize() - edit.getRemovedSize();
+        }
+        if ( source.count() != expectedCount ) {
+            return false;
+        }
+        list.forward(edits);
+        return true;
+    }
+
+    /**
+     * moveRow() passes on an edit to a single item as a change to the single row it's on in the sorted order. An
+     * updated item can end up somewhere else in the order, so its old row is removed and its new row added.
+     *
+     * @param edits the inventory's edits
+     * @return false, with nothing passed on, if the edits were to more than one item or the inventory has changed
+     *         again since; the rows should be refreshed instead
+     */
+    private boolean moveRow(List<ListEdit<T>> edits) {
+        if ( edits.size() != 1 || edits.get(0).getRemovedSize() > 1 || edits.get(0).getAddedSize() > 1 ) {
+            return false;
+        }
+        ListEdit<T> edit = edits.get(0);
+        T removed = edit.getRemovedSize() == 1 ? edit.getRemoved().get(0) : null;
+        T added = edit.getAdded();
+        int expectedCount = list.size() + (added != null ? 1 : 0) - (removed != null ? 1 : 0);
+        if ( source.count() != expectedCount ) {
+            return false;
+        }
+
+        int addedAt = added != null ? source.rank(key, ascending, added) : -1;
+        int removedAt = -1;
+        if ( removed != null ) {
+            // Where the removed item would go now; one less if the added item, which wasn't there before, is ahead
+            removedAt = source.rank(key, ascending, removed);
+            if ( added != null && addedAt < removedAt ) {
+                removedAt--;
+            }
+        }
+        list.rowChanged(removedAt, removed, addedAt);
+        return true;
+    }
+}
@@ -0,0 +1,401 @@
+package InvManagement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * TrigramIndex finds parts or products whose name contains the search text anywhere, or is close to it even with a
+ * typo, and ranks the results.
+ * <p>
+ * Every normalized name (see PrefixIndex.normalize) is split into trigrams - each run of three characters, so "bolt"
+ * gives "bol" and "olt". For each trigram the index keeps a posting list of the items that contain it. A query is
+ * split the same way, and an item's score depends on how many of the query's trigrams it shares.
+ * <p>
+ * A query is answered in two steps. Names that contain the whole query always rank first, so those are looked for
+ * first: every one of them has the query's rarest trigram, so only that posting list is read, and each name on it is
+ * checked with contains(). When even the rarest trigram is in a large share of all names, reading the list costs
+ * more than it saves, and the normalized names are scanned instead. If that already gives enough results, the query
+ * is done.
+ * <p>
+ * Otherwise typo-tolerant matches are needed too. Posting lists are read from shortest to longest, and an item that
+ * cannot reach the minimum number of shared trigrams is never added as a candidate. Only the top results are kept, in
+ * a small heap, so a query does not score or sort every item in the inventory.
+ * <p>
+ * Each entry remembers where it is in each of its posting lists, so removing an item doesn't scan lists that
+ * thousands of items with the same name share.
+ *
+ * @param <T> the type of item being indexed (Part or Product)
+ */
+public class TrigramIndex<T> {
+    /**
+     * If the rarest trigram of a query is in more than one in this many names, names are scanned for the query
+     * instead of reading the posting list.
+     */
+    static final int SCAN_FRACTION = 4;
+
+    /**
+     * Entry holds an indexed item along with its normalized name and the distinct trigrams of that name.
+     */
+    private static class Entry<T> {
+        final T item;
+        final String key;
+        final int[] grams;
+        final int slot;
+        /**
+         * Where the slot is in the posting list of each trigram in grams.
+         */
+        final int[] places;
+
+        Entry(T item, String key, int[] grams, int slot) {
+            this.item = item;
+            this.key = key;
+            this.grams = grams;
+            this.slot = slot;
+            this.places = new int[grams.length];
+        }
+    }
+
+    /**
+     * Posting is a growable list of entry slots for one trigram.
+     */
+    private static class Posting {
+        final int gram;
+        int[] slots = new int[4];
+        int size;
+
+        Posting(int gram) { this.gram = gram; }
+
+        /**
+         * @param slot the slot to add
+         * @return where it was put in the list
+         */
+        int add(int slot) {
+            if ( size == slots.length ) { slots = Arrays.copyOf(slots, size * 2); }
+            slots[size] = slot;
+            return size++;
+        }
+    }
+
+    /**
+     * Posting list for each trigram.
+     */
+    private final IntObjectMap<Posting> postings = new IntObjectMap<>();
+    /**
+     * Entries by slot; a removed entry leaves a null slot that the next add reuses.
+     */
+    private final List<Entry<T>> entries = new ArrayList<>();
+    /**
+     * Slots freed by removals, ready to be reused.
+     */
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    /**
+     * Entry for each indexed item; compared by identity, since items are mutable.
+     */
+    private final IdentityHashMap<T, Entry<T>> entryByItem = new IdentityHashMap<>();
+
+    /**
+     * Number of distinct trigrams of each slot's name, so candidates can be scored without reading their entries.
+     */
+    private int[] gramCounts = new int[16];
+    /**
+     * Shared-trigram count per slot while a query runs; always cleared back to zero before search() returns.
+     */
+    private int[] counts = new int[16];
+
+    /**
+     * @param item the item to add to the index
+     * @param name the item's current name
+     */
+    public void add(T item, String name) {
+        remove(item);
+
+        String key = PrefixIndex.normalize(name);
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : entries.size();
+        Entry<T> entry = new Entry<>(item, key, trigrams(key), slot);
+        if ( slot == entries.size() ) {
+            entries.add(entry);
+        } else {
+            entries.set(slot, entry);
+        }
+        entryByItem.put(item, entry);
+        if ( slot == gramCounts.length ) { gramCounts = Arrays.copyOf(gramCounts, slot * 2); }
+        gramCounts[slot] = entry.grams.length;
+
+        for ( int i = 0; i < entry.grams.length; i++ ) {
+            Posting posting = postings.get(entry.grams[i]);
+            if ( posting == null ) {
+                posting = new Posting(entry.grams[i]);
+                postings.put(entry.grams[i], posting);
+            }
+            entry.places[i] = posting.add(slot);
+        }
+    }
+
+    /**
+     * @param item the item to remove from the index
+     * @return whether or not the item was in the index
+     */
+    public boolean remove(T item) {
+        Entry<T> entry = entryByItem.remove(item);
+        if ( entry == null ) {
+            return false;
+        }
+
+        for ( int i = 0; i < entry.grams.length; i++ ) {
+            // The last slot in the list takes the removed one's place
+            int gram = entry.grams[i];
+            Posting posting = postings.get(gram);
+            int place = entry.places[i];
+            int last = posting.slots[--posting.size];
+            if ( last != entry.slot ) {
+                posting.slots[place] = last;
+                Entry<T> moved = entries.get(last);
+                moved.places[Arrays.binarySearch(moved.grams, gram)] = place;
+            }
+            if ( posting.size == 0 ) {
+                postings.remove(gram);
+            }
+        }
+        entries.set(entry.slot, null);
+        if ( freeCount == freeSlots.length ) { freeSlots = Arrays.copyOf(freeSlots, freeCount * 2); }
+        freeSlots[freeCount++] = entry.slot;
+        return true;
+    }
+
+    /**
+     * search() ranks items by how closely their name matches the query. Names that contain the query exactly come
+     * first; after that, names that share the most trigrams with it. Queries shorter than three characters have no
+     * trigrams and return nothing - the prefix index already covers those. See the class comment for how the two kinds
+     * of match are found.
+     *
+     * @param query the search text; normalized before comparing
+     * @param limit the most results to return
+     * @return up to limit items, best match first
+     */
+    public List<T> search(String query, int limit) {
+        String key = PrefixIndex.normalize(query);
+        int[] grams = trigrams(key);
+        if ( grams.length == 0 || limit <= 0 ) {
+            return new ArrayList<>();
+        }
+
+        // Shortest posting lists first; trigrams the index has never seen can't match anything
+        Posting[] lists = new Posting[grams.length];
+        int listCount = 0;
+        for ( int gram : grams ) {
+            Posting posting = postings.get(gram);
+            if ( posting != null ) { lists[listCount++] = posting; }
+        }
+        Arrays.sort(lists, 0, listCount, (a, b) -> Integer.compare(a.size, b.size));
+        if ( listCount == grams.length ) {
+            List<T> containing = searchContaining(key, grams.length, lists[0], limit);
+            if ( containing != null ) {
+                return containing;
+            }
+        }
+
+        /* Once all but (minShared - 1) lists have been read, an item that hasn't shown up yet can't reach minShared
+           anymore, so the remaining (usually longest) lists are only used to add to items already found */
+        int minShared = minShared(grams.length);
+        int candidateLists = listCount - minShared + 1;
+        if ( candidateLists <= 0 ) {
+            return new ArrayList<>();
+        }
+
+        if ( counts.length < entries.size() ) { counts = new int[Math.max(entries.size(), counts.length * 2)]; }
+        int[] candidates = new int[16];
+        int candidateCount = 0;
+        for ( int i = 0; i < candidateLists; i++ ) {
+            Posting posting = lists[i];
+            for ( int j = 0; j < posting.size; j++ ) {
+                int slot = posting.slots[j];
+                if ( counts[slot]++ == 0 ) {
+                    if ( candidateCount == candidates.length ) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = slot;
+                }
+            }
+        }
+
+        /* A later list that isn't much longer than the candidates is read to count them, which only touches counts.
+           Longer ones are checked against each candidate's own trigrams instead (see below) */
+        int checkedFrom = candidateLists;
+        while ( checkedFrom < listCount && lists[checkedFrom].size <= 8L * candidateCount ) {
+            Posting posting = lists[checkedFrom++];
+            for ( int j = 0; j < posting.size; j++ ) {
+                int slot = posting.slots[j];
+                if ( counts[slot] > 0 ) { counts[slot]++; }
+            }
+        }
+
+        // Score candidates, keeping only the best "limit" in a min-heap
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a[0], b[0]));
+        for ( int c = 0; c < candidateCount; c++ ) {
+            int slot = candidates[c];
+            int shared = counts[slot];
+            counts[slot] = 0;
+
+            for ( int i = checkedFrom; i < listCount && shared + (listCount - i) >= minShared; i++ ) {
+                // Entry grams are sorted, so later trigrams are checked without reading their posting lists
+                if ( Arrays.binarySearch(entries.get(slot).grams, lists[i].gram) >= 0 ) { shared++; }
+            }
+            if ( shared < minShared ) {
+                continue;
+            }
+
+            // A name missing one of the query's trigrams can't contain the query
+            boolean contains = shared == grams.length && entries.get(slot).key.contains(key);
+            offer(best, limit, score(shared, grams.length, gramCounts[slot], contains), slot);
+        }
+
+        return ranked(best);
+    }
+
+    /**
+     * searchContaining() ranks the names that contain the whole query, reading either the rarest trigram's posting
+     * list or, when that list is a large share of all names, every name.
+     *
+     * @param key the normalized query
+     * @param queryGrams number of distinct trigrams in the query
+     * @param rarest posting list of the query's rarest trigram
+     * @param limit the most results to return
+     * @return up to limit items, best match first; null if fewer than limit names contain the query, so typo matches
+     *         are needed to fill the results
+     */
+    private List<T> searchContaining(String key, int queryGrams, Posting rarest, int limit) {
+        PriorityQueue<double[]> best = new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a[0], b[0]));
+        int found = 0;
+        boolean scan = (long) rarest.size * SCAN_FRACTION > entryByItem.size();
+        int end = scan ? entries.size() : rarest.size;
+        for ( int i = 0; i < end; i++ ) {
+            int slot = scan ? i : rarest.slots[i];
+            Entry<T> entry = entries.get(slot);
+            if ( entry == null || !entry.key.contains(key) ) {
+                continue;
+            }
+            found++;
+            offer(best, limit, score(queryGrams, queryGrams, gramCounts[slot], true), slot);
+        }
+        return found >= limit ? ranked(best) : null;
+    }
+
+    /**
+     * offer() adds a slot to the best results if it scores higher than the worst of them, or if there aren't limit
+     * results yet.
+     *
+     * @param best slots with their scores, in a min-heap of at most limit
+     * @param limit the most results to keep
+     * @param score the slot's score
+     * @param slot the slot
+     */
+    static void offer(PriorityQueue<double[]> best, int limit, double score, int slot) {
+        if ( best.size() < limit ) {
+            best.add(new double[] { score, slot });
+        } else if ( score > best.peek()[0] ) {
+            best.poll();
+            best.add(new double[] { score, slot });
+        }
+    }
+
+    /**
+     * @param best slots with their scores, in a min-heap
+     * @return the slots' items, best score first; empties best
+     */
+    private List<T> ranked(PriorityQueue<double[]> best) {
+        List<T> ranked = new ArrayList<>(best.size());
+        while ( !best.isEmpty() ) {
+            ranked.add(entries.get((int) best.poll()[1]).item);
+        }
+        Collections.reverse(ranked);
+        return ranked;
+    }
+
+    /**
+     * @return number of items in the index
+     */
+    public int size() { return entryByItem.size(); }
+
+    /**
+     * An item has to share at least half of the query's trigrams to count as a match; less for short queries, since
+     * one typo can knock out three trigrams.
+     *
+     * @param queryGrams number of distinct trigrams in the query
+     * @return the fewest trigrams a name has to share with the query to match it
+     */
+    static int minShared(int queryGrams) {
+        return Math.max(1, Math.min((queryGrams + 1) / 2, queryGrams - 3));
+    }
+
+    /**
+     * @param shared number of trigrams the name shares with the query
+     * @param queryGrams number of distinct trigrams in the query
+     * @param nameGrams number of distinct trigrams in the name
+     * @param contains whether the normalized name contains the normalized query
+     * @return how closely the name matches; higher is better, and over 1 for a name that contains the query
+     */
+    static double score(int shared, int queryGrams, int nameGrams, boolean contains) {
+        double score = (double) shared / (queryGrams + nameGrams - shared);
+        return contains ? score + 1 : score;
+    }
+
+    /**
+     * score() scores a name against a query the same way search() does, so results from more than one index can be
+     * ranked together.
+     *
+     * @param key the normalized query
+     * @param name a name; normalized here
+     * @return the name's score, as search() works it out
+     */
+    static double score(String key, String name) {
+        String nameKey = PrefixIndex.normalize(name);
+        int[] grams = trigrams(key);
+        int[] nameGrams = trigrams(nameKey);
+        int shared = 0;
+        for ( int gram : grams ) {
+            if ( Arrays.binarySearch(nameGrams, gram) >= 0 ) { shared++; }
+        }
+        return score(shared, grams.length, nameGrams.length, nameKey.contains(key));
+    }
+
+    /**
+     * @param key a normalized name
+     * @return the distinct trigrams of key, sorted
+     */
+    static int[] trigrams(String key) {
+        if ( key.length() < 3 ) {
+            return new int[0];
+        }
+        int[] grams = new int[key.length() - 2];
+        for ( int i = 0; i < grams.length; i++ ) {
+            grams[i] = gram(key.charAt(i), key.charAt(i + 1), key.charAt(i + 2));
+        }
+        Arrays.sort(grams);
+
+        int distinct = 0;
+        for ( int i = 0; i < grams.length; i++ ) {
+            if ( i == 0 || grams[i] != grams[i - 1] ) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * Three characters under 1024 (which covers the Latin alphabets) are packed into the int exactly. Anything else is
+     * hashed; a collision only adds a candidate that the score then ranks low.
+     *
+     * @return the trigram of the three characters as an int
+     */
+    static int gram(char a, char b, char c) {
+        if ( a < 1024 && b < 1024 && c < 1024 ) {
+            return (a << 20) | (b << 10) | c;
+        }
+        return 0x40000000 | (((a * 31 + b) * 31 + c) & 0x3FFFFFFF);
+    }
+}